@@ -0,0 +1,41 @@
+package com.ensamai.pedagogy.benchmarks;
+
+import com.ensamai.pedagogy.rag.CourseVectorIndex;
+import com.ensamai.pedagogy.service.VectorIndexCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a course's CourseChunk embeddings into a CourseVectorIndex (VectorIndexCache.load),
+ * from a repository stub that unpacks the stored bytes on every call like Hibernate does.
+ * Excludes the database itself, so it measures the converter and the matrix packing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+public class ChunkLoadingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int chunks;
+
+    @Param({"256", "768"})
+    public int dimension;
+
+    private VectorIndexCache cache;
+
+    @Setup
+    public void setUp() {
+        List<byte[]> packed = SyntheticData.packedRows(SyntheticData.unitMatrix(chunks, dimension, 4), chunks, dimension);
+        cache = new VectorIndexCache(SyntheticData.repository(packed), Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public CourseVectorIndex load() {
+        return cache.load(1L);
+    }
+}
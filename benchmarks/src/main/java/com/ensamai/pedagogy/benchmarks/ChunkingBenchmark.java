@@ -0,0 +1,65 @@
+package com.ensamai.pedagogy.benchmarks;
+
+import com.ensamai.pedagogy.rag.TextChunker;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TextChunker, as RagService.splitIntoChunks calls it, against the regex splitter it replaced.
+ * Add "-prof gc" to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx1g"})
+public class ChunkingBenchmark {
+
+    @Param({"100000", "5000000"})
+    public int chars;
+
+    private String text;
+    private TextChunker chunker;
+
+    @Setup
+    public void setUp() {
+        text = SyntheticData.courseText(chars, 42);
+        // the rag.chunk.max-tokens and rag.chunk.overlap-tokens defaults of RagConfig
+        chunker = new TextChunker(128, 16);
+    }
+
+    @Benchmark
+    public List<String> chunkerSplit() {
+        return chunker.split(text);
+    }
+
+    @Benchmark
+    public void chunkerOffsets(Blackhole blackhole) {
+        chunker.chunk(text, (start, end) -> {
+            blackhole.consume(start);
+            blackhole.consume(end);
+        });
+    }
+
+    @Benchmark
+    public List<String> regexSplitter() {
+        // the splitter RagService used before TextChunker
+        String[] rawChunks = text.split("(?<=\\.)\\s+");
+        List<String> chunks = new ArrayList<>();
+        StringBuilder currentChunk = new StringBuilder();
+        for (String sentence : rawChunks) {
+            if (currentChunk.length() + sentence.length() > 500) {
+                chunks.add(currentChunk.toString());
+                currentChunk = new StringBuilder();
+            }
+            currentChunk.append(sentence).append(" ");
+        }
+        if (!currentChunk.isEmpty()) chunks.add(currentChunk.toString());
+        return chunks;
+    }
+}
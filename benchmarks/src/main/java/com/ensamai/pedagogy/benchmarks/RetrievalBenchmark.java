@@ -0,0 +1,55 @@
+package com.ensamai.pedagogy.benchmarks;
+
+import com.ensamai.pedagogy.rag.EmbeddingProvider;
+import com.ensamai.pedagogy.rag.SimilarityKernels;
+import com.ensamai.pedagogy.rag.VectorMath;
+import com.ensamai.pedagogy.service.ExactVectorRetriever;
+import com.ensamai.pedagogy.service.VectorIndexCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The retrieval hot path of RagService without the database: embed the query with a stub
+ * provider, normalize it, and search the resident course index with the exact retriever.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+public class RetrievalBenchmark {
+
+    private static final long COURSE_ID = 1L;
+
+    @Param({"1000", "10000", "100000"})
+    public int chunks;
+
+    @Param({"256", "768"})
+    public int dimension;
+
+    private EmbeddingProvider provider;
+    private ExactVectorRetriever retriever;
+    private long[] winners;
+
+    @Setup
+    public void setUp() {
+        provider = new SyntheticEmbeddingProvider(dimension);
+        float[] matrix = SyntheticData.unitMatrix(chunks, dimension, 5);
+        VectorIndexCache cache = new VectorIndexCache(
+                SyntheticData.repository(SyntheticData.packedRows(matrix, chunks, dimension)), Long.MAX_VALUE);
+        retriever = new ExactVectorRetriever(cache, SimilarityKernels.create("auto"));
+        winners = new long[3];
+        // loads the course into the cache, so the measurement starts warm
+        retriever.search(COURSE_ID, SyntheticData.unitVector(dimension, 6), 3, winners);
+    }
+
+    @Benchmark
+    public long[] retrieveTop3() {
+        float[] query = provider.embed("Quelles sont les couches d'un réseau de neurones ?");
+        VectorMath.normalize(query);
+        retriever.search(COURSE_ID, query, 3, winners);
+        return winners;
+    }
+}
@@ -0,0 +1,63 @@
+package com.ensamai.pedagogy.benchmarks;
+
+import com.ensamai.pedagogy.rag.SimilarityKernel;
+import com.ensamai.pedagogy.rag.SimilarityKernels;
+import com.ensamai.pedagogy.rag.TopK;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cosine scoring of one query against a course matrix, alone and feeding the top-k heap,
+ * for the scalar and the Vector API kernel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx2g"})
+public class ScoringBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int chunks;
+
+    @Param({"256", "768"})
+    public int dimension;
+
+    @Param({"scalar", "auto"})
+    public String kernelName;
+
+    private SimilarityKernel kernel;
+    private float[] matrix;
+    private float[] query;
+    private float[] scores;
+    private TopK topK;
+    private int[] winners;
+
+    @Setup
+    public void setUp() {
+        kernel = SimilarityKernels.create(kernelName);
+        matrix = SyntheticData.unitMatrix(chunks, dimension, 1);
+        query = SyntheticData.unitVector(dimension, 2);
+        scores = new float[chunks];
+        topK = new TopK(10);
+        winners = new int[10];
+    }
+
+    @Benchmark
+    public float[] cosineScores() {
+        for (int row = 0, offset = 0; row < chunks; row++, offset += dimension) {
+            scores[row] = kernel.dot(matrix, offset, query);
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public int[] scoreTop10() {
+        topK.reset();
+        kernel.scoreAll(matrix, chunks, query, topK);
+        topK.drainDescending(winners);
+        return winners;
+    }
+}
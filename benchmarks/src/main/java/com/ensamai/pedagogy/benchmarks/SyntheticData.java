@@ -0,0 +1,100 @@
+package com.ensamai.pedagogy.benchmarks;
+
+import com.ensamai.pedagogy.model.FloatArrayConverter;
+import com.ensamai.pedagogy.rag.VectorMath;
+import com.ensamai.pedagogy.repository.CourseChunkRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded synthetic embeddings and course text, plus a repository stub serving them.
+ */
+final class SyntheticData {
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Row-major matrix of unit-normalized gaussian rows.
+     */
+    static float[] unitMatrix(int rows, int dimension, long seed) {
+        Random random = new Random(seed);
+        float[] matrix = new float[rows * dimension];
+        float[] row = new float[dimension];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < dimension; i++) {
+                row[i] = (float) random.nextGaussian();
+            }
+            VectorMath.normalize(row);
+            System.arraycopy(row, 0, matrix, r * dimension, dimension);
+        }
+        return matrix;
+    }
+
+    static float[] unitVector(int dimension, long seed) {
+        return unitMatrix(1, dimension, seed);
+    }
+
+    /**
+     * The rows as they sit in the embedding_vector column, see FloatArrayConverter.
+     */
+    static List<byte[]> packedRows(float[] matrix, int rows, int dimension) {
+        List<byte[]> packed = new ArrayList<>(rows);
+        float[] row = new float[dimension];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(matrix, r * dimension, row, 0, dimension);
+            packed.add(FloatArrayConverter.pack(row));
+        }
+        return packed;
+    }
+
+    /**
+     * A CourseChunkRepository answering findEmbeddingsByCourseId with the packed rows,
+     * unpacked on every call the way Hibernate applies the converter. Other methods throw.
+     */
+    static CourseChunkRepository repository(List<byte[]> packedRows) {
+        return (CourseChunkRepository) Proxy.newProxyInstance(
+                CourseChunkRepository.class.getClassLoader(),
+                new Class<?>[]{CourseChunkRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findEmbeddingsByCourseId")) {
+                        List<Object[]> rows = new ArrayList<>(packedRows.size());
+                        for (int i = 0; i < packedRows.size(); i++) {
+                            rows.add(new Object[]{(long) i + 1, FloatArrayConverter.unpack(packedRows.get(i))});
+                        }
+                        return rows;
+                    }
+                    if (method.getName().equals("toString")) return "SyntheticChunkRepository";
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Numbered sections of paragraphs of random French and English course words.
+     */
+    static String courseText(int chars, long seed) {
+        Random random = new Random(seed);
+        String[] words = {"le", "modèle", "apprend", "des", "représentations", "gradient", "couche", "neurone",
+                "the", "network", "learns", "weights", "from", "training", "data", "optimisation", "fonction"};
+        StringBuilder sb = new StringBuilder(chars + 200);
+        int section = 1;
+        while (sb.length() < chars) {
+            sb.append("\n\n").append(section++).append(". Section title\n\n");
+            for (int p = 0; p < 4; p++) {
+                for (int s = 0; s < 5; s++) {
+                    int length = 8 + random.nextInt(15);
+                    for (int w = 0; w < length; w++) {
+                        if (w > 0) sb.append(' ');
+                        sb.append(words[random.nextInt(words.length)]);
+                    }
+                    sb.append(". ");
+                }
+                sb.append("\n\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.ensamai.pedagogy.benchmarks;
+
+import com.ensamai.pedagogy.rag.EmbeddingProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Stands in for the Gemini provider: a seeded gaussian vector per text, no network.
+ */
+final class SyntheticEmbeddingProvider implements EmbeddingProvider {
+
+    private final int dimension;
+
+    SyntheticEmbeddingProvider(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public String modelName() {
+        return "synthetic-" + dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        Random random = new Random(text.hashCode());
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
+
+    @Override
+    public int batchSize() {
+        return 100;
+    }
+}
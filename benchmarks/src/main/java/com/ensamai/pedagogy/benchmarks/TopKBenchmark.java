@@ -0,0 +1,51 @@
+package com.ensamai.pedagogy.benchmarks;
+
+import com.ensamai.pedagogy.rag.TopK;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-k selection alone, over precomputed scores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class TopKBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int chunks;
+
+    @Param({"3", "10", "100"})
+    public int k;
+
+    private float[] scores;
+    private TopK topK;
+    private int[] winners;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        scores = new float[chunks];
+        for (int i = 0; i < chunks; i++) {
+            // cosine scores of unrelated unit vectors cluster around zero
+            scores[i] = (float) (random.nextGaussian() * 0.05);
+        }
+        topK = new TopK(k);
+        winners = new int[k];
+    }
+
+    @Benchmark
+    public int[] select() {
+        topK.reset();
+        for (int i = 0; i < chunks; i++) {
+            topK.offer(i, scores[i]);
+        }
+        topK.drainDescending(winners);
+        return winners;
+    }
+}
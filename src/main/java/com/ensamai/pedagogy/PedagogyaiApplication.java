@@ -5,12 +5,14 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 
 @ComponentScan(basePackages = "com.ensamai.pedagogy")
 @EnableJpaRepositories(basePackages = "com.ensamai.pedagogy.repository")
 @EntityScan(basePackages = "com.ensamai.pedagogy.model")
+@EnableScheduling
 public class PedagogyaiApplication {
 
     public static void main(String[] args) {
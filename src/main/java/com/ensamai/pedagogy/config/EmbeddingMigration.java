@@ -0,0 +1,109 @@
+package com.ensamai.pedagogy.config;
+
+import com.ensamai.pedagogy.model.FloatArrayConverter;
+import com.ensamai.pedagogy.rag.ContentHash;
+import com.ensamai.pedagogy.rag.VectorMath;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Startup migrations for chunk embeddings:
+ *  - the old @ElementCollection embedding table (one row per dimension) is copied
+ *    into the packed CourseChunk.embedding_vector column, then dropped;
+ *  - vectors stored before normalization was introduced are scaled to unit length
+ *    and their original norm is recorded;
+ *  - chunks stored before content hashing get their hash, so re-ingestion can reuse them.
+ */
+@Configuration
+public class EmbeddingMigration {
+
+    private static final String LEGACY_TABLE = "COURSE_CHUNK_EMBEDDING";
+
+    @Bean
+    CommandLineRunner migrateEmbeddings(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        return args -> {
+            Integer tables = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?",
+                    Integer.class, LEGACY_TABLE);
+            if (tables != null && tables > 0) {
+                transactionTemplate.executeWithoutResult(status -> migrateLegacyTable(jdbcTemplate));
+            }
+            transactionTemplate.executeWithoutResult(status -> normalizeStoredVectors(jdbcTemplate));
+            transactionTemplate.executeWithoutResult(status -> hashStoredChunks(jdbcTemplate));
+        };
+    }
+
+    private void migrateLegacyTable(JdbcTemplate jdbcTemplate) {
+        List<Long> chunkIds = jdbcTemplate.queryForList(
+                "SELECT DISTINCT course_chunk_id FROM course_chunk_embedding", Long.class);
+
+        int skipped = 0;
+        for (Long chunkId : chunkIds) {
+            // _ROWID_ keeps the insertion order, which is the vector order
+            // (the old collection had no @OrderColumn)
+            List<Double> values = jdbcTemplate.queryForList(
+                    "SELECT embedding FROM course_chunk_embedding WHERE course_chunk_id = ? ORDER BY _ROWID_",
+                    Double.class, chunkId);
+            float[] vector = toFloatArray(values);
+            if (vector == null) {
+                // dropping the null would shift every later dimension, the chunk is left
+                // without an embedding so the next ingestion embeds it again
+                System.err.println("⚠️ Skipped legacy embedding of chunk " + chunkId + ": it has null dimensions");
+                skipped++;
+                continue;
+            }
+            jdbcTemplate.update("UPDATE course_chunk SET embedding_vector = ? WHERE id = ?",
+                    FloatArrayConverter.pack(vector), chunkId);
+        }
+
+        jdbcTemplate.execute("DROP TABLE course_chunk_embedding");
+        System.out.println("✅ Migrated " + (chunkIds.size() - skipped) + " chunk embeddings to packed float32 storage");
+    }
+
+    private void normalizeStoredVectors(JdbcTemplate jdbcTemplate) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, embedding_vector FROM course_chunk WHERE embedding_norm IS NULL AND embedding_vector IS NOT NULL");
+
+        for (Map<String, Object> row : rows) {
+            float[] vector = FloatArrayConverter.unpack((byte[]) row.get("EMBEDDING_VECTOR"));
+            float norm = VectorMath.normalize(vector);
+            jdbcTemplate.update("UPDATE course_chunk SET embedding_vector = ?, embedding_norm = ? WHERE id = ?",
+                    FloatArrayConverter.pack(vector), norm, row.get("ID"));
+        }
+        if (!rows.isEmpty()) {
+            System.out.println("✅ Normalized " + rows.size() + " stored chunk embeddings");
+        }
+    }
+
+    private void hashStoredChunks(JdbcTemplate jdbcTemplate) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, content FROM course_chunk WHERE content_hash IS NULL AND content IS NOT NULL");
+
+        for (Map<String, Object> row : rows) {
+            jdbcTemplate.update("UPDATE course_chunk SET content_hash = ? WHERE id = ?",
+                    ContentHash.sha256((String) row.get("CONTENT")), row.get("ID"));
+        }
+        if (!rows.isEmpty()) {
+            System.out.println("✅ Hashed " + rows.size() + " stored chunks");
+        }
+    }
+
+    /**
+     * Null when a dimension is missing: the vector cannot be recovered.
+     */
+    private static float[] toFloatArray(List<Double> values) {
+        float[] vector = new float[values.size()];
+        for (int i = 0; i < vector.length; i++) {
+            Double value = values.get(i);
+            if (value == null) return null;
+            vector[i] = value.floatValue();
+        }
+        return vector;
+    }
+}
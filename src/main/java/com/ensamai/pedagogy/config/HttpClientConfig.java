@@ -0,0 +1,83 @@
+package com.ensamai.pedagogy.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Connection pool shared by every Gemini call, so keep-alive connections (and their TLS
+     * sessions) are reused. Exposed as the httpcomponents.httpclient.pool.* metrics.
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager geminiConnectionManager(
+            MeterRegistry meterRegistry,
+            @Value("${gemini.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${gemini.http.read-timeout-ms:60000}") long readTimeoutMs,
+            @Value("${gemini.http.max-connections:50}") int maxConnections,
+            @Value("${gemini.http.max-connections-per-route:20}") int maxConnectionsPerRoute) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        // DNS changes are picked up within a few minutes
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "gemini").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    /**
+     * Default timeouts of Gemini requests; calls with a deadline shorten them per request.
+     */
+    @Bean
+    public RequestConfig geminiRequestConfig(@Value("${gemini.http.read-timeout-ms:60000}") long readTimeoutMs,
+                                             @Value("${gemini.http.pool-timeout-ms:10000}") long poolTimeoutMs) {
+        return RequestConfig.custom()
+                // waiting for a free pooled connection fails fast instead of queueing forever
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+    }
+
+    /**
+     * HTTP client over the Gemini connection pool. Responses are accepted gzip-compressed and
+     * decompressed by the client.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient geminiHttpClient(PoolingHttpClientConnectionManager geminiConnectionManager,
+                                                RequestConfig geminiRequestConfig) {
+        return HttpClients.custom()
+                .setConnectionManager(geminiConnectionManager)
+                .setDefaultRequestConfig(geminiRequestConfig)
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
+
+    /**
+     * RestTemplate for the Gemini API. Built from Spring Boot's RestTemplateBuilder, so every
+     * call is timed in the http.client.requests metric.
+     */
+    @Bean
+    public RestTemplate geminiRestTemplate(RestTemplateBuilder builder, CloseableHttpClient geminiHttpClient) {
+        return builder.requestFactory(() -> new HttpComponentsClientHttpRequestFactory(geminiHttpClient)).build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.ensamai.pedagogy.config;
+
+import com.ensamai.pedagogy.rag.EmbeddingProvider;
+import com.ensamai.pedagogy.rag.HashingEmbeddingProvider;
+import com.ensamai.pedagogy.rag.SimilarityKernel;
+import com.ensamai.pedagogy.rag.SimilarityKernels;
+import com.ensamai.pedagogy.rag.TextChunker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+public class RagConfig {
+
+    /**
+     * Embedding similarity kernel: auto (default), scalar or vector.
+     */
+    @Bean
+    public SimilarityKernel similarityKernel(@Value("${rag.kernel:auto}") String kernelName) {
+        SimilarityKernel kernel = SimilarityKernels.create(kernelName);
+        System.out.println("✅ RAG similarity kernel: " + kernel.name());
+        return kernel;
+    }
+
+    /**
+     * Course text chunker: windows of rag.chunk.max-tokens estimated tokens (128, about the
+     * 500 characters chunks used to be) overlapping by rag.chunk.overlap-tokens.
+     */
+    @Bean
+    public TextChunker textChunker(@Value("${rag.chunk.max-tokens:128}") int maxTokens,
+                                   @Value("${rag.chunk.overlap-tokens:16}") int overlapTokens) {
+        return new TextChunker(maxTokens, overlapTokens);
+    }
+
+    /**
+     * In-process feature-hashing embeddings instead of the Gemini API, for offline runs and benchmarks.
+     */
+    @Bean
+    @Profile("local-embeddings")
+    public EmbeddingProvider hashingEmbeddingProvider(@Value("${rag.local-embedding.dimension:768}") int dimension,
+                                                      @Value("${rag.local-embedding.batch-size:256}") int batchSize) {
+        return new HashingEmbeddingProvider(dimension, batchSize);
+    }
+}
@@ -6,7 +6,7 @@ import com.ensamai.pedagogy.model.Role;
 import com.ensamai.pedagogy.repository.AppUserRepository;
 import com.ensamai.pedagogy.repository.CourseRepository;
 import com.ensamai.pedagogy.service.AiAgentService;
-import com.ensamai.pedagogy.service.RagService;
+import com.ensamai.pedagogy.service.IngestionPipelineService;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -25,16 +25,16 @@ public class CourseController {
 
     private final CourseRepository courseRepository;
     private final AppUserRepository appUserRepository;
-    private final RagService ragService;
+    private final IngestionPipelineService ingestionPipelineService;
     private final AiAgentService aiAgentService;
 
     public CourseController(CourseRepository courseRepository,
                             AppUserRepository appUserRepository,
-                            RagService ragService, 
+                            IngestionPipelineService ingestionPipelineService,
                             AiAgentService aiAgentService) {
         this.courseRepository = courseRepository;
         this.appUserRepository = appUserRepository;
-        this.ragService = ragService;
+        this.ingestionPipelineService = ingestionPipelineService;
         this.aiAgentService = aiAgentService;
     }
 
@@ -95,8 +95,8 @@ public class CourseController {
 
         Course savedCourse = courseRepository.save(course);
 
-        if (savedCourse.getContent() != null && !savedCourse.getContent().isEmpty()) {
-            ragService.ingestCourse(savedCourse);
+        if (savedCourse.hasIngestibleMaterial()) {
+            ingestionPipelineService.submit(savedCourse);
         }
 
         return "redirect:/courses";
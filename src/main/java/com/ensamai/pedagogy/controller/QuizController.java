@@ -1,22 +1,25 @@
 package com.ensamai.pedagogy.controller;
 
-import com.ensamai.pedagogy.dto.QuizQuestion; 
 import com.ensamai.pedagogy.model.*;
 import com.ensamai.pedagogy.repository.*;
 import com.ensamai.pedagogy.service.AiAgentService;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ensamai.pedagogy.service.QuizFallbackService;
+import com.ensamai.pedagogy.service.QuizPool;
+import com.ensamai.pedagogy.service.QuizStreamService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Controller
 @RequestMapping("/quiz")
@@ -28,18 +31,25 @@ public class QuizController {
     private final QuizResultRepository quizResultRepository;
     private final QuestionRepository questionRepository;
     private final AiAgentService aiAgentService;
-    private final ObjectMapper objectMapper;
+    private final QuizStreamService quizStreamService;
+    private final QuizPool quizPool;
+    private final QuizFallbackService quizFallbackService;
+    private final boolean streamingEnabled;
 
     public QuizController(CourseRepository courseRepository, AppUserRepository appUserRepository,
                           QuizResultRepository quizResultRepository, QuestionRepository questionRepository,
-                          AiAgentService aiAgentService) {
+                          AiAgentService aiAgentService, QuizStreamService quizStreamService, QuizPool quizPool,
+                          QuizFallbackService quizFallbackService,
+                          @Value("${quiz.stream.enabled:true}") boolean streamingEnabled) {
         this.courseRepository = courseRepository;
         this.appUserRepository = appUserRepository;
         this.quizResultRepository = quizResultRepository;
         this.questionRepository = questionRepository;
         this.aiAgentService = aiAgentService;
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.quizStreamService = quizStreamService;
+        this.quizPool = quizPool;
+        this.quizFallbackService = quizFallbackService;
+        this.streamingEnabled = streamingEnabled;
     }
 
     @GetMapping("/{courseId}")
@@ -65,36 +75,21 @@ public class QuizController {
         if ("official".equals(type)) {
             questions = questionRepository.findByCourseId(courseId);
         } else {
-            String jsonQuiz = aiAgentService.generateQuiz(student.getId(), courseId);
-            System.out.println("RAW AI RESPONSE: " + jsonQuiz);
-
-            try {
-                int startIndex = jsonQuiz.indexOf("[");
-                int endIndex = jsonQuiz.lastIndexOf("]");
-                
-                if (startIndex != -1 && endIndex != -1) {
-                    String cleanJson = jsonQuiz.substring(startIndex, endIndex + 1);
-
-                    List<QuizQuestion> dtos = objectMapper.readValue(cleanJson, new TypeReference<List<QuizQuestion>>(){});
-
-                    for (QuizQuestion dto : dtos) {
-                        Question q = new Question();
-                        q.setQuestionText(dto.getQuestionText());
-                        q.setCorrectAnswer(dto.getCorrectAnswer());
-
-                        // Map List<String> to OptionA, OptionB...
-                        if (dto.getOptions() != null && dto.getOptions().size() >= 4) {
-                            q.setOptionA(cleanOption(dto.getOptions().get(0)));
-                            q.setOptionB(cleanOption(dto.getOptions().get(1)));
-                            q.setOptionC(cleanOption(dto.getOptions().get(2)));
-                            q.setOptionD(cleanOption(dto.getOptions().get(3)));
-                        }
-                        questions.add(q);
-                    }
-                }
-            } catch (Exception e) {
-                System.err.println("Error parsing AI Quiz: " + e.getMessage());
-                e.printStackTrace();
+            QuizDifficulty difficulty = aiAgentService.difficultyFor(student.getId(), courseId);
+            Optional<String> pooled = quizPool.take(courseId, difficulty);
+            if (pooled.isPresent()) {
+                questions = aiAgentService.parseQuiz(pooled.get());
+            } else if (!aiAgentService.isGenerationAvailable()) {
+                // the model is failing: answer now from what we have instead of waiting on it
+                questions = fallbackQuestions(student.getId(), courseId, model);
+            } else if (streamingEnabled) {
+                // the page renders straight away and fills in as questions stream from /stream
+                model.addAttribute("streaming", true);
+            } else {
+                String jsonQuiz = aiAgentService.generateQuiz(student.getId(), courseId);
+                System.out.println("RAW AI RESPONSE: " + jsonQuiz);
+                questions = aiAgentService.parseQuiz(jsonQuiz);
+                if (questions.isEmpty()) questions = fallbackQuestions(student.getId(), courseId, model);
             }
         }
 
@@ -104,8 +99,26 @@ public class QuizController {
         return "student/quiz_view";
     }
 
-    private String cleanOption(String opt) {
-        return opt.replaceAll("^[A-D]\\.\\s*", ""); 
+    /**
+     * Questions to show when no AI quiz can be generated, see QuizFallbackService.
+     */
+    private List<Question> fallbackQuestions(Long studentId, Long courseId, Model model) {
+        QuizFallbackService.FallbackQuiz fallback = quizFallbackService.fallbackQuiz(studentId, courseId);
+        model.addAttribute("fallbackNotice", fallback.notice());
+        return fallback.questions();
+    }
+
+    /**
+     * AI practice questions as server-sent events, see QuizStreamService.
+     */
+    @GetMapping(value = "/{courseId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter streamQuiz(@PathVariable Long courseId,
+                                 @AuthenticationPrincipal UserDetails userDetails) {
+        courseRepository.findById(courseId)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid course Id:" + courseId));
+        AppUser student = appUserRepository.findByUsername(userDetails.getUsername()).orElseThrow();
+        return quizStreamService.stream(student.getId(), courseId);
     }
 
     @PostMapping("/submit")
@@ -1,5 +1,6 @@
 package com.ensamai.pedagogy.controller;
 
+import com.ensamai.pedagogy.dto.QuantizationRecallDTO;
 import com.ensamai.pedagogy.dto.SystemAnalyticsDTO;
 import com.ensamai.pedagogy.dto.TeacherDTO;
 import com.ensamai.pedagogy.model.AppUser;
@@ -9,12 +10,18 @@ import com.ensamai.pedagogy.model.Role;
 import com.ensamai.pedagogy.repository.AppUserRepository;
 import com.ensamai.pedagogy.repository.CourseRepository;
 import com.ensamai.pedagogy.repository.QuizResultRepository;
+import com.ensamai.pedagogy.service.PqIndexService;
+import com.ensamai.pedagogy.service.QuantizationReportService;
 import com.ensamai.pedagogy.service.TeacherService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.util.List;
@@ -34,18 +41,24 @@ public class SuperAdminController {
     private final CourseRepository courseRepository;
     private final QuizResultRepository quizResultRepository;
     private final com.ensamai.pedagogy.service.AnalyticsService analyticsService;
+    private final QuantizationReportService quantizationReportService;
+    private final ObjectProvider<PqIndexService> pqIndexService;
 
     public SuperAdminController(TeacherService teacherService, 
                                 com.ensamai.pedagogy.service.StudentService studentService,
                                 AppUserRepository appUserRepository,
                                 CourseRepository courseRepository, QuizResultRepository quizResultRepository,
-                                com.ensamai.pedagogy.service.AnalyticsService analyticsService) {
+                                com.ensamai.pedagogy.service.AnalyticsService analyticsService,
+                                QuantizationReportService quantizationReportService,
+                                ObjectProvider<PqIndexService> pqIndexService) {
         this.teacherService = teacherService;
         this.studentService = studentService;
         this.appUserRepository = appUserRepository;
         this.courseRepository = courseRepository;
         this.quizResultRepository = quizResultRepository;
         this.analyticsService = analyticsService;
+        this.quantizationReportService = quantizationReportService;
+        this.pqIndexService = pqIndexService;
     }
 
     /**
@@ -229,6 +242,42 @@ public class SuperAdminController {
         return "admin/admin_analytics";
     }
 
+    /**
+     * recall@k of the int8 retrieval path against the exact float scan, per course (JSON)
+     */
+    @GetMapping("/rag/quantization-report")
+    @ResponseBody
+    public List<QuantizationRecallDTO> quantizationReport(@RequestParam(defaultValue = "10") int k,
+                                                          @RequestParam(defaultValue = "50") int queries,
+                                                          @RequestParam(required = false) Integer rerankFactor) {
+        // the report scans every course once per query: keep a typo from running for minutes
+        if (k < 1 || k > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and 100: " + k);
+        }
+        if (queries < 1 || queries > 1000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "queries must be between 1 and 1000: " + queries);
+        }
+        if (rerankFactor != null && (rerankFactor < 1 || rerankFactor > 64)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "rerankFactor must be between 1 and 64: " + rerankFactor);
+        }
+        return quantizationReportService.recallReport(k, queries, rerankFactor);
+    }
+
+    /**
+     * Retrains the product-quantization codebooks from the stored chunks (rag.retriever=pq only)
+     */
+    @PostMapping("/rag/pq/retrain")
+    @ResponseBody
+    public ResponseEntity<String> retrainPqIndex() {
+        PqIndexService service = pqIndexService.getIfAvailable();
+        if (service == null) {
+            return ResponseEntity.badRequest().body("The PQ index is not enabled (rag.retriever=pq)");
+        }
+        return service.retrainAsync()
+                ? ResponseEntity.accepted().body("PQ training started")
+                : ResponseEntity.accepted().body("PQ training already running");
+    }
+
     // STUDENT MANAGEMENT
 
     @GetMapping("/students")
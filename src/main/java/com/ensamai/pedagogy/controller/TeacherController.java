@@ -3,9 +3,15 @@ package com.ensamai.pedagogy.controller;
 import com.ensamai.pedagogy.model.*;
 import com.ensamai.pedagogy.repository.*;
 import com.ensamai.pedagogy.service.GeminiService;
+import com.ensamai.pedagogy.service.GenerationCache;
+import com.ensamai.pedagogy.service.IngestionPipelineService;
 import com.ensamai.pedagogy.service.RagService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -14,6 +20,8 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -29,30 +37,39 @@ import java.util.stream.Collectors;
 @PreAuthorize("hasAnyAuthority('ADMIN', 'TEACHER')")
 public class TeacherController {
 
+    // bump when the quiz preview prompt changes, so cached responses to the old one are not reused
+    private static final String PREVIEW_PROMPT_VERSION = "preview-v1";
+
     private final CourseRepository courseRepository;
     private final AppUserRepository appUserRepository;
     private final QuizResultRepository quizResultRepository;
     private final QuestionRepository questionRepository;
-    private final CourseChunkRepository courseChunkRepository;
     private final GeminiService geminiService;
     private final RagService ragService;
+    private final IngestionPipelineService ingestionPipelineService;
     private final PasswordEncoder passwordEncoder;
     private final ObjectMapper objectMapper;
+    private final GenerationCache generationCache;
+    private final boolean previewCacheEnabled;
 
     public TeacherController(CourseRepository courseRepository, AppUserRepository appUserRepository,
                            QuizResultRepository quizResultRepository, QuestionRepository questionRepository,
-                           CourseChunkRepository courseChunkRepository,
                            GeminiService geminiService, RagService ragService, 
-                           PasswordEncoder passwordEncoder, ObjectMapper objectMapper) {
+                           IngestionPipelineService ingestionPipelineService,
+                           PasswordEncoder passwordEncoder, ObjectMapper objectMapper,
+                           GenerationCache generationCache,
+                           @Value("${teacher.quiz-preview.generation-cache.enabled:false}") boolean previewCacheEnabled) {
         this.courseRepository = courseRepository;
         this.appUserRepository = appUserRepository;
         this.quizResultRepository = quizResultRepository;
         this.questionRepository = questionRepository;
-        this.courseChunkRepository = courseChunkRepository;
         this.geminiService = geminiService;
         this.ragService = ragService;
+        this.ingestionPipelineService = ingestionPipelineService;
         this.passwordEncoder = passwordEncoder;
         this.objectMapper = objectMapper;
+        this.generationCache = generationCache;
+        this.previewCacheEnabled = previewCacheEnabled;
     }
 
     /**
@@ -167,22 +184,36 @@ public class TeacherController {
                         "questionText, optionA, optionB, optionC, optionD, correctAnswer (A/B/C/D). " +
                         "Text: " + course.getContent();
 
-        String jsonResponse = geminiService.generateContent(prompt);
-        List<Question> aiQuestions = new ArrayList<>();
-        try {
-            jsonResponse = jsonResponse.replace("```json", "").replace("```", "").trim();
-            aiQuestions = objectMapper.readValue(jsonResponse, new TypeReference<List<Question>>(){});
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        String jsonResponse = previewCacheEnabled
+                ? generationCache.getOrGenerate(
+                        GenerationCache.key(geminiService.getModelName(), PREVIEW_PROMPT_VERSION, prompt),
+                        () -> geminiService.generateContent(prompt),
+                        // like AiAgentService: only an answer that parses into questions is reused
+                        response -> !parsePreview(response).isEmpty())
+                : geminiService.generateContent(prompt);
 
         QuizForm form = new QuizForm();
-        form.setQuestions(aiQuestions);
+        form.setQuestions(parsePreview(jsonResponse));
         model.addAttribute("course", course);
         model.addAttribute("quizForm", form);
         return "teacher/quiz_preview";
     }
 
+    /**
+     * Questions of a generated preview (a JSON array, possibly in a markdown fence);
+     * empty when it cannot be parsed.
+     */
+    private List<Question> parsePreview(String jsonResponse) {
+        try {
+            String cleanJson = jsonResponse.replace("```json", "").replace("```", "").trim();
+            List<Question> questions = objectMapper.readValue(cleanJson, new TypeReference<List<Question>>(){});
+            return questions != null ? questions : new ArrayList<>();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
     @PostMapping("/course/{id}/save-quiz")
     public String saveQuiz(@PathVariable Long id, @ModelAttribute QuizForm quizForm, Authentication auth) {
         Course course = courseRepository.findById(id).orElseThrow();
@@ -216,8 +247,9 @@ public class TeacherController {
             course.setPdfFile(file.getBytes()); 
         }
         Course savedCourse = courseRepository.save(course); 
-        if (savedCourse.getContent() != null && !savedCourse.getContent().isEmpty()) {
-            ragService.ingestCourse(savedCourse);
+        if (savedCourse.hasIngestibleMaterial()) {
+            // Runs in the background, progress is shown on the course page
+            ingestionPipelineService.submit(savedCourse);
         }
         return getDashboardRedirect(auth);
     }
@@ -248,11 +280,35 @@ public class TeacherController {
         existing.setDescription(formCourse.getDescription()); 
         existing.setContent(formCourse.getContent());
         Course savedCourse = courseRepository.save(existing); 
-        if (savedCourse.getContent() != null && !savedCourse.getContent().isEmpty()) {
-            ragService.ingestCourse(savedCourse);
+        if (savedCourse.hasIngestibleMaterial()) {
+            // Runs in the background, progress is shown on the course page
+            ingestionPipelineService.submit(savedCourse);
         }
         return getDashboardRedirect(auth);
     }
+    // INGESTION STATUS
+    @GetMapping("/course/{id}/ingestion")
+    @ResponseBody
+    public ResponseEntity<IngestionJob> ingestionStatus(@PathVariable Long id, Authentication auth) {
+        Course course = courseRepository.findById(id).orElseThrow();
+        if (!isAdmin(auth) && (course.getTeacher() == null || !course.getTeacher().getId().equals(getCurrentTeacher(auth).getId()))) {
+            return ResponseEntity.status(403).build();
+        }
+        return ingestionPipelineService.latestJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.noContent().build());
+    }
+
+    @GetMapping(value = "/course/{id}/ingestion/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter ingestionStream(@PathVariable Long id, Authentication auth) {
+        Course course = courseRepository.findById(id).orElseThrow();
+        if (!isAdmin(auth) && (course.getTeacher() == null || !course.getTeacher().getId().equals(getCurrentTeacher(auth).getId()))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied to course " + id);
+        }
+        return ingestionPipelineService.subscribe(id);
+    }
+
     // DELETE COURSE
     @Transactional
     @PostMapping("/delete/{id}")
@@ -264,9 +320,13 @@ public class TeacherController {
             return "redirect:/teacher/dashboard?error=access_denied";
         }
         
-        //  Delete RAG Vectors
-        List<CourseChunk> chunks = courseChunkRepository.findByCourseId(id);
-        courseChunkRepository.deleteAll(chunks);
+        // Stop its ingestion first, so no chunk is stored after they are deleted
+        if (!ingestionPipelineService.stopForDeletion(id)) {
+            return getDashboardRedirect(auth) + "?error=ingestion_stopping";
+        }
+
+        //  Delete RAG Vectors (the indexes drop the course once this commits)
+        ragService.deleteCourseChunks(id);
 
         // Delete Official Questions
         List<Question> questions = questionRepository.findByCourseId(id);
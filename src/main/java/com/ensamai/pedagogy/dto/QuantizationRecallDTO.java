@@ -0,0 +1,63 @@
+package com.ensamai.pedagogy.dto;
+
+public class QuantizationRecallDTO {
+    private Long courseId;
+    private String courseName;
+    private int chunks;
+    private int queries;
+    private int k;
+    private int rerankFactor;
+    // share of the exact float top-k found by the int8 pass alone, and after the float rerank
+    private double recallFirstPass;
+    private double recallReranked;
+    private long floatIndexBytes;
+    private long quantizedIndexBytes;
+
+    public QuantizationRecallDTO() {}
+
+    public QuantizationRecallDTO(Long courseId, String courseName, int chunks, int queries, int k, int rerankFactor,
+                                 double recallFirstPass, double recallReranked,
+                                 long floatIndexBytes, long quantizedIndexBytes) {
+        this.courseId = courseId;
+        this.courseName = courseName;
+        this.chunks = chunks;
+        this.queries = queries;
+        this.k = k;
+        this.rerankFactor = rerankFactor;
+        this.recallFirstPass = recallFirstPass;
+        this.recallReranked = recallReranked;
+        this.floatIndexBytes = floatIndexBytes;
+        this.quantizedIndexBytes = quantizedIndexBytes;
+    }
+
+    // Getters and Setters
+    public Long getCourseId() { return courseId; }
+    public void setCourseId(Long courseId) { this.courseId = courseId; }
+
+    public String getCourseName() { return courseName; }
+    public void setCourseName(String courseName) { this.courseName = courseName; }
+
+    public int getChunks() { return chunks; }
+    public void setChunks(int chunks) { this.chunks = chunks; }
+
+    public int getQueries() { return queries; }
+    public void setQueries(int queries) { this.queries = queries; }
+
+    public int getK() { return k; }
+    public void setK(int k) { this.k = k; }
+
+    public int getRerankFactor() { return rerankFactor; }
+    public void setRerankFactor(int rerankFactor) { this.rerankFactor = rerankFactor; }
+
+    public double getRecallFirstPass() { return recallFirstPass; }
+    public void setRecallFirstPass(double recallFirstPass) { this.recallFirstPass = recallFirstPass; }
+
+    public double getRecallReranked() { return recallReranked; }
+    public void setRecallReranked(double recallReranked) { this.recallReranked = recallReranked; }
+
+    public long getFloatIndexBytes() { return floatIndexBytes; }
+    public void setFloatIndexBytes(long floatIndexBytes) { this.floatIndexBytes = floatIndexBytes; }
+
+    public long getQuantizedIndexBytes() { return quantizedIndexBytes; }
+    public void setQuantizedIndexBytes(long quantizedIndexBytes) { this.quantizedIndexBytes = quantizedIndexBytes; }
+}
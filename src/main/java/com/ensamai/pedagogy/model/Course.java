@@ -61,6 +61,11 @@ public class Course {
     public List<AppUser> getStudents() { return students; }
     public void setStudents(List<AppUser> students) { this.students = students; }
 
+    // typed content or an attached PDF, either one feeds the RAG index
+    public boolean hasIngestibleMaterial() {
+        return (content != null && !content.isBlank()) || (pdfFile != null && pdfFile.length > 0);
+    }
+
     public void enrollStudent(AppUser student) {
         if (!students.contains(student)) {
             students.add(student);
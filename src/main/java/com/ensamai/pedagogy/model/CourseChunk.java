@@ -1,9 +1,9 @@
 package com.ensamai.pedagogy.model;
 
 import jakarta.persistence.*;
-import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_course_chunk_hash", columnList = "course_id, content_hash"))
 public class CourseChunk {
 
     @Id
@@ -14,8 +14,21 @@ public class CourseChunk {
     @Column(columnDefinition = "TEXT")
     private String content;
 
-    @ElementCollection(fetch = FetchType.EAGER)
-    private List<Double> embedding;
+    // SHA-256 of content, lets re-ingestion keep chunks whose text did not change
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // 1-based page of the course PDF the text comes from, null for the typed content
+    private Integer pageNumber;
+
+    // Packed little-endian float32 vector, see FloatArrayConverter.
+    // Stored unit-normalized, so similarity is a plain dot product.
+    @Convert(converter = FloatArrayConverter.class)
+    @Column(name = "embedding_vector", length = 16384)
+    private float[] embedding;
+
+    // L2 norm of the raw embedding before normalization
+    private Float embeddingNorm;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "course_id")
@@ -31,8 +44,17 @@ public class CourseChunk {
     public String getContent() { return content; }
     public void setContent(String content) { this.content = content; }
 
-    public List<Double> getEmbedding() { return embedding; }
-    public void setEmbedding(List<Double> embedding) { this.embedding = embedding; }
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public Integer getPageNumber() { return pageNumber; }
+    public void setPageNumber(Integer pageNumber) { this.pageNumber = pageNumber; }
+
+    public float[] getEmbedding() { return embedding; }
+    public void setEmbedding(float[] embedding) { this.embedding = embedding; }
+
+    public Float getEmbeddingNorm() { return embeddingNorm; }
+    public void setEmbeddingNorm(Float embeddingNorm) { this.embeddingNorm = embeddingNorm; }
 
     public Course getCourse() { return course; }
     public void setCourse(Course course) { this.course = course; }
@@ -0,0 +1,64 @@
+package com.ensamai.pedagogy.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * One cached embedding, addressed by SHA-256 of (model, text).
+ * Stored raw (not normalized), exactly as returned by the embedding API.
+ */
+@Entity
+public class EmbeddingCacheEntry implements Persistable<String> {
+
+    @Id
+    @Column(length = 64)
+    private String cacheKey;
+
+    private String model;
+
+    @Convert(converter = FloatArrayConverter.class)
+    @Column(length = 16384)
+    private float[] embedding;
+
+    private LocalDateTime createdAt;
+
+    // keys are assigned, so tell Spring Data to insert instead of select-then-merge
+    @Transient
+    private boolean isNew = true;
+
+    public EmbeddingCacheEntry() {
+    }
+
+    public EmbeddingCacheEntry(String cacheKey, String model, float[] embedding) {
+        this.cacheKey = cacheKey;
+        this.model = model;
+        this.embedding = embedding;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public String getId() { return cacheKey; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    public String getCacheKey() { return cacheKey; }
+    public void setCacheKey(String cacheKey) { this.cacheKey = cacheKey; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public float[] getEmbedding() { return embedding; }
+    public void setEmbedding(float[] embedding) { this.embedding = embedding; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,39 @@
+package com.ensamai.pedagogy.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Stores a float[] as one packed little-endian float32 binary value
+ * (4 bytes per dimension) instead of one row per dimension.
+ */
+@Converter
+public class FloatArrayConverter implements AttributeConverter<float[], byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(float[] vector) {
+        return pack(vector);
+    }
+
+    @Override
+    public float[] convertToEntityAttribute(byte[] data) {
+        return unpack(data);
+    }
+
+    public static byte[] pack(float[] vector) {
+        if (vector == null) return null;
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    public static float[] unpack(byte[] data) {
+        if (data == null) return null;
+        float[] vector = new float[data.length / Float.BYTES];
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
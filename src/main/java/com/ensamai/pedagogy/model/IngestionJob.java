@@ -0,0 +1,90 @@
+package com.ensamai.pedagogy.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Background RAG ingestion of one course. Progress is persisted together
+ * with each batch of chunks; an interrupted job is planned again on resume
+ * and finds the chunks it already stored unchanged.
+ */
+@Entity
+public class IngestionJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // plain id, so job history survives the course being deleted
+    private Long courseId;
+
+    @Enumerated(EnumType.STRING)
+    private IngestionStatus status;
+
+    // distinct chunks of the course text and PDF, grows while the PDF is read
+    private Integer totalChunks;
+
+    // unchanged chunks kept from a previous ingestion, counted as embedded and persisted
+    private int reusedChunks;
+
+    private int embeddedChunks;
+
+    private int persistedChunks;
+
+    // stored chunks dropped because their text is no longer in the course
+    private int removedChunks;
+
+    @Column(length = 1000)
+    private String errorMessage;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    public IngestionJob() {
+    }
+
+    public IngestionJob(Long courseId) {
+        this.courseId = courseId;
+        this.status = IngestionStatus.QUEUED;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    public boolean isFinished() {
+        return status == IngestionStatus.COMPLETED || status == IngestionStatus.FAILED;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getCourseId() { return courseId; }
+    public void setCourseId(Long courseId) { this.courseId = courseId; }
+
+    public IngestionStatus getStatus() { return status; }
+    public void setStatus(IngestionStatus status) { this.status = status; }
+
+    public Integer getTotalChunks() { return totalChunks; }
+    public void setTotalChunks(Integer totalChunks) { this.totalChunks = totalChunks; }
+
+    public int getReusedChunks() { return reusedChunks; }
+    public void setReusedChunks(int reusedChunks) { this.reusedChunks = reusedChunks; }
+
+    public int getEmbeddedChunks() { return embeddedChunks; }
+    public void setEmbeddedChunks(int embeddedChunks) { this.embeddedChunks = embeddedChunks; }
+
+    public int getPersistedChunks() { return persistedChunks; }
+    public void setPersistedChunks(int persistedChunks) { this.persistedChunks = persistedChunks; }
+
+    public int getRemovedChunks() { return removedChunks; }
+    public void setRemovedChunks(int removedChunks) { this.removedChunks = removedChunks; }
+
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
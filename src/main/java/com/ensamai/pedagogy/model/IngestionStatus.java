@@ -0,0 +1,8 @@
+package com.ensamai.pedagogy.model;
+
+public enum IngestionStatus {
+    QUEUED,     // Waiting for a pipeline slot
+    RUNNING,    // Chunk, embed and persist stages in progress
+    COMPLETED,  // Every chunk persisted
+    FAILED      // Stopped, see errorMessage
+}
@@ -0,0 +1,54 @@
+package com.ensamai.pedagogy.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * An AI practice quiz generated ahead of time, waiting to be handed to the next
+ * student of the course at this difficulty. Deleted when taken.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_pooled_quiz_key", columnList = "courseId, difficulty, id"))
+public class PooledQuiz {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long courseId;
+
+    @Enumerated(EnumType.STRING)
+    private QuizDifficulty difficulty;
+
+    // the model's JSON array of questions, as generateQuiz returns it
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String questionsJson;
+
+    private LocalDateTime createdAt;
+
+    public PooledQuiz() {
+    }
+
+    public PooledQuiz(Long courseId, QuizDifficulty difficulty, String questionsJson) {
+        this.courseId = courseId;
+        this.difficulty = difficulty;
+        this.questionsJson = questionsJson;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getCourseId() { return courseId; }
+    public void setCourseId(Long courseId) { this.courseId = courseId; }
+
+    public QuizDifficulty getDifficulty() { return difficulty; }
+    public void setDifficulty(QuizDifficulty difficulty) { this.difficulty = difficulty; }
+
+    public String getQuestionsJson() { return questionsJson; }
+    public void setQuestionsJson(String questionsJson) { this.questionsJson = questionsJson; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
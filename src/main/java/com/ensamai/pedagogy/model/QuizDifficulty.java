@@ -0,0 +1,18 @@
+package com.ensamai.pedagogy.model;
+
+public enum QuizDifficulty {
+    EASY(5, "Focus on basic definitions and core concepts."),
+    MEDIUM(10, "The student has a grasp of basics. Introduce application-based questions and slightly more complex scenarios."),
+    HARD(15, "The student is proficient. Challenge them with complex, edge-case, or multi-step reasoning questions.");
+
+    private final int questionCount;
+    private final String pedagogicalGoal;
+
+    QuizDifficulty(int questionCount, String pedagogicalGoal) {
+        this.questionCount = questionCount;
+        this.pedagogicalGoal = pedagogicalGoal;
+    }
+
+    public int getQuestionCount() { return questionCount; }
+    public String getPedagogicalGoal() { return pedagogicalGoal; }
+}
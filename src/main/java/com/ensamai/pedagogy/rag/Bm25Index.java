@@ -0,0 +1,264 @@
+package com.ensamai.pedagogy.rag;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over chunk text with Okapi BM25 scoring.
+ * Posting lists are primitive int arrays (document, term frequency) per term;
+ * documents are internal ints mapped to chunk and course ids. Deletes are tombstones,
+ * skipped at query time and dropped by {@link #compact()}.
+ */
+public class Bm25Index {
+
+    /** Course filter value meaning "search every course". */
+    public static final long ALL_COURSES = -1L;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // English and French function words, too common to discriminate between chunks
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "and", "for", "are", "was", "with", "this", "that", "from", "its", "into", "not", "but",
+            "les", "des", "une", "est", "pour", "dans", "par", "sur", "que", "qui", "aux", "avec", "son",
+            "ses", "pas", "plus", "ces", "cette", "elle", "ils", "nous", "vous", "leur", "sont", "etre");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<Postings> postings = new ArrayList<>();
+
+    private int docCount = 0;
+    private long[] chunkIds = new long[16];
+    private long[] courseIds = new long[16];
+    private int[] lengths = new int[16];
+    private final BitSet deleted = new BitSet();
+    private final Map<Long, Integer> docByChunkId = new HashMap<>();
+    private int liveDocs = 0;
+    private long liveLength = 0;
+
+    public void add(long chunkId, long courseId, String text) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String token : tokenize(text)) {
+            frequencies.merge(token, 1, Integer::sum);
+            length++;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer previous = docByChunkId.get(chunkId);
+            if (previous != null) markDeleted(previous);
+
+            int doc = docCount++;
+            ensureCapacity(docCount);
+            chunkIds[doc] = chunkId;
+            courseIds[doc] = courseId;
+            lengths[doc] = length;
+            docByChunkId.put(chunkId, doc);
+            liveDocs++;
+            liveLength += length;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                Integer termId = termIds.get(entry.getKey());
+                if (termId == null) {
+                    termId = postings.size();
+                    termIds.put(entry.getKey(), termId);
+                    postings.add(new Postings());
+                }
+                postings.get(termId).add(doc, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean deleteChunk(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docByChunkId.remove(chunkId);
+            if (doc == null) return false;
+            markDeleted(doc);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int deleteCourse(long courseId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                if (courseIds[doc] == courseId && !deleted.get(doc)) {
+                    docByChunkId.remove(chunkIds[doc]);
+                    markDeleted(doc);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the ids of the {@code k} best BM25 matches of the course (or of every course)
+     * to {@code out}, best first, and returns how many were written. Chunks sharing no
+     * term with the query are never returned.
+     */
+    public int search(String query, int k, long courseFilter, long[] out) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0 || terms.isEmpty()) return 0;
+            float averageLength = Math.max(1f, (float) liveLength / liveDocs);
+            // dense accumulator, fine for the chunk counts of one node
+            float[] scores = new float[docCount];
+            BitSet matched = new BitSet(docCount);
+            for (String term : terms) {
+                Integer termId = termIds.get(term);
+                if (termId == null) continue;
+                Postings list = postings.get(termId);
+                // document frequencies still count tombstoned docs until the next compact()
+                float idf = (float) Math.log(1 + (docCount - list.size + 0.5) / (list.size + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    if (deleted.get(doc)) continue;
+                    if (courseFilter != ALL_COURSES && courseIds[doc] != courseFilter) continue;
+                    float tf = list.frequencies[i];
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[doc] / averageLength));
+                    matched.set(doc);
+                }
+            }
+
+            TopK topK = new TopK(k);
+            for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                topK.offer(doc, scores[doc]);
+            }
+            int[] winners = new int[k];
+            int count = topK.drainDescending(winners);
+            for (int i = 0; i < count; i++) {
+                out[i] = chunkIds[winners[i]];
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int liveSize() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return docCount - liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops tombstoned documents from the postings and renumbers the live ones.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            int[] remap = new int[docCount];
+            int live = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                if (deleted.get(doc)) {
+                    remap[doc] = -1;
+                    continue;
+                }
+                remap[doc] = live;
+                chunkIds[live] = chunkIds[doc];
+                courseIds[live] = courseIds[doc];
+                lengths[live] = lengths[doc];
+                docByChunkId.put(chunkIds[live], live);
+                live++;
+            }
+            for (Postings list : postings) {
+                int kept = 0;
+                for (int i = 0; i < list.size; i++) {
+                    int doc = remap[list.docs[i]];
+                    if (doc < 0) continue;
+                    list.docs[kept] = doc;
+                    list.frequencies[kept] = list.frequencies[i];
+                    kept++;
+                }
+                list.size = kept;
+            }
+            // terms left without postings keep their id, with an empty list
+            docCount = live;
+            deleted.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lowercased, accent-folded words of at least two letters or digits, stop words removed.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        for (String token : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() < 2 || STOP_WORDS.contains(token)) continue;
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private void markDeleted(int doc) {
+        if (deleted.get(doc)) return;
+        deleted.set(doc);
+        liveDocs--;
+        liveLength -= lengths[doc];
+    }
+
+    private void ensureCapacity(int docs) {
+        if (docs <= chunkIds.length) return;
+        int capacity = Math.max(docs, chunkIds.length * 2);
+        chunkIds = Arrays.copyOf(chunkIds, capacity);
+        courseIds = Arrays.copyOf(courseIds, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+    }
+
+    /**
+     * Documents (ascending, since docs are only ever appended) and their term frequencies.
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] frequencies = new int[4];
+        int size = 0;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+}
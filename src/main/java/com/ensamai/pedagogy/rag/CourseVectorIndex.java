@@ -0,0 +1,38 @@
+package com.ensamai.pedagogy.rag;
+
+/**
+ * Resident vectors of one course: a contiguous row-major float matrix
+ * (one row of {@code dimension} floats per chunk) and the matching chunk ids.
+ */
+public class CourseVectorIndex {
+
+    private final long[] chunkIds;
+    private final float[] matrix;
+    private final int dimension;
+
+    public CourseVectorIndex(long[] chunkIds, float[] matrix, int dimension) {
+        if (chunkIds.length * dimension != matrix.length) {
+            throw new IllegalArgumentException("Matrix size does not match " + chunkIds.length + " x " + dimension);
+        }
+        this.chunkIds = chunkIds;
+        this.matrix = matrix;
+        this.dimension = dimension;
+    }
+
+    public int size() { return chunkIds.length; }
+
+    public int getDimension() { return dimension; }
+
+    public long getChunkId(int row) { return chunkIds[row]; }
+
+    public long[] getChunkIds() { return chunkIds; }
+
+    public float[] getMatrix() { return matrix; }
+
+    /**
+     * Approximate heap footprint, used for the cache byte budget.
+     */
+    public long sizeInBytes() {
+        return (long) matrix.length * Float.BYTES + (long) chunkIds.length * Long.BYTES + 64;
+    }
+}
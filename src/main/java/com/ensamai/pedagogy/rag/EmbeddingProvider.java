@@ -0,0 +1,47 @@
+package com.ensamai.pedagogy.rag;
+
+import java.util.List;
+
+/**
+ * Turns text into embedding vectors, the backend behind EmbeddingService.
+ * The Gemini API is the default; the local-embeddings profile switches to an in-process provider.
+ * Vectors of different providers live in different spaces, so a course embedded with one
+ * provider has to be re-ingested before it can be searched with another.
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Identifies the model, part of the embedding cache key and of index file names.
+     */
+    String modelName();
+
+    /**
+     * The raw (not normalized) embedding of the text, or an empty vector when it failed.
+     */
+    float[] embed(String text);
+
+    /**
+     * Embeddings of the texts, in input order; texts that failed get an empty vector.
+     */
+    List<float[]> embedAll(List<String> texts);
+
+    /**
+     * Texts worth sending per embedAll call during ingestion.
+     */
+    int batchSize();
+
+    /**
+     * embedAll batches the ingestion pipeline keeps in flight at once.
+     */
+    default int maxInFlightBatches() {
+        return 1;
+    }
+
+    /**
+     * Whether results are worth keeping in the embedding cache, false when computing
+     * a vector is cheaper than looking it up.
+     */
+    default boolean cacheable() {
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ensamai.pedagogy.rag;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * In-process embeddings by feature hashing: every word and word bigram of the text (see
+ * Bm25Index.tokenize) adds a signed, log-damped weight to one of {@code dimension} buckets.
+ * No network and no model file, microseconds per chunk, deterministic. Texts sharing words
+ * land close together, so retrieval behaves like a fuzzy keyword search, which is enough to
+ * exercise and benchmark ingestion and retrieval offline.
+ */
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+
+    private static final float BIGRAM_WEIGHT = 0.5f;
+
+    private final int dimension;
+    private final int batchSize;
+
+    public HashingEmbeddingProvider(int dimension, int batchSize) {
+        if (dimension < 1) throw new IllegalArgumentException("dimension must be positive");
+        this.dimension = dimension;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public String modelName() {
+        return "hashing-" + dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] counts = new float[dimension];
+        String previous = null;
+        for (String token : Bm25Index.tokenize(text)) {
+            add(counts, token, 1f);
+            if (previous != null) add(counts, previous + ' ' + token, BIGRAM_WEIGHT);
+            previous = token;
+        }
+        // sublinear term frequency, so one repeated word does not dominate the vector
+        for (int i = 0; i < dimension; i++) {
+            float c = counts[i];
+            if (c != 0) counts[i] = Math.signum(c) * (float) Math.log1p(Math.abs(c));
+        }
+        return counts;
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        return texts.parallelStream().map(this::embed).toList();
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public boolean cacheable() {
+        return false;
+    }
+
+    private void add(float[] counts, String feature, float weight) {
+        int hash = murmurMix(feature);
+        int bucket = Math.floorMod(hash, dimension);
+        // the sign comes from other bits, so bucket collisions cancel out on average
+        counts[bucket] += (hash & 0x40000000) != 0 ? weight : -weight;
+    }
+
+    // FNV-1a over UTF-8, finished with the murmur3 avalanche
+    private static int murmurMix(String feature) {
+        int h = 0x811c9dc5;
+        for (byte b : feature.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
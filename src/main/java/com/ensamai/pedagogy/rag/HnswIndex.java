@@ -0,0 +1,466 @@
+package com.ensamai.pedagogy.rag;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical Navigable Small World graph over unit-normalized chunk vectors
+ * (similarity = dot product). Supports incremental insert, tombstone delete
+ * per course, course-id filtered search and a binary on-disk form. A filtered search
+ * that would score more nodes than the course holds scans the course exactly instead.
+ * Searches run concurrently; inserts and deletes take the write lock.
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 1;
+
+    /** Course filter value meaning "search every course". */
+    public static final long ALL_COURSES = -1L;
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private volatile int efSearch;
+    private final double levelMultiplier;
+    private final SimilarityKernel kernel;
+    private final Random random = new Random(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int size = 0;
+    private float[] vectors = new float[0];
+    private long[] chunkIds = new long[0];
+    private long[] courseIds = new long[0];
+    private int[] levels = new int[0];
+    private int[][][] links = new int[0][][]; // links[node][level] -> neighbour nodes
+    private final BitSet deleted = new BitSet();
+    private int deletedCount = 0;
+    private final Map<Long, Integer> nodeByChunkId = new HashMap<>();
+    private final Map<Long, Integer> liveByCourse = new HashMap<>();
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch, SimilarityKernel kernel) {
+        if (m < 2) throw new IllegalArgumentException("M must be at least 2: " + m);
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.kernel = kernel;
+    }
+
+    public int getDimension() { return dimension; }
+
+    public int getEfSearch() { return efSearch; }
+
+    public void setEfSearch(int efSearch) { this.efSearch = efSearch; }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int liveSize() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a unit-normalized vector. Re-inserting a chunk id tombstones its previous node.
+     */
+    public void insert(long chunkId, long courseId, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodeByChunkId.get(chunkId);
+            if (previous != null) markDeleted(previous);
+
+            int node = size;
+            int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+            ensureCapacity(node + 1);
+            System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+            chunkIds[node] = chunkId;
+            courseIds[node] = courseId;
+            levels[node] = level;
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) links[node][l] = new int[0];
+            size++;
+            nodeByChunkId.put(chunkId, node);
+            liveByCourse.merge(courseId, 1, Integer::sum);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(vector, current, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(vector, current, efConstruction, l, ALL_COURSES, false, Integer.MAX_VALUE);
+                int maxConnections = l == 0 ? maxM0 : m;
+                int[] neighbours = selectNeighbours(candidates, m);
+                links[node][l] = neighbours;
+                for (int neighbour : neighbours) {
+                    connect(neighbour, node, l, maxConnections);
+                }
+                current = candidates.get(0).node;
+            }
+
+            if (level > maxLevel) {
+                entryPoint = node;
+                maxLevel = level;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tombstones every node of the course. Nodes stay in the graph for connectivity
+     * but are never returned; they disappear on the next rebuild.
+     */
+    public int deleteCourse(long courseId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int node = 0; node < size; node++) {
+                if (courseIds[node] == courseId && !deleted.get(node)) {
+                    markDeleted(node);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean deleteChunk(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeByChunkId.get(chunkId);
+            if (node == null || deleted.get(node)) return false;
+            markDeleted(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes up to k best live chunk ids into {@code out}, best first, and returns the count.
+     * Pass {@link #ALL_COURSES} to search across courses.
+     */
+    public int search(float[] query, int k, long courseFilter, long[] out) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0 || out.length == 0) return 0;
+            int ef = Math.max(efSearch, k);
+            // a filtered walk scores other courses' nodes on its way to the course's own; past
+            // as many scores as the course has nodes, scanning the course is cheaper
+            int maxScored = Integer.MAX_VALUE;
+            if (courseFilter != ALL_COURSES) {
+                int courseSize = liveByCourse.getOrDefault(courseFilter, 0);
+                if (courseSize == 0) return 0;
+                if (courseSize <= ef) return exactSearch(query, k, courseFilter, out);
+                maxScored = courseSize;
+            }
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(query, current, l);
+            }
+            List<Candidate> results = searchLayer(query, current, ef, 0, courseFilter, true, maxScored);
+            if (results == null) return exactSearch(query, k, courseFilter, out);
+            int count = Math.min(k, Math.min(results.size(), out.length));
+            for (int i = 0; i < count; i++) {
+                out[i] = chunkIds[results.get(i).node];
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Brute-force search over the live nodes of one course.
+     */
+    private int exactSearch(float[] query, int k, long courseId, long[] out) {
+        TopK best = new TopK(Math.min(k, out.length));
+        for (int node = 0; node < size; node++) {
+            if (courseIds[node] == courseId && !deleted.get(node)) best.offer(node, score(query, node));
+        }
+        int[] nodes = new int[best.size()];
+        int count = best.drainDescending(nodes);
+        for (int i = 0; i < count; i++) {
+            out[i] = chunkIds[nodes[i]];
+        }
+        return count;
+    }
+
+    // --- graph construction and search ---
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = score(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : links[current][level]) {
+                float s = score(query, neighbour);
+                if (s > best) {
+                    best = s;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer. When {@code liveOnly} is set, tombstoned nodes and
+     * nodes outside the course filter are traversed but never kept as results, so the
+     * search keeps expanding until it has ef matching nodes or runs out of graph. Gives up
+     * and returns null once it has scored more than {@code maxScored} nodes.
+     * Returns results sorted best first.
+     */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level, long courseFilter, boolean liveOnly,
+                                        int maxScored) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.score));
+
+        int scored = 1;
+        Candidate first = new Candidate(start, score(query, start));
+        visited.set(start);
+        frontier.add(first);
+        if (accepts(start, courseFilter, liveOnly)) results.add(first);
+
+        while (!frontier.isEmpty()) {
+            Candidate candidate = frontier.poll();
+            if (results.size() >= ef && candidate.score < results.peek().score) break;
+
+            for (int neighbour : links[candidate.node][level]) {
+                if (visited.get(neighbour)) continue;
+                visited.set(neighbour);
+                if (++scored > maxScored) return null;
+                float s = score(query, neighbour);
+                if (results.size() < ef || s > results.peek().score) {
+                    Candidate next = new Candidate(neighbour, s);
+                    frontier.add(next);
+                    if (accepts(neighbour, courseFilter, liveOnly)) {
+                        results.add(next);
+                        if (results.size() > ef) results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        return sorted;
+    }
+
+    private boolean accepts(int node, long courseFilter, boolean liveOnly) {
+        if (!liveOnly) return true;
+        if (deleted.get(node)) return false;
+        return courseFilter == ALL_COURSES || courseIds[node] == courseFilter;
+    }
+
+    /**
+     * Neighbour selection heuristic from the HNSW paper: walking candidates best first,
+     * a candidate is kept only if it is closer to the base node than to every neighbour
+     * already kept, which spreads links across clusters. Remaining slots are filled with
+     * the closest discarded candidates.
+     */
+    private int[] selectNeighbours(List<Candidate> sortedCandidates, int limit) {
+        int[] selected = new int[Math.min(limit, sortedCandidates.size())];
+        int count = 0;
+        List<Candidate> discarded = new ArrayList<>();
+        for (Candidate candidate : sortedCandidates) {
+            if (count == selected.length) break;
+            boolean diverse = true;
+            for (int i = 0; i < count; i++) {
+                if (similarity(candidate.node, selected[i]) > candidate.score) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate.node;
+            } else {
+                discarded.add(candidate);
+            }
+        }
+        for (int i = 0; count < selected.length && i < discarded.size(); i++) {
+            selected[count++] = discarded.get(i).node;
+        }
+        return selected;
+    }
+
+    // node-to-node similarity, only used while building the graph
+    private float similarity(int a, int b) {
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        float sum = 0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return sum;
+    }
+
+    private void connect(int node, int neighbour, int level, int maxConnections) {
+        int[] current = links[node][level];
+        int[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = neighbour;
+        if (grown.length <= maxConnections) {
+            links[node][level] = grown;
+            return;
+        }
+        // Over capacity: keep the closest maxConnections neighbours of this node
+        float[] row = Arrays.copyOfRange(vectors, node * dimension, (node + 1) * dimension);
+        List<Candidate> scored = new ArrayList<>(grown.length);
+        for (int n : grown) {
+            scored.add(new Candidate(n, score(row, n)));
+        }
+        scored.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        links[node][level] = selectNeighbours(scored, maxConnections);
+    }
+
+    private float score(float[] query, int node) {
+        return kernel.dot(vectors, node * dimension, query);
+    }
+
+    private void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+            liveByCourse.merge(courseIds[node], -1, (live, change) -> live + change == 0 ? null : live + change);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= chunkIds.length) return;
+        int capacity = Math.max(required, Math.max(16, chunkIds.length * 3 / 2));
+        vectors = Arrays.copyOf(vectors, capacity * dimension);
+        chunkIds = Arrays.copyOf(chunkIds, capacity);
+        courseIds = Arrays.copyOf(courseIds, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    private static final class Candidate {
+        final int node;
+        final float score;
+
+        Candidate(int node, float score) {
+            this.node = node;
+            this.score = score;
+        }
+    }
+
+    // --- persistence ---
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dimension);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int node = 0; node < size; node++) {
+                out.writeLong(chunkIds[node]);
+                out.writeLong(courseIds[node]);
+                out.writeBoolean(deleted.get(node));
+                for (int i = 0; i < dimension; i++) {
+                    out.writeFloat(vectors[node * dimension + i]);
+                }
+                out.writeInt(levels[node]);
+                for (int l = 0; l <= levels[node]; l++) {
+                    int[] neighbours = links[node][l];
+                    out.writeInt(neighbours.length);
+                    for (int n : neighbours) out.writeInt(n);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static HnswIndex readFrom(DataInputStream in, int efSearch, SimilarityKernel kernel) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not an HNSW index file");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported HNSW index version " + version);
+
+        int dimension = in.readInt();
+        int m = in.readInt();
+        int efConstruction = in.readInt();
+        HnswIndex index = new HnswIndex(dimension, m, efConstruction, efSearch, kernel);
+
+        int size = in.readInt();
+        index.ensureCapacity(size);
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+        for (int node = 0; node < size; node++) {
+            index.chunkIds[node] = in.readLong();
+            index.courseIds[node] = in.readLong();
+            index.liveByCourse.merge(index.courseIds[node], 1, Integer::sum);
+            if (in.readBoolean()) index.markDeleted(node);
+            for (int i = 0; i < dimension; i++) {
+                index.vectors[node * dimension + i] = in.readFloat();
+            }
+            int level = in.readInt();
+            index.levels[node] = level;
+            index.links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                int[] neighbours = new int[in.readInt()];
+                for (int i = 0; i < neighbours.length; i++) neighbours[i] = in.readInt();
+                index.links[node][l] = neighbours;
+            }
+            if (!index.deleted.get(node)) index.nodeByChunkId.put(index.chunkIds[node], node);
+        }
+        index.size = size;
+        return index;
+    }
+}
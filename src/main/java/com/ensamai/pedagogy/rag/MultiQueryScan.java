@@ -0,0 +1,70 @@
+package com.ensamai.pedagogy.rag;
+
+import java.util.stream.IntStream;
+
+/**
+ * Scores many queries against one row-major matrix in a single pass.
+ *
+ * Rows are visited in blocks small enough to stay in the L2 cache, and every query is scored
+ * against a block before moving on, so the matrix is streamed from memory once however many
+ * queries there are. Large matrices are split into contiguous row ranges scanned in parallel,
+ * each with its own top-k heaps, merged at the end.
+ */
+public final class MultiQueryScan {
+
+    // bytes of matrix rows scored against every query before moving on
+    private static final int BLOCK_BYTES = 128 * 1024;
+    // below this many rows per task, splitting costs more than it saves
+    private static final int MIN_ROWS_PER_TASK = 4096;
+
+    private MultiQueryScan() {
+    }
+
+    /**
+     * Top {@code k} rows of the matrix for each query, best first. Queries whose length is not
+     * the matrix dimension (e.g. a failed embedding) get no rows.
+     */
+    public static int[][] topRows(SimilarityKernel kernel, float[] matrix, int rows, int dimension,
+                                  float[][] queries, int k) {
+        int tasks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), rows / MIN_ROWS_PER_TASK));
+        TopK[][] partial = new TopK[tasks][];
+        int rowsPerTask = (rows + tasks - 1) / tasks;
+        IntStream.range(0, tasks).parallel().forEach(t -> partial[t] = scan(kernel, matrix,
+                t * rowsPerTask, Math.min(rows, (t + 1) * rowsPerTask), dimension, queries, k));
+
+        int[][] winners = new int[queries.length][];
+        int[] rowsOut = new int[k];
+        float[] scoresOut = new float[k];
+        for (int q = 0; q < queries.length; q++) {
+            TopK merged = partial[0][q];
+            for (int t = 1; t < tasks; t++) {
+                int count = partial[t][q].drainDescending(rowsOut, scoresOut);
+                for (int i = 0; i < count; i++) merged.offer(rowsOut[i], scoresOut[i]);
+            }
+            int[] top = new int[merged.size()];
+            merged.drainDescending(top);
+            winners[q] = top;
+        }
+        return winners;
+    }
+
+    private static TopK[] scan(SimilarityKernel kernel, float[] matrix, int from, int to, int dimension,
+                               float[][] queries, int k) {
+        TopK[] topKs = new TopK[queries.length];
+        for (int q = 0; q < queries.length; q++) topKs[q] = new TopK(k);
+
+        int blockRows = Math.max(16, BLOCK_BYTES / (dimension * Float.BYTES));
+        for (int blockStart = from; blockStart < to; blockStart += blockRows) {
+            int blockEnd = Math.min(to, blockStart + blockRows);
+            for (int q = 0; q < queries.length; q++) {
+                float[] query = queries[q];
+                if (query.length != dimension) continue;
+                TopK topK = topKs[q];
+                for (int row = blockStart, offset = blockStart * dimension; row < blockEnd; row++, offset += dimension) {
+                    topK.offer(row, kernel.dot(matrix, offset, query));
+                }
+            }
+        }
+        return topKs;
+    }
+}
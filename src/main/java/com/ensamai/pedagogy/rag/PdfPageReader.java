@@ -0,0 +1,128 @@
+package com.ensamai.pedagogy.rag;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Extracts the text of a PDF one page at a time, several pages in parallel.
+ *
+ * PDDocument is not thread-safe, so each worker parses its own document over the shared bytes
+ * and claims the next page number. Pages are handed to the consumer in order, and at most
+ * {@code pagesInFlight} pages are extracted ahead of it, so memory does not grow with the
+ * page count; decoded PDF streams are cached in temp files rather than on the heap.
+ */
+public class PdfPageReader {
+
+    @FunctionalInterface
+    public interface PageConsumer {
+        void accept(int pageNumber, String text) throws Exception;
+    }
+
+    private static final long POLL_MILLIS = 200;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int pagesInFlight;
+
+    public PdfPageReader(ExecutorService executor, int parallelism, int pagesInFlight) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.pagesInFlight = Math.max(this.parallelism, pagesInFlight);
+    }
+
+    /**
+     * Calls the consumer with the text of every page, 1-based and in order, on the calling
+     * thread. Returns the number of pages.
+     */
+    public int read(byte[] pdf, PageConsumer consumer) throws Exception {
+        int pages;
+        try (PDDocument document = load(pdf)) {
+            pages = document.getNumberOfPages();
+        }
+        if (pages == 0) return 0;
+
+        Semaphore window = new Semaphore(pagesInFlight);
+        AtomicInteger nextPage = new AtomicInteger(1);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // page -> text, extracted but not consumed yet; also the monitor the consumer waits on
+        Map<Integer, String> extracted = new HashMap<>();
+
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(parallelism, pages); i++) {
+            workers.add(executor.submit(() -> extract(pdf, pages, nextPage, window, cancelled, failure, extracted)));
+        }
+        try {
+            for (int page = 1; page <= pages; page++) {
+                String text;
+                synchronized (extracted) {
+                    while ((text = extracted.remove(page)) == null) {
+                        Throwable t = failure.get();
+                        if (t != null) throw new IOException("Error extracting PDF page: " + t.getMessage(), t);
+                        extracted.wait(POLL_MILLIS);
+                    }
+                }
+                window.release();
+                consumer.accept(page, text);
+            }
+            return pages;
+        } finally {
+            // stops the workers when the consumer failed or was interrupted
+            cancelled.set(true);
+            window.release(pagesInFlight);
+            workers.forEach(w -> w.cancel(true));
+        }
+    }
+
+    private static void extract(byte[] pdf, int pages, AtomicInteger nextPage, Semaphore window,
+                                AtomicBoolean cancelled, AtomicReference<Throwable> failure,
+                                Map<Integer, String> extracted) {
+        try (PDDocument document = load(pdf)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            while (!cancelled.get()) {
+                // pages are claimed in order, so the page the consumer waits for is always being worked on
+                window.acquire();
+                int page = nextPage.getAndIncrement();
+                if (page > pages || cancelled.get()) {
+                    window.release();
+                    return;
+                }
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                String text = stripper.getText(document);
+                synchronized (extracted) {
+                    extracted.put(page, text);
+                    extracted.notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+            synchronized (extracted) {
+                extracted.notifyAll();
+            }
+        }
+    }
+
+    private static PDDocument load(byte[] pdf) throws IOException {
+        // the buffer wraps the bytes without copying them
+        return Loader.loadPDF(new RandomAccessReadBuffer(pdf), "", null, null,
+                IOUtils.createTempFileOnlyStreamCache());
+    }
+}
@@ -0,0 +1,247 @@
+package com.ensamai.pedagogy.rag;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Product-quantized codes of every chunk, one contiguous byte array of
+ * {@code subspaces} bytes per chunk, scanned with the query's score table.
+ * A million 768-d chunks take about 140 MB (96 byte codes, ids and the chunk-id lookup table)
+ * instead of 3 GB of floats.
+ * Supports incremental add, tombstone delete, course-id filtered search and a binary on-disk form.
+ */
+public class PqIndex {
+
+    private static final int MAGIC = 0x50514958; // "PQIX"
+    private static final int VERSION = 1;
+
+    /** Course filter value meaning "search every course". */
+    public static final long ALL_COURSES = -1L;
+
+    private final ProductQuantizer quantizer;
+    private final int codeSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int size = 0;
+    private byte[] codes = new byte[0];
+    private long[] chunkIds = new long[0];
+    private long[] courseIds = new long[0];
+    private final BitSet deleted = new BitSet();
+    private int deletedCount = 0;
+    // open-addressing chunk id -> row + 1 table (0 marks a free slot), at most half full,
+    // instead of a boxed map costing some 60 bytes per chunk
+    private long[] slotChunkIds = new long[16];
+    private int[] slotRows = new int[16];
+    private int mappedChunks = 0;
+
+    public PqIndex(ProductQuantizer quantizer) {
+        this.quantizer = quantizer;
+        this.codeSize = quantizer.getSubspaces();
+    }
+
+    public int getDimension() { return quantizer.getDimension(); }
+
+    public ProductQuantizer getQuantizer() { return quantizer; }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int liveSize() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(long chunkId, long courseId, float[] vector) {
+        if (vector.length != quantizer.getDimension()) {
+            throw new IllegalArgumentException("Expected dimension " + quantizer.getDimension() + ", got " + vector.length);
+        }
+        byte[] code = new byte[codeSize];
+        quantizer.encode(vector, code, 0);
+
+        lock.writeLock().lock();
+        try {
+            int existing = rowOf(chunkId);
+            if (existing >= 0 && !deleted.get(existing)) markDeleted(existing);
+            ensureCapacity(size + 1);
+            System.arraycopy(code, 0, codes, size * codeSize, codeSize);
+            chunkIds[size] = chunkId;
+            courseIds[size] = courseId;
+            putRow(chunkId, size);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean deleteChunk(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(chunkId);
+            if (row < 0 || deleted.get(row)) return false;
+            markDeleted(row);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int deleteCourse(long courseId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int row = 0; row < size; row++) {
+                if (courseIds[row] == courseId && !deleted.get(row)) {
+                    markDeleted(row);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scans every live code of the course (or of every course) and writes the ids of the
+     * {@code k} best approximate matches to {@code out}, best first. Returns how many were written.
+     */
+    public int search(float[] query, int k, long courseFilter, long[] out) {
+        float[] table = quantizer.scoreTable(query);
+        TopK topK = new TopK(k);
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                if (courseFilter != ALL_COURSES && courseIds[row] != courseFilter) continue;
+                if (deleted.get(row)) continue;
+                topK.offer(row, quantizer.score(table, codes, row * codeSize));
+            }
+            int[] rows = new int[k];
+            int count = topK.drainDescending(rows);
+            for (int i = 0; i < count; i++) {
+                out[i] = chunkIds[rows[i]];
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) codes.length + 16L * chunkIds.length + 12L * slotRows.length + quantizer.sizeInBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- persistence: header, codebooks, then the live rows only ---
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            quantizer.writeTo(out);
+            out.writeInt(size - deletedCount);
+            for (int row = 0; row < size; row++) {
+                if (deleted.get(row)) continue;
+                out.writeLong(chunkIds[row]);
+                out.writeLong(courseIds[row]);
+                out.write(codes, row * codeSize, codeSize);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static PqIndex readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a PQ index file");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported PQ index version " + version);
+
+        PqIndex index = new PqIndex(ProductQuantizer.readFrom(in));
+        int count = in.readInt();
+        index.ensureCapacity(count);
+        for (int row = 0; row < count; row++) {
+            index.chunkIds[row] = in.readLong();
+            index.courseIds[row] = in.readLong();
+            in.readFully(index.codes, row * index.codeSize, index.codeSize);
+            index.putRow(index.chunkIds[row], row);
+        }
+        index.size = count;
+        return index;
+    }
+
+    // row of the chunk's latest code, or -1
+    private int rowOf(long chunkId) {
+        int mask = slotRows.length - 1;
+        for (int slot = slot(chunkId, mask); slotRows[slot] != 0; slot = (slot + 1) & mask) {
+            if (slotChunkIds[slot] == chunkId) return slotRows[slot] - 1;
+        }
+        return -1;
+    }
+
+    private void putRow(long chunkId, int row) {
+        if (2 * (mappedChunks + 1) > slotRows.length) growSlots();
+        int mask = slotRows.length - 1;
+        int slot = slot(chunkId, mask);
+        while (slotRows[slot] != 0 && slotChunkIds[slot] != chunkId) slot = (slot + 1) & mask;
+        if (slotRows[slot] == 0) mappedChunks++;
+        slotChunkIds[slot] = chunkId;
+        slotRows[slot] = row + 1;
+    }
+
+    private void growSlots() {
+        long[] oldChunkIds = slotChunkIds;
+        int[] oldRows = slotRows;
+        slotChunkIds = new long[oldRows.length * 2];
+        slotRows = new int[oldRows.length * 2];
+        mappedChunks = 0;
+        for (int i = 0; i < oldRows.length; i++) {
+            if (oldRows[i] != 0) putRow(oldChunkIds[i], oldRows[i] - 1);
+        }
+    }
+
+    private static int slot(long chunkId, int mask) {
+        // database ids are sequential: spread them over the table
+        long h = chunkId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void markDeleted(int row) {
+        deleted.set(row);
+        deletedCount++;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= chunkIds.length) return;
+        int capacity = Math.max(rows, Math.max(16, chunkIds.length + (chunkIds.length >> 1)));
+        codes = Arrays.copyOf(codes, capacity * codeSize);
+        chunkIds = Arrays.copyOf(chunkIds, capacity);
+        courseIds = Arrays.copyOf(courseIds, capacity);
+    }
+}
@@ -0,0 +1,187 @@
+package com.ensamai.pedagogy.rag;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Product quantizer for unit-length embeddings: the vector is cut into {@code subspaces}
+ * contiguous slices and each slice is replaced by the nearest of 256 centroids learnt
+ * with k-means, so a chunk is stored as one byte per subspace.
+ *
+ * Scoring is asymmetric: the query stays in float, {@link #scoreTable(float[])} computes
+ * its dot product with every centroid once, and a code is then scored with one table
+ * lookup per subspace.
+ */
+public class ProductQuantizer {
+
+    public static final int CENTROIDS = 256;
+
+    private final int dimension;
+    private final int subspaces;
+    // subspace s covers dimensions [bounds[s], bounds[s + 1])
+    private final int[] bounds;
+    // centroids of subspace s, row-major, CENTROIDS rows of (bounds[s + 1] - bounds[s]) floats
+    private final float[][] codebooks;
+
+    private ProductQuantizer(int dimension, int subspaces, float[][] codebooks) {
+        this.dimension = dimension;
+        this.subspaces = subspaces;
+        this.bounds = new int[subspaces + 1];
+        for (int s = 0; s <= subspaces; s++) {
+            bounds[s] = (int) ((long) s * dimension / subspaces);
+        }
+        this.codebooks = codebooks;
+    }
+
+    /**
+     * Learns the codebooks from {@code rows} training vectors stored row-major in {@code sample}.
+     * Fewer than 256 training rows simply leave some centroids duplicated.
+     */
+    public static ProductQuantizer train(float[] sample, int rows, int dimension, int subspaces,
+                                         int iterations, long seed) {
+        if (rows == 0) throw new IllegalArgumentException("Cannot train on an empty sample");
+        if (subspaces <= 0 || subspaces > dimension) {
+            throw new IllegalArgumentException("Subspaces must be in [1, " + dimension + "]: " + subspaces);
+        }
+        ProductQuantizer pq = new ProductQuantizer(dimension, subspaces, new float[subspaces][]);
+        // subspaces are independent, train them in parallel
+        IntStream.range(0, subspaces).parallel().forEach(s ->
+                pq.codebooks[s] = kMeans(sample, rows, dimension, pq.bounds[s], pq.bounds[s + 1],
+                        iterations, new Random(seed + s)));
+        return pq;
+    }
+
+    public int getDimension() { return dimension; }
+
+    public int getSubspaces() { return subspaces; }
+
+    /**
+     * Writes the code of {@code vector} (one byte per subspace) at {@code out[offset]}.
+     */
+    public void encode(float[] vector, byte[] out, int offset) {
+        for (int s = 0; s < subspaces; s++) {
+            out[offset + s] = (byte) nearest(codebooks[s], vector, 0, bounds[s], bounds[s + 1]);
+        }
+    }
+
+    /**
+     * Dot products of each query slice with each centroid, {@code table[s * 256 + c]}.
+     */
+    public float[] scoreTable(float[] query) {
+        float[] table = new float[subspaces * CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            int from = bounds[s];
+            int width = bounds[s + 1] - from;
+            float[] codebook = codebooks[s];
+            for (int c = 0; c < CENTROIDS; c++) {
+                float sum = 0f;
+                int base = c * width;
+                for (int d = 0; d < width; d++) {
+                    sum += codebook[base + d] * query[from + d];
+                }
+                table[s * CENTROIDS + c] = sum;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Approximate dot product of the query behind {@code table} with the code at {@code codes[offset]}.
+     */
+    public float score(float[] table, byte[] codes, int offset) {
+        float sum = 0f;
+        for (int s = 0; s < subspaces; s++) {
+            sum += table[s * CENTROIDS + (codes[offset + s] & 0xFF)];
+        }
+        return sum;
+    }
+
+    public long sizeInBytes() {
+        return (long) dimension * CENTROIDS * Float.BYTES + 64;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(dimension);
+        out.writeInt(subspaces);
+        for (float[] codebook : codebooks) {
+            for (float v : codebook) out.writeFloat(v);
+        }
+    }
+
+    public static ProductQuantizer readFrom(DataInputStream in) throws IOException {
+        int dimension = in.readInt();
+        int subspaces = in.readInt();
+        ProductQuantizer pq = new ProductQuantizer(dimension, subspaces, new float[subspaces][]);
+        for (int s = 0; s < subspaces; s++) {
+            float[] codebook = new float[CENTROIDS * (pq.bounds[s + 1] - pq.bounds[s])];
+            for (int i = 0; i < codebook.length; i++) codebook[i] = in.readFloat();
+            pq.codebooks[s] = codebook;
+        }
+        return pq;
+    }
+
+    // --- training ---
+
+    private static float[] kMeans(float[] sample, int rows, int dimension, int from, int to,
+                                  int iterations, Random random) {
+        int width = to - from;
+        float[] centroids = new float[CENTROIDS * width];
+        // seed with random sample rows
+        for (int c = 0; c < CENTROIDS; c++) {
+            int row = random.nextInt(rows);
+            System.arraycopy(sample, row * dimension + from, centroids, c * width, width);
+        }
+
+        double[] sums = new double[CENTROIDS * width];
+        int[] counts = new int[CENTROIDS];
+        for (int it = 0; it < iterations; it++) {
+            Arrays.fill(sums, 0.0);
+            Arrays.fill(counts, 0);
+            for (int r = 0; r < rows; r++) {
+                int c = nearest(centroids, sample, r * dimension, from, to);
+                counts[c]++;
+                for (int d = 0; d < width; d++) {
+                    sums[c * width + d] += sample[r * dimension + from + d];
+                }
+            }
+            for (int c = 0; c < CENTROIDS; c++) {
+                if (counts[c] == 0) {
+                    // re-seed an empty cluster on a random row so every code stays useful
+                    int row = random.nextInt(rows);
+                    System.arraycopy(sample, row * dimension + from, centroids, c * width, width);
+                    continue;
+                }
+                for (int d = 0; d < width; d++) {
+                    centroids[c * width + d] = (float) (sums[c * width + d] / counts[c]);
+                }
+            }
+        }
+        return centroids;
+    }
+
+    /**
+     * Index of the centroid closest (L2) to {@code vector[base + from .. base + to)}.
+     */
+    private static int nearest(float[] centroids, float[] vector, int base, int from, int to) {
+        int width = to - from;
+        int best = 0;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < CENTROIDS; c++) {
+            float distance = 0f;
+            int offset = c * width;
+            for (int d = 0; d < width; d++) {
+                float diff = vector[base + from + d] - centroids[offset + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
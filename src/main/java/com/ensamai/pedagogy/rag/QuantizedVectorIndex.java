@@ -0,0 +1,102 @@
+package com.ensamai.pedagogy.rag;
+
+import java.util.Arrays;
+
+/**
+ * int8 copy of a course's vectors for first-pass scoring: each dimension is mapped
+ * linearly from its [min, max] over the course onto the 256 byte codes, so a row takes
+ * {@code dimension} bytes instead of {@code 4 * dimension}.
+ *
+ * Decoding is x[d] ~ min[d] + step[d] * (code + 128), so for a query q
+ *   q . x ~ sum(q[d] * min[d]) + 128 * sum(q[d] * step[d]) + sum(q[d] * step[d] * code[d])
+ * where only the last term depends on the row. Scores are approximate; callers rerank
+ * the best candidates with the exact float vectors.
+ */
+public class QuantizedVectorIndex {
+
+    private final long[] chunkIds;
+    private final byte[] codes;
+    private final float[] min;
+    private final float[] step;
+    private final int dimension;
+
+    private QuantizedVectorIndex(long[] chunkIds, byte[] codes, float[] min, float[] step, int dimension) {
+        this.chunkIds = chunkIds;
+        this.codes = codes;
+        this.min = min;
+        this.step = step;
+        this.dimension = dimension;
+    }
+
+    public static QuantizedVectorIndex quantize(CourseVectorIndex index) {
+        int dimension = index.getDimension();
+        int rows = index.size();
+        float[] matrix = index.getMatrix();
+
+        float[] min = new float[dimension];
+        float[] max = new float[dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (int r = 0; r < rows; r++) {
+            int offset = r * dimension;
+            for (int d = 0; d < dimension; d++) {
+                float v = matrix[offset + d];
+                if (v < min[d]) min[d] = v;
+                if (v > max[d]) max[d] = v;
+            }
+        }
+
+        float[] step = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            if (rows == 0) min[d] = 0f;
+            float range = rows == 0 ? 0f : max[d] - min[d];
+            // a constant dimension decodes to min whatever the code
+            step[d] = range > 0f ? range / 255f : 0f;
+        }
+
+        byte[] codes = new byte[rows * dimension];
+        for (int r = 0; r < rows; r++) {
+            int offset = r * dimension;
+            for (int d = 0; d < dimension; d++) {
+                int level = step[d] == 0f ? 0 : Math.round((matrix[offset + d] - min[d]) / step[d]);
+                codes[offset + d] = (byte) (Math.min(255, Math.max(0, level)) - 128);
+            }
+        }
+        return new QuantizedVectorIndex(index.getChunkIds().clone(), codes, min, step, dimension);
+    }
+
+    public int size() { return chunkIds.length; }
+
+    public int getDimension() { return dimension; }
+
+    public long getChunkId(int row) { return chunkIds[row]; }
+
+    /**
+     * Scores every row against the query on the int8 codes and offers them to {@code topK}.
+     */
+    public void scoreAll(float[] query, TopK topK) {
+        float[] weights = new float[dimension];
+        double bias = 0.0;
+        for (int d = 0; d < dimension; d++) {
+            weights[d] = query[d] * step[d];
+            bias += query[d] * min[d] + 128.0 * weights[d];
+        }
+
+        int rows = chunkIds.length;
+        for (int r = 0; r < rows; r++) {
+            int offset = r * dimension;
+            float sum = 0f;
+            for (int d = 0; d < dimension; d++) {
+                sum += weights[d] * codes[offset + d];
+            }
+            topK.offer(r, (float) (bias + sum));
+        }
+    }
+
+    /**
+     * Approximate heap footprint, used for the cache byte budget.
+     */
+    public long sizeInBytes() {
+        return codes.length + (long) chunkIds.length * Long.BYTES + 2L * dimension * Float.BYTES + 64;
+    }
+}
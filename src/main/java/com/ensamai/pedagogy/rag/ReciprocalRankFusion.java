@@ -0,0 +1,40 @@
+package com.ensamai.pedagogy.rag;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal rank fusion of ranked id lists: an id scores the sum of 1 / (k + rank) over
+ * the lists it appears in (ranks from 1), so rankings whose scores are not comparable,
+ * such as cosine similarity and BM25, can be merged. Ties keep the order in which the ids
+ * were first seen, earlier lists first.
+ */
+public final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * Fuses the first {@code counts[i]} ids of each {@code rankings[i]}, writes the best
+     * to {@code out} and returns how many were written.
+     */
+    public static int fuse(int k, long[][] rankings, int[] counts, long[] out) {
+        Map<Long, Double> fused = new LinkedHashMap<>();
+        for (int list = 0; list < rankings.length; list++) {
+            for (int rank = 0; rank < counts[list]; rank++) {
+                fused.merge(rankings[list][rank], 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(fused.entrySet());
+        // stable sort, ties stay in first-seen order
+        ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed());
+        int count = Math.min(out.length, ranked.size());
+        for (int i = 0; i < count; i++) {
+            out[i] = ranked.get(i).getKey();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,17 @@
+package com.ensamai.pedagogy.rag;
+
+/**
+ * Portable fallback kernel: a plain scalar loop over the float arrays.
+ */
+public class ScalarSimilarityKernel implements SimilarityKernel {
+
+    @Override
+    public float dot(float[] matrix, int offset, float[] query) {
+        return VectorMath.dot(matrix, offset, query);
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,455 @@
+package com.ensamai.pedagogy.rag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only store of chunk embeddings in memory-mapped {@link VectorSegment} files.
+ *
+ * Every append writes a new segment; deletes are appended to a tombstone log (deleted
+ * courses and chunks are skipped at search time). The MANIFEST file lists the live
+ * segments and is replaced atomically, so a crash never exposes a half-written state.
+ * {@link #compact(long)} merges the small and the mostly-deleted segments, dropping their
+ * tombstoned rows.
+ *
+ * Searches run concurrently against an immutable snapshot of the segment list;
+ * appends, deletes and compaction are serialized.
+ */
+public class SegmentStore {
+
+    private static final String MANIFEST = "MANIFEST";
+    private static final String TOMBSTONES = "tombstones.log";
+    private static final byte DELETED_COURSE = 'C';
+    private static final byte DELETED_CHUNK = 'K';
+    // a segment with more tombstoned rows than this is rewritten by compaction
+    private static final double MAX_DEAD_FRACTION = 0.25;
+
+    /** Course filter value meaning "search every course". */
+    public static final long ALL_COURSES = -1L;
+
+    private final Path directory;
+    private volatile List<VectorSegment> segments = List.of();
+    private final Set<Long> deletedCourses = ConcurrentHashMap.newKeySet();
+    private final Set<Long> deletedChunks = ConcurrentHashMap.newKeySet();
+    private long nextSegment = 1;
+
+    private SegmentStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the store in {@code directory}, creating it when missing, and maps every live segment.
+     */
+    public static SegmentStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        SegmentStore store = new SegmentStore(directory);
+        Path manifest = directory.resolve(MANIFEST);
+        List<VectorSegment> segments = new ArrayList<>();
+        Set<String> live = new HashSet<>();
+        if (Files.exists(manifest)) {
+            for (String name : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (name.isBlank()) continue;
+                segments.add(VectorSegment.open(directory.resolve(name)));
+                live.add(name);
+                store.nextSegment = Math.max(store.nextSegment, sequenceOf(name) + 1);
+            }
+        }
+        store.segments = List.copyOf(segments);
+        store.readTombstones();
+
+        // leftovers of an interrupted append or compaction
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "seg-*")) {
+            for (Path file : files) {
+                if (!live.contains(file.getFileName().toString())) Files.deleteIfExists(file);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Adds the chunks of one course as a new segment; vectors must share one dimension.
+     */
+    public synchronized void append(long courseId, long[] chunkIds, float[][] vectors) throws IOException {
+        if (chunkIds.length == 0) return;
+        int dimension = vectors[0].length;
+        float[] matrix = new float[chunkIds.length * dimension];
+        for (int i = 0; i < vectors.length; i++) {
+            System.arraycopy(vectors[i], 0, matrix, i * dimension, dimension);
+        }
+        long[] courseIds = new long[chunkIds.length];
+        Arrays.fill(courseIds, courseId);
+
+        VectorSegment segment = VectorSegment.write(directory.resolve(nextName()), dimension, chunkIds, courseIds, matrix);
+        List<VectorSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        publish(updated);
+    }
+
+    public synchronized void deleteCourse(long courseId) throws IOException {
+        if (deletedCourses.add(courseId)) appendTombstone(DELETED_COURSE, List.of(courseId));
+    }
+
+    public synchronized void deleteChunks(Collection<Long> chunkIds) throws IOException {
+        List<Long> added = new ArrayList<>();
+        for (Long id : chunkIds) {
+            if (deletedChunks.add(id)) added.add(id);
+        }
+        if (!added.isEmpty()) appendTombstone(DELETED_CHUNK, added);
+    }
+
+    /**
+     * Scores the live rows of the course (or of every course) in place and writes the ids
+     * of the {@code k} best to {@code out}, best first. Returns how many were written.
+     */
+    public int search(float[] query, int k, long courseFilter, long[] out, SimilarityKernel kernel) {
+        List<VectorSegment> snapshot = segments;
+        int[] base = new int[snapshot.size() + 1];
+        for (int s = 0; s < snapshot.size(); s++) {
+            base[s + 1] = base[s] + snapshot.get(s).size();
+        }
+
+        TopK topK = new TopK(k);
+        boolean checkChunks = !deletedChunks.isEmpty();
+        for (int s = 0; s < snapshot.size(); s++) {
+            VectorSegment segment = snapshot.get(s);
+            if (segment.getDimension() != query.length) continue;
+            if (courseFilter != ALL_COURSES) {
+                int[] range = segment.courseRange(courseFilter);
+                if (range == null || deletedCourses.contains(courseFilter)) continue;
+                scoreRows(segment, range[0], range[1], base[s], query, topK, checkChunks, kernel);
+            } else {
+                for (Long courseId : segment.courseIds()) {
+                    if (deletedCourses.contains(courseId)) continue;
+                    int[] range = segment.courseRange(courseId);
+                    scoreRows(segment, range[0], range[1], base[s], query, topK, checkChunks, kernel);
+                }
+            }
+        }
+
+        int[] winners = new int[k];
+        int count = topK.drainDescending(winners);
+        for (int i = 0; i < count; i++) {
+            int s = segmentOf(base, winners[i]);
+            out[i] = snapshot.get(s).getChunkId(winners[i] - base[s]);
+        }
+        return count;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public long totalRows() {
+        long total = 0;
+        for (VectorSegment segment : segments) total += segment.size();
+        return total;
+    }
+
+    public long liveRows() {
+        long live = 0;
+        for (VectorSegment segment : segments) {
+            for (int row = 0; row < segment.size(); row++) {
+                if (isLive(segment, row)) live++;
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Merges the segments smaller than half of {@code maxSegmentBytes} and those with more
+     * than a quarter of their rows tombstoned into new segments of at most {@code maxSegmentBytes},
+     * grouped by course, one set per vector dimension. Rows are copied straight from the
+     * mapped files. Larger, mostly live segments are kept as they are, and so are the
+     * tombstones still matching their rows.
+     */
+    public synchronized void compact(long maxSegmentBytes) throws IOException {
+        List<VectorSegment> old = segments;
+        List<VectorSegment> kept = new ArrayList<>();
+        SortedMap<Integer, List<VectorSegment>> mergedByDimension = new TreeMap<>();
+        for (VectorSegment segment : old) {
+            boolean small = VectorSegment.sizeInBytes(segment.size(), segment.getDimension()) < maxSegmentBytes / 2;
+            if (small || deadRows(segment) > segment.size() * MAX_DEAD_FRACTION) {
+                mergedByDimension.computeIfAbsent(segment.getDimension(), d -> new ArrayList<>()).add(segment);
+            } else {
+                kept.add(segment);
+            }
+        }
+        if (mergedByDimension.isEmpty()) return;
+
+        List<VectorSegment> updated = new ArrayList<>(kept);
+        for (Map.Entry<Integer, List<VectorSegment>> group : mergedByDimension.entrySet()) {
+            int dimension = group.getKey();
+            SortedSet<Long> courses = new TreeSet<>();
+            for (VectorSegment segment : group.getValue()) {
+                segment.courseIds().forEach(courses::add);
+            }
+            courses.removeAll(deletedCourses);
+
+            SegmentWriter writer = new SegmentWriter(dimension, maxRows(maxSegmentBytes, dimension), updated);
+            for (Long courseId : courses) {
+                for (VectorSegment segment : group.getValue()) {
+                    int[] range = segment.courseRange(courseId);
+                    if (range == null) continue;
+                    for (int row = range[0]; row < range[1]; row++) {
+                        if (!deletedChunks.isEmpty() && deletedChunks.contains(segment.getChunkId(row))) continue;
+                        writer.copy(segment, row);
+                    }
+                }
+            }
+            writer.flush();
+        }
+
+        publish(updated);
+        retainTombstones(kept);
+        List<VectorSegment> merged = new ArrayList<>(old);
+        merged.removeAll(kept);
+        deleteFiles(merged);
+    }
+
+    /**
+     * Replaces the whole content of the store, e.g. when rebuilding it from the database.
+     * {@code rows} yields {chunkId, courseId, vector} triples ordered by course.
+     */
+    public synchronized void replaceAll(Iterator<Object[]> rows, long maxSegmentBytes) throws IOException {
+        List<VectorSegment> old = segments;
+        List<VectorSegment> fresh = new ArrayList<>();
+        SegmentWriter writer = null;
+        while (rows.hasNext()) {
+            Object[] row = rows.next();
+            float[] vector = (float[]) row[2];
+            if (writer == null) writer = new SegmentWriter(vector.length, maxRows(maxSegmentBytes, vector.length), fresh);
+            if (vector.length != writer.dimension) continue;
+            writer.add((Long) row[0], (Long) row[1], vector);
+        }
+        if (writer != null) writer.flush();
+
+        publish(fresh);
+        resetTombstones();
+        deleteFiles(old);
+    }
+
+    // --- internals ---
+
+    private static int maxRows(long maxSegmentBytes, int dimension) {
+        return (int) Math.max(1, (maxSegmentBytes - VectorSegment.HEADER_BYTES)
+                / ((long) dimension * Float.BYTES + 2L * Long.BYTES));
+    }
+
+    private static void deleteFiles(List<VectorSegment> old) {
+        for (VectorSegment segment : old) {
+            // the old mapping stays readable for searches still holding the previous snapshot;
+            // where the OS refuses to delete a mapped file, open() removes it next start
+            try {
+                Files.deleteIfExists(segment.getPath());
+            } catch (IOException e) {
+                System.err.println("Could not delete old segment " + segment.getPath() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private int deadRows(VectorSegment segment) {
+        int dead = 0;
+        for (Long courseId : segment.courseIds()) {
+            int[] range = segment.courseRange(courseId);
+            if (deletedCourses.contains(courseId)) {
+                dead += range[1] - range[0];
+            } else if (!deletedChunks.isEmpty()) {
+                for (int row = range[0]; row < range[1]; row++) {
+                    if (deletedChunks.contains(segment.getChunkId(row))) dead++;
+                }
+            }
+        }
+        return dead;
+    }
+
+    private boolean isLive(VectorSegment segment, int row) {
+        return !deletedCourses.contains(segment.getCourseId(row))
+                && (deletedChunks.isEmpty() || !deletedChunks.contains(segment.getChunkId(row)));
+    }
+
+    private void scoreRows(VectorSegment segment, int from, int to, int base, float[] query, TopK topK,
+                           boolean checkChunks, SimilarityKernel kernel) {
+        ByteBuffer matrix = segment.matrix();
+        for (int row = from; row < to; row++) {
+            if (checkChunks && deletedChunks.contains(segment.getChunkId(row))) continue;
+            topK.offer(base + row, kernel.dot(matrix, segment.rowOffset(row), query));
+        }
+    }
+
+    private static int segmentOf(int[] base, int globalRow) {
+        int s = Arrays.binarySearch(base, globalRow);
+        if (s >= 0) {
+            // skip empty segments sharing the same base
+            while (s + 1 < base.length && base[s + 1] == globalRow) s++;
+            return s;
+        }
+        return -s - 2;
+    }
+
+    private void publish(List<VectorSegment> updated) throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        for (VectorSegment segment : updated) {
+            manifest.append(segment.getPath().getFileName()).append('\n');
+        }
+        Path tmp = directory.resolve(MANIFEST + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(manifest.toString().getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        segments = List.copyOf(updated);
+    }
+
+    private String nextName() {
+        return String.format("seg-%010d.vec", nextSegment++);
+    }
+
+    private static long sequenceOf(String name) {
+        try {
+            return Long.parseLong(name.substring(4, name.indexOf('.')));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private void appendTombstone(byte type, Collection<Long> ids) throws IOException {
+        appendTombstone(directory.resolve(TOMBSTONES), type, ids);
+    }
+
+    private static void appendTombstone(Path log, byte type, Collection<Long> ids) throws IOException {
+        ByteBuffer records = ByteBuffer.allocate(ids.size() * (1 + Long.BYTES));
+        for (Long id : ids) {
+            records.put(type).putLong(id);
+        }
+        records.flip();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (records.hasRemaining()) channel.write(records);
+            channel.force(false);
+        }
+    }
+
+    private void readTombstones() throws IOException {
+        Path log = directory.resolve(TOMBSTONES);
+        if (!Files.exists(log)) return;
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(log));
+        // a torn last record (crash mid-append) is ignored
+        while (records.remaining() >= 1 + Long.BYTES) {
+            byte type = records.get();
+            long id = records.getLong();
+            if (type == DELETED_COURSE) deletedCourses.add(id);
+            else if (type == DELETED_CHUNK) deletedChunks.add(id);
+        }
+    }
+
+    /**
+     * Rewrites the tombstone log with only the deletes that still hide rows of {@code kept},
+     * the segments left out of a compaction.
+     */
+    private void retainTombstones(List<VectorSegment> kept) throws IOException {
+        Set<Long> courses = new HashSet<>();
+        Set<Long> chunks = new HashSet<>();
+        for (VectorSegment segment : kept) {
+            for (Long courseId : segment.courseIds()) {
+                if (deletedCourses.contains(courseId)) courses.add(courseId);
+            }
+            if (deletedChunks.isEmpty()) continue;
+            for (int row = 0; row < segment.size(); row++) {
+                long chunkId = segment.getChunkId(row);
+                if (deletedChunks.contains(chunkId)) chunks.add(chunkId);
+            }
+        }
+        if (courses.isEmpty() && chunks.isEmpty()) {
+            resetTombstones();
+            return;
+        }
+        // written aside and swapped in, like the manifest
+        Path tmp = directory.resolve(TOMBSTONES + ".tmp");
+        Files.deleteIfExists(tmp);
+        appendTombstone(tmp, DELETED_COURSE, courses);
+        appendTombstone(tmp, DELETED_CHUNK, chunks);
+        Files.move(tmp, directory.resolve(TOMBSTONES), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        deletedCourses.retainAll(courses);
+        deletedChunks.retainAll(chunks);
+    }
+
+    private void resetTombstones() throws IOException {
+        // only called once no live segment holds a tombstoned row any more
+        Files.deleteIfExists(directory.resolve(TOMBSTONES));
+        deletedCourses.clear();
+        deletedChunks.clear();
+    }
+
+    /**
+     * Buffers rows and writes a segment each time {@code maxRows} are collected.
+     */
+    private final class SegmentWriter {
+        private final int dimension;
+        private final int maxRows;
+        private final List<VectorSegment> written;
+        private long[] chunkIds;
+        private long[] courseIds;
+        private float[] matrix;
+        private int rows = 0;
+
+        SegmentWriter(int dimension, int maxRows, List<VectorSegment> written) {
+            this.dimension = dimension;
+            this.maxRows = maxRows;
+            this.written = written;
+            int capacity = Math.min(maxRows, 1024);
+            this.chunkIds = new long[capacity];
+            this.courseIds = new long[capacity];
+            this.matrix = new float[capacity * dimension];
+        }
+
+        void add(long chunkId, long courseId, float[] vector) throws IOException {
+            int row = nextRow(chunkId, courseId);
+            System.arraycopy(vector, 0, matrix, row * dimension, dimension);
+            if (rows == maxRows) flush();
+        }
+
+        // copies a row of a mapped segment without an intermediate array
+        void copy(VectorSegment segment, int sourceRow) throws IOException {
+            int row = nextRow(segment.getChunkId(sourceRow), segment.getCourseId(sourceRow));
+            ByteBuffer source = segment.matrix();
+            int offset = segment.rowOffset(sourceRow);
+            for (int i = 0, at = row * dimension; i < dimension; i++, at++) {
+                matrix[at] = source.getFloat(offset + i * Float.BYTES);
+            }
+            if (rows == maxRows) flush();
+        }
+
+        private int nextRow(long chunkId, long courseId) {
+            int row = rows;
+            if (row == chunkIds.length) {
+                int capacity = Math.min(maxRows, row * 2);
+                chunkIds = Arrays.copyOf(chunkIds, capacity);
+                courseIds = Arrays.copyOf(courseIds, capacity);
+                matrix = Arrays.copyOf(matrix, capacity * dimension);
+            }
+            chunkIds[row] = chunkId;
+            courseIds[row] = courseId;
+            rows++;
+            return row;
+        }
+
+        void flush() throws IOException {
+            if (rows == 0) return;
+            written.add(VectorSegment.write(directory.resolve(nextName()), dimension,
+                    Arrays.copyOf(chunkIds, rows), Arrays.copyOf(courseIds, rows), matrix));
+            rows = 0;
+        }
+    }
+}
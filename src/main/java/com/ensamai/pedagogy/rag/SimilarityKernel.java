@@ -0,0 +1,40 @@
+package com.ensamai.pedagogy.rag;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Dot-product kernel used to score unit-normalized embeddings.
+ * Implementations must be stateless and thread-safe.
+ */
+public interface SimilarityKernel {
+
+    /**
+     * Dot product of {@code query} with the row of {@code matrix} starting at {@code offset}.
+     */
+    float dot(float[] matrix, int offset, float[] query);
+
+    /**
+     * Dot product of {@code query} with the little-endian float32 row starting at byte
+     * {@code byteOffset} of {@code matrix}, read in place (e.g. from a memory-mapped segment).
+     * Uses absolute reads only, so one buffer can be shared by concurrent searches.
+     */
+    default float dot(ByteBuffer matrix, int byteOffset, float[] query) {
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += matrix.getFloat(byteOffset + i * Float.BYTES) * query[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Scores the first {@code rows} rows of a row-major matrix and offers each to {@code topK}.
+     */
+    default void scoreAll(float[] matrix, int rows, float[] query, TopK topK) {
+        int dimension = query.length;
+        for (int row = 0, offset = 0; row < rows; row++, offset += dimension) {
+            topK.offer(row, dot(matrix, offset, query));
+        }
+    }
+
+    String name();
+}
@@ -0,0 +1,48 @@
+package com.ensamai.pedagogy.rag;
+
+/**
+ * Picks the similarity kernel at startup.
+ * "auto" uses the Vector API kernel when the incubator module is present
+ * and the CPU offers wide enough lanes, otherwise the scalar loop.
+ */
+public final class SimilarityKernels {
+
+    private SimilarityKernels() {
+    }
+
+    public static SimilarityKernel create(String name) {
+        switch (name) {
+            case "scalar":
+                return new ScalarSimilarityKernel();
+            case "vector": {
+                SimilarityKernel kernel = vectorKernelOrNull();
+                if (kernel == null) {
+                    throw new IllegalStateException("Vector API kernel requested but jdk.incubator.vector is not available "
+                            + "(start the JVM with --add-modules jdk.incubator.vector)");
+                }
+                return kernel;
+            }
+            case "auto": {
+                SimilarityKernel kernel = vectorKernelOrNull();
+                return kernel != null ? kernel : new ScalarSimilarityKernel();
+            }
+            default:
+                throw new IllegalArgumentException("Unknown similarity kernel: " + name);
+        }
+    }
+
+    public static boolean isVectorApiAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    private static SimilarityKernel vectorKernelOrNull() {
+        if (!isVectorApiAvailable()) return null;
+        try {
+            // Only link the Vector API class once we know the module is resolved
+            if (!VectorApiSimilarityKernel.isWorthwhile()) return null;
+            return new VectorApiSimilarityKernel();
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+}
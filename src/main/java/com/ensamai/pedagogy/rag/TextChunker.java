@@ -0,0 +1,203 @@
+package com.ensamai.pedagogy.rag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into chunks of about {@code maxTokens} estimated tokens, reporting each chunk
+ * as a [start, end) range of the input instead of copying it.
+ *
+ * The text is scanned once, remembering the last paragraph, sentence and word boundary seen;
+ * when the window is full the chunk ends at the best of them that keeps it at least half full.
+ * A heading (a markdown "#" line, or a short unpunctuated line after a blank line) starts a
+ * new chunk once the current one has {@code maxTokens / 4} tokens. Consecutive chunks overlap
+ * by about {@code overlapTokens}, snapped to a sentence start when possible; no overlap is
+ * carried across a heading.
+ *
+ * Tokens are estimated as one per started group of four letters or digits and one per
+ * punctuation character, close enough to sub-word tokenizers for sizing. Thread-safe.
+ */
+public class TextChunker {
+
+    @FunctionalInterface
+    public interface Sink {
+        void chunk(int start, int end);
+    }
+
+    private static final int MAX_HEADING_CHARS = 80;
+
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final int minHeadingTokens;
+
+    public TextChunker(int maxTokens, int overlapTokens) {
+        if (maxTokens < 8) throw new IllegalArgumentException("maxTokens must be at least 8");
+        if (overlapTokens < 0 || overlapTokens >= maxTokens / 2) {
+            throw new IllegalArgumentException("overlapTokens must be in [0, maxTokens / 2)");
+        }
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+        this.minHeadingTokens = maxTokens / 4;
+    }
+
+    /**
+     * Reports every chunk of the text, in order. Chunks never start or end with whitespace.
+     */
+    public void chunk(CharSequence text, Sink sink) {
+        int n = text.length();
+        int start = skipWhitespace(text, 0, n);
+        int emitted = 0;
+        while (start < n) {
+            int tokens = 0;
+            int paragraph = -1, paragraphTokens = 0;
+            int sentence = -1, sentenceTokens = 0;
+            int space = -1;
+            int end = n;
+            boolean heading = false;
+
+            int i = start;
+            while (i < n) {
+                char c = text.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    int word = i;
+                    while (i < n && Character.isLetterOrDigit(text.charAt(i))) i++;
+                    tokens += (i - word + 3) / 4;
+                } else if (c == '\n') {
+                    int next = skipBlanks(text, i + 1, n);
+                    boolean blankLine = next < n && text.charAt(next) == '\n';
+                    if (blankLine) {
+                        paragraph = i;
+                        paragraphTokens = tokens;
+                    }
+                    int lineStart = skipWhitespace(text, i + 1, n);
+                    if (tokens >= minHeadingTokens && isHeading(text, lineStart, n, blankLine)) {
+                        end = i;
+                        heading = true;
+                        break;
+                    }
+                    space = i;
+                    i++;
+                } else if (Character.isWhitespace(c)) {
+                    space = i;
+                    i++;
+                } else {
+                    tokens++;
+                    i++;
+                    if ((c == '.' || c == '!' || c == '?') && tokens <= maxTokens
+                            && (i == n || Character.isWhitespace(text.charAt(i)))) {
+                        sentence = i;
+                        sentenceTokens = tokens;
+                    }
+                }
+
+                if (tokens > maxTokens) {
+                    int half = maxTokens / 2;
+                    if (paragraph > start && paragraphTokens >= half) end = paragraph;
+                    else if (sentence > start && sentenceTokens >= half) end = sentence;
+                    else if (space > start) end = space;
+                    else end = i;
+                    break;
+                }
+            }
+
+            int trimmed = trimEnd(text, start, end);
+            // an overlap cut short by a heading or an over-long word adds nothing new: drop it
+            boolean added = trimmed > Math.max(start, emitted);
+            if (added) {
+                sink.chunk(start, trimmed);
+                emitted = trimmed;
+            }
+            if (end >= n) return;
+
+            int next = heading || !added ? end : overlapStart(text, start, trimmed);
+            // always move forward, even when the overlap would reach back to the chunk start
+            if (next <= start) next = end;
+            start = skipWhitespace(text, next, n);
+        }
+    }
+
+    /**
+     * Copies the chunks out as strings, for callers that store them anyway.
+     */
+    public List<String> split(CharSequence text) {
+        List<String> chunks = new ArrayList<>();
+        chunk(text, (start, end) -> chunks.add(text.subSequence(start, end).toString()));
+        return chunks;
+    }
+
+    public static int estimateTokens(CharSequence text, int start, int end) {
+        int tokens = 0;
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                int word = i;
+                while (i < end && Character.isLetterOrDigit(text.charAt(i))) i++;
+                tokens += (i - word + 3) / 4;
+            } else {
+                if (!Character.isWhitespace(c)) tokens++;
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Walks back from the end of a chunk over about overlapTokens tokens and returns where the
+     * next chunk starts: the earliest sentence start in that range, else the word boundary reached.
+     */
+    private int overlapStart(CharSequence text, int start, int end) {
+        if (overlapTokens == 0) return end;
+        int pos = end;
+        int tokens = 0;
+        int sentenceStart = -1;
+        while (pos > start && tokens < overlapTokens) {
+            char c = text.charAt(pos - 1);
+            if (Character.isLetterOrDigit(c)) {
+                int word = pos;
+                while (pos > start && Character.isLetterOrDigit(text.charAt(pos - 1))) pos--;
+                tokens += (word - pos + 3) / 4;
+            } else if (Character.isWhitespace(c)) {
+                pos--;
+                if (pos > start && isTerminator(text.charAt(pos - 1))) sentenceStart = pos + 1;
+            } else {
+                tokens++;
+                pos--;
+            }
+        }
+        return sentenceStart > 0 ? sentenceStart : pos;
+    }
+
+    private static boolean isHeading(CharSequence text, int lineStart, int n, boolean afterBlankLine) {
+        if (lineStart >= n) return false;
+        if (text.charAt(lineStart) == '#') return true;
+        if (!afterBlankLine) return false;
+        int lineEnd = lineStart;
+        while (lineEnd < n && text.charAt(lineEnd) != '\n') {
+            if (lineEnd - lineStart > MAX_HEADING_CHARS) return false;
+            lineEnd++;
+        }
+        // a heading is followed by more text and does not read like a sentence
+        int last = trimEnd(text, lineStart, lineEnd);
+        return lineEnd < n && last > lineStart && !isTerminator(text.charAt(last - 1)) && text.charAt(last - 1) != ',';
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?' || c == ':' || c == ';';
+    }
+
+    private static int skipWhitespace(CharSequence text, int i, int n) {
+        while (i < n && Character.isWhitespace(text.charAt(i))) i++;
+        return i;
+    }
+
+    private static int skipBlanks(CharSequence text, int i, int n) {
+        while (i < n && (text.charAt(i) == ' ' || text.charAt(i) == '\t' || text.charAt(i) == '\r')) i++;
+        return i;
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        return end;
+    }
+}
@@ -0,0 +1,110 @@
+package com.ensamai.pedagogy.rag;
+
+/**
+ * Bounded min-heap that keeps the k best (row, score) pairs seen so far.
+ * Backed by primitive arrays and reusable through {@link #reset()}, so
+ * selecting the winners of a scan allocates nothing.
+ */
+public class TopK {
+
+    private final int k;
+    private final int[] rows;
+    private final float[] scores;
+    private int size;
+
+    public TopK(int k) {
+        if (k <= 0) throw new IllegalArgumentException("k must be positive: " + k);
+        this.k = k;
+        this.rows = new int[k];
+        this.scores = new float[k];
+    }
+
+    public int capacity() { return k; }
+
+    public int size() { return size; }
+
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * Lowest score currently kept, the bar a new candidate has to beat once full.
+     */
+    public float threshold() {
+        return size < k ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public void offer(int row, float score) {
+        if (size < k) {
+            rows[size] = row;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            rows[0] = row;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Empties the heap into {@code out}, best first, and returns the number of rows written.
+     */
+    public int drainDescending(int[] out) {
+        int n = size;
+        for (int i = n - 1; i >= 0; i--) {
+            out[i] = rows[0];
+            size--;
+            rows[0] = rows[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return n;
+    }
+
+    /**
+     * Same as {@link #drainDescending(int[])} but also writes the scores.
+     */
+    public int drainDescending(int[] outRows, float[] outScores) {
+        int n = size;
+        for (int i = n - 1; i >= 0; i--) {
+            outRows[i] = rows[0];
+            outScores[i] = scores[0];
+            size--;
+            rows[0] = rows[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return n;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && scores[right] < scores[left]) smallest = right;
+            if (scores[i] <= scores[smallest]) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int r = rows[a];
+        rows[a] = rows[b];
+        rows[b] = r;
+        float s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ensamai.pedagogy.rag;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SIMD kernel on the JDK Vector API: multiplies whole species-width lanes
+ * with fused multiply-add and reduces the lanes once per row.
+ * Requires the JVM to run with {@code --add-modules jdk.incubator.vector};
+ * only ever loaded through {@link SimilarityKernels}.
+ */
+class VectorApiSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * False when the preferred species is too narrow to beat the scalar loop.
+     */
+    static boolean isWorthwhile() {
+        return SPECIES.length() >= 4;
+    }
+
+    @Override
+    public float dot(float[] matrix, int offset, float[] query) {
+        int length = query.length;
+        int bound = SPECIES.loopBound(length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+            FloatVector m = FloatVector.fromArray(SPECIES, matrix, offset + i);
+            acc = q.fma(m, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += matrix[offset + i] * query[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(ByteBuffer matrix, int byteOffset, float[] query) {
+        int length = query.length;
+        int bound = SPECIES.loopBound(length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+            FloatVector m = FloatVector.fromByteBuffer(SPECIES, matrix, byteOffset + i * Float.BYTES,
+                    ByteOrder.LITTLE_ENDIAN);
+            acc = q.fma(m, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += matrix.getFloat(byteOffset + i * Float.BYTES) * query[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "vector-api (" + SPECIES.length() + " lanes)";
+    }
+}
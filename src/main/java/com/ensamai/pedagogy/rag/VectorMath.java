@@ -0,0 +1,41 @@
+package com.ensamai.pedagogy.rag;
+
+/**
+ * Primitive float vector helpers for embedding similarity.
+ * Vectors are unit-normalized once at ingest so cosine similarity is a plain dot product.
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /**
+     * Scales the vector to unit length in place and returns its original L2 norm.
+     * A zero vector is left untouched.
+     */
+    public static float normalize(float[] vector) {
+        double sum = 0.0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        float norm = (float) Math.sqrt(sum);
+        if (norm > 0f) {
+            float inv = 1f / norm;
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= inv;
+            }
+        }
+        return norm;
+    }
+
+    /**
+     * Dot product of {@code query} with the row of {@code matrix} starting at {@code offset}.
+     */
+    public static float dot(float[] matrix, int offset, float[] query) {
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += matrix[offset + i] * query[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,34 @@
+package com.ensamai.pedagogy.rag;
+
+/**
+ * Nearest-neighbour search over chunk embeddings, the retrieval backend behind RagService.
+ * Implementations are selected with the rag.retriever property.
+ */
+public interface VectorRetriever {
+
+    /**
+     * Writes up to k chunk ids most similar to the unit-normalized {@code query} into
+     * {@code out}, best first, and returns how many were written.
+     * A null {@code courseId} searches every course, when the backend supports it.
+     */
+    int search(Long courseId, float[] query, int k, long[] out);
+
+    /**
+     * {@link #search} for several queries at once: writes the ids for query i into {@code out[i]}
+     * and returns the count per query. Backends that can share one scan between the queries
+     * override this; the default searches them one by one.
+     */
+    default int[] searchAll(Long courseId, float[][] queries, int k, long[][] out) {
+        int[] counts = new int[queries.length];
+        for (int q = 0; q < queries.length; q++) {
+            counts[q] = search(courseId, queries[q], k, out[q]);
+        }
+        return counts;
+    }
+
+    default boolean supportsCrossCourseSearch() {
+        return false;
+    }
+
+    String name();
+}
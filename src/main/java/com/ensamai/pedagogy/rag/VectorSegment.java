@@ -0,0 +1,164 @@
+package com.ensamai.pedagogy.rag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, memory-mapped file of chunk embeddings. Little-endian layout:
+ * <pre>
+ *   header   64 bytes: magic, version, dimension, rows (ints), rest reserved
+ *   matrix   rows x dimension float32, row-major
+ *   chunkIds rows x int64
+ *   courseIds rows x int64, rows of one course are contiguous
+ * </pre>
+ * The matrix is scored in place through {@link SimilarityKernel#dot(ByteBuffer, int, float[])},
+ * so the vectors live in the OS page cache rather than on the Java heap.
+ */
+public class VectorSegment {
+
+    private static final int MAGIC = 0x56534547; // "VSEG"
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int dimension;
+    private final int rows;
+    private final int chunkIdsOffset;
+    private final int courseIdsOffset;
+    // courseId -> {firstRow, endRow}
+    private final Map<Long, int[]> courseRanges = new HashMap<>();
+
+    private VectorSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a vector segment: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) throw new IOException("Unsupported segment version in " + path);
+        this.dimension = buffer.getInt(8);
+        this.rows = buffer.getInt(12);
+        this.chunkIdsOffset = HEADER_BYTES + rows * dimension * Float.BYTES;
+        this.courseIdsOffset = chunkIdsOffset + rows * Long.BYTES;
+        if (buffer.capacity() != courseIdsOffset + rows * Long.BYTES) {
+            throw new IOException("Truncated vector segment: " + path);
+        }
+
+        int row = 0;
+        while (row < rows) {
+            long courseId = getCourseId(row);
+            int start = row;
+            while (row < rows && getCourseId(row) == courseId) row++;
+            if (courseRanges.put(courseId, new int[]{start, row}) != null) {
+                throw new IOException("Rows of course " + courseId + " are not contiguous in " + path);
+            }
+        }
+    }
+
+    public static VectorSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new VectorSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes a segment durably (temp file, fsync, atomic rename) and maps it.
+     * Rows must already be grouped by course; {@code matrix} holds {@code chunkIds.length} rows.
+     */
+    public static VectorSegment write(Path path, int dimension, long[] chunkIds, long[] courseIds, float[] matrix)
+            throws IOException {
+        int rows = chunkIds.length;
+        Set<Long> seen = new HashSet<>();
+        for (int row = 0; row < rows; row++) {
+            boolean sameAsPrevious = row > 0 && courseIds[row] == courseIds[row - 1];
+            if (!sameAsPrevious && !seen.add(courseIds[row])) {
+                throw new IllegalArgumentException("Rows of course " + courseIds[row] + " are not grouped");
+            }
+        }
+        long bytes = HEADER_BYTES + (long) rows * dimension * Float.BYTES + 2L * rows * Long.BYTES;
+        if (bytes > Integer.MAX_VALUE) throw new IOException("Segment too large: " + bytes + " bytes");
+
+        ByteBuffer out = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(rows);
+        out.position(HEADER_BYTES);
+        out.asFloatBuffer().put(matrix, 0, rows * dimension);
+        out.position(HEADER_BYTES + rows * dimension * Float.BYTES);
+        for (long id : chunkIds) out.putLong(id);
+        for (long id : courseIds) out.putLong(id);
+        out.flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) channel.write(out);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    public static long sizeInBytes(int rows, int dimension) {
+        return HEADER_BYTES + (long) rows * dimension * Float.BYTES + 2L * rows * Long.BYTES;
+    }
+
+    public Path getPath() { return path; }
+
+    public int getDimension() { return dimension; }
+
+    public int size() { return rows; }
+
+    public long getChunkId(int row) {
+        return buffer.getLong(chunkIdsOffset + row * Long.BYTES);
+    }
+
+    public long getCourseId(int row) {
+        return buffer.getLong(courseIdsOffset + row * Long.BYTES);
+    }
+
+    /**
+     * {firstRow, endRow} of the course in this segment, or null when it has no rows here.
+     */
+    public int[] courseRange(long courseId) {
+        return courseRanges.get(courseId);
+    }
+
+    public Iterable<Long> courseIds() {
+        return courseRanges.keySet();
+    }
+
+    /**
+     * Byte offset of the row in {@link #matrix()}.
+     */
+    public int rowOffset(int row) {
+        return HEADER_BYTES + row * dimension * Float.BYTES;
+    }
+
+    /**
+     * The mapped file, little-endian; shared, read it with absolute gets only.
+     */
+    public ByteBuffer matrix() {
+        return buffer;
+    }
+
+    public float[] readRow(int row) {
+        float[] vector = new float[dimension];
+        int offset = rowOffset(row);
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = buffer.getFloat(offset + i * Float.BYTES);
+        }
+        return vector;
+    }
+}
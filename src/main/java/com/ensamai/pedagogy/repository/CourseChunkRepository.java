@@ -1,13 +1,55 @@
 package com.ensamai.pedagogy.repository;
 
 import com.ensamai.pedagogy.model.CourseChunk;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface CourseChunkRepository extends JpaRepository<CourseChunk, Long> {
 
     List<CourseChunk> findByCourseId(Long courseId);
-}
\ No newline at end of file
+
+    // [chunkId, embedding] rows only, so the text is not loaded when building the vector index
+    @Query("SELECT c.id, c.embedding FROM CourseChunk c WHERE c.course.id = :courseId ORDER BY c.id")
+    List<Object[]> findEmbeddingsByCourseId(@Param("courseId") Long courseId);
+
+    // [chunkId, courseId, embedding] rows of every course, for building global indexes
+    @Query("SELECT c.id, c.course.id, c.embedding FROM CourseChunk c ORDER BY c.id")
+    Slice<Object[]> findAllEmbeddings(Pageable pageable);
+
+    // [chunkId, contentHash, embedding byte length] rows, for diffing a re-ingested course against what is stored
+    @Query(value = "SELECT id, content_hash, OCTET_LENGTH(embedding_vector) FROM course_chunk "
+            + "WHERE course_id = :courseId ORDER BY id", nativeQuery = true)
+    List<Object[]> findHashesByCourseId(@Param("courseId") Long courseId);
+
+    // same rows ordered by course, for writing course-grouped vector segments
+    @Query("SELECT c.id, c.course.id, c.embedding FROM CourseChunk c ORDER BY c.course.id, c.id")
+    Slice<Object[]> findAllEmbeddingsByCourse(Pageable pageable);
+
+    // [chunkId, courseId, content] rows of every course, for building the keyword index
+    @Query("SELECT c.id, c.course.id, c.content FROM CourseChunk c ORDER BY c.id")
+    Slice<Object[]> findAllContents(Pageable pageable);
+
+    // chunks the vector indexes hold: failed embedding calls leave an empty vector, which they skip
+    @Query(value = "SELECT COUNT(*) FROM course_chunk WHERE OCTET_LENGTH(embedding_vector) > 0", nativeQuery = true)
+    long countIndexableEmbeddings();
+
+    // courses with at least one stored chunk, i.e. ingested ones
+    @Query("SELECT DISTINCT c.course.id FROM CourseChunk c")
+    List<Long> findIngestedCourseIds();
+
+    // [chunkId, embedding] rows for reranking quantized candidates with the exact vectors
+    @Query("SELECT c.id, c.embedding FROM CourseChunk c WHERE c.id IN :ids")
+    List<Object[]> findEmbeddingsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // [chunkId, content] rows for the retrieved winners
+    @Query("SELECT c.id, c.content FROM CourseChunk c WHERE c.id IN :ids")
+    List<Object[]> findContentsByIdIn(@Param("ids") Collection<Long> ids);
+}
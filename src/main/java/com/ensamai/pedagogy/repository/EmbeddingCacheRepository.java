@@ -0,0 +1,9 @@
+package com.ensamai.pedagogy.repository;
+
+import com.ensamai.pedagogy.model.EmbeddingCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmbeddingCacheRepository extends JpaRepository<EmbeddingCacheEntry, String> {
+}
@@ -0,0 +1,18 @@
+package com.ensamai.pedagogy.repository;
+
+import com.ensamai.pedagogy.model.IngestionJob;
+import com.ensamai.pedagogy.model.IngestionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, Long> {
+
+    // Latest job of a course, shown on the course page
+    Optional<IngestionJob> findFirstByCourseIdOrderByIdDesc(Long courseId);
+
+    // Unfinished jobs, resumed at startup
+    List<IngestionJob> findByStatusInOrderByIdAsc(Collection<IngestionStatus> statuses);
+}
@@ -0,0 +1,35 @@
+package com.ensamai.pedagogy.repository;
+
+import com.ensamai.pedagogy.model.PooledQuiz;
+import com.ensamai.pedagogy.model.QuizDifficulty;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface PooledQuizRepository extends JpaRepository<PooledQuiz, Long> {
+
+    // Oldest quiz waiting for this course and difficulty
+    Optional<PooledQuiz> findFirstByCourseIdAndDifficultyOrderByIdAsc(Long courseId, QuizDifficulty difficulty);
+
+    // Claims a quiz: returns 0 when another request took it first
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PooledQuiz p WHERE p.id = :id")
+    int claim(@Param("id") Long id);
+
+    // Own transaction: also called after a course deletion has committed
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("DELETE FROM PooledQuiz p WHERE p.courseId = :courseId")
+    int deleteByCourseId(@Param("courseId") Long courseId);
+
+    // Pool depth per (courseId, difficulty)
+    @Query("SELECT p.courseId, p.difficulty, COUNT(p) FROM PooledQuiz p GROUP BY p.courseId, p.difficulty")
+    List<Object[]> countByKey();
+}
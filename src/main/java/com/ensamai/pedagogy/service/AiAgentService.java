@@ -1,29 +1,53 @@
 package com.ensamai.pedagogy.service;
 
+import com.ensamai.pedagogy.dto.QuizQuestion;
 import com.ensamai.pedagogy.model.Course;
+import com.ensamai.pedagogy.model.Question;
+import com.ensamai.pedagogy.model.QuizDifficulty;
 import com.ensamai.pedagogy.model.QuizResult;
 import com.ensamai.pedagogy.repository.CourseRepository;
 import com.ensamai.pedagogy.repository.QuizResultRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 public class AiAgentService {
 
+    // bump when the quiz prompt text changes, so cached responses to the old one are not reused
+    private static final String QUIZ_PROMPT_VERSION = "quiz-v1";
+
     private final QuizResultRepository quizResultRepository;
     private final CourseRepository courseRepository;
     private final RagService ragService;
     private final GeminiService geminiService;
+    private final GenerationCache generationCache;
+    private final boolean generationCacheEnabled;
+    private final ObjectMapper objectMapper;
 
     public AiAgentService(QuizResultRepository quizResultRepository,
                           CourseRepository courseRepository,
                           RagService ragService,
-                          GeminiService geminiService) {
+                          GeminiService geminiService,
+                          GenerationCache generationCache,
+                          @Value("${quiz.generation-cache.enabled:false}") boolean generationCacheEnabled) {
         this.quizResultRepository = quizResultRepository;
         this.courseRepository = courseRepository;
         this.ragService = ragService;
         this.geminiService = geminiService;
+        this.generationCache = generationCache;
+        this.generationCacheEnabled = generationCacheEnabled;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
     /**
@@ -31,43 +55,155 @@ public class AiAgentService {
      *  Analyze History ->  Determine Difficulty -> Fetch Context (RAG) -> Generate Quiz
      */
     public String generateQuiz(Long studentId, Long courseId) {
-        
-       
-        List<QuizResult> history = quizResultRepository.findByStudentIdAndCourseId(studentId, courseId);
-        
-    
-        String difficulty = "EASY"; // Default 
-        String pedagogicalGoal = "Focus on basic definitions and core concepts.";
-        Integer  n = 5;
-
-        if (!history.isEmpty()) {
-            // Get the score of the most recent quiz
-            QuizResult lastResult = history.get(history.size() - 1);
-            int lastScore = lastResult.getScore();
-
-            if (lastScore < 50) {
-                difficulty = "EASY";
-                n = 5;
-                pedagogicalGoal = "The student failed the last attempt. Generate simpler questions to reinforce basics and build confidence.";
-            } else if (lastScore >= 50 && lastScore < 80) {
-                difficulty = "MEDIUM";
-                n = 10;
-                pedagogicalGoal = "The student has a grasp of basics. Introduce application-based questions and slightly more complex scenarios.";
-            } else {
-                difficulty = "HARD";
-                n = 15;
-                pedagogicalGoal = "The student is proficient. Challenge them with complex, edge-case, or multi-step reasoning questions.";
+        QuizPrompt prompt = buildQuizPrompt(studentId, courseId);
+        if (!generationCacheEnabled) return geminiService.generateContent(prompt.text());
+        return generationCache.getOrGenerate(prompt.cacheKey(),
+                () -> geminiService.generateContent(prompt.text()),
+                response -> !parseQuiz(response).isEmpty());
+    }
+
+    /**
+     * False while quiz generation is known to be failing (circuit open), so callers can
+     * fall back straight away instead of waiting on the model.
+     */
+    public boolean isGenerationAvailable() {
+        return geminiService.isAvailable();
+    }
+
+    /**
+     * A previously generated response to the student's exact quiz prompt, if the generation
+     * cache still holds one; used as a fallback when generation is unavailable.
+     */
+    public Optional<String> cachedQuiz(Long studentId, Long courseId) {
+        return generationCache.take(buildQuizPrompt(studentId, courseId).cacheKey());
+    }
+
+    /**
+     * Streaming variant of generateQuiz: each question goes to the consumer as soon as the
+     * model has written it, so the student can start before the rest is generated.
+     * Returns the number of questions streamed; malformed questions are skipped.
+     */
+    public int streamQuiz(Long studentId, Long courseId, Consumer<Question> onQuestion) {
+        QuizPrompt prompt = buildQuizPrompt(studentId, courseId);
+        AtomicInteger streamed = new AtomicInteger();
+        JsonArrayStreamParser parser = new JsonArrayStreamParser(json -> {
+            QuizQuestion dto;
+            try {
+                dto = objectMapper.readValue(json, QuizQuestion.class);
+            } catch (JsonProcessingException e) {
+                System.err.println("Skipping malformed streamed question: " + e.getOriginalMessage());
+                return;
             }
+            onQuestion.accept(toQuestion(dto));
+            streamed.incrementAndGet();
+        });
+        if (!generationCacheEnabled) {
+            geminiService.streamContent(prompt.text(), parser::feed);
+            return streamed.get();
+        }
+
+        Optional<String> cached = generationCache.take(prompt.cacheKey());
+        if (cached.isPresent()) {
+            parser.feed(cached.get());
+            return streamed.get();
+        }
+        StringBuilder response = new StringBuilder();
+        geminiService.streamContent(prompt.text(), text -> {
+            response.append(text);
+            parser.feed(text);
+        });
+        if (streamed.get() > 0) generationCache.put(prompt.cacheKey(), response.toString());
+        return streamed.get();
+    }
+
+    /**
+     * Question to display from a generated one; options "A. ..." lose their letter prefix.
+     */
+    public Question toQuestion(QuizQuestion dto) {
+        Question q = new Question();
+        q.setQuestionText(dto.getQuestionText());
+        q.setCorrectAnswer(dto.getCorrectAnswer());
+
+        // Map List<String> to OptionA, OptionB...
+        if (dto.getOptions() != null && dto.getOptions().size() >= 4) {
+            q.setOptionA(cleanOption(dto.getOptions().get(0)));
+            q.setOptionB(cleanOption(dto.getOptions().get(1)));
+            q.setOptionC(cleanOption(dto.getOptions().get(2)));
+            q.setOptionD(cleanOption(dto.getOptions().get(3)));
         }
+        return q;
+    }
+
+    private String cleanOption(String opt) {
+        return opt.replaceAll("^[A-D]\\.\\s*", "");
+    }
 
+    /**
+     * Difficulty of the student's next quiz on the course, from the score of their last one.
+     */
+    public QuizDifficulty difficultyFor(Long studentId, Long courseId) {
+        return difficultyOf(quizResultRepository.findByStudentIdAndCourseId(studentId, courseId));
+    }
+
+    private static QuizDifficulty difficultyOf(List<QuizResult> history) {
+        if (history.isEmpty()) return QuizDifficulty.EASY;
+
+        // Get the score of the most recent quiz
+        int lastScore = history.get(history.size() - 1).getScore();
+        if (lastScore < 50) return QuizDifficulty.EASY;
+        if (lastScore < 80) return QuizDifficulty.MEDIUM;
+        return QuizDifficulty.HARD;
+    }
+
+    /**
+     * A quiz for any student of the course at this difficulty, used to fill the quiz pool.
+     * Always freshly generated, pooled quizzes should all differ.
+     */
+    public String generateQuiz(Course course, QuizDifficulty difficulty) {
+        return geminiService.generateContent(buildQuizPrompt(course, difficulty, difficulty.getPedagogicalGoal()).text());
+    }
+
+    /**
+     * Questions of a generated quiz (a JSON array, possibly wrapped in other text);
+     * empty when it cannot be parsed.
+     */
+    public List<Question> parseQuiz(String jsonQuiz) {
+        List<Question> questions = new ArrayList<>();
+        try {
+            int startIndex = jsonQuiz.indexOf("[");
+            int endIndex = jsonQuiz.lastIndexOf("]");
+
+            if (startIndex != -1 && endIndex != -1) {
+                String cleanJson = jsonQuiz.substring(startIndex, endIndex + 1);
+                List<QuizQuestion> dtos = objectMapper.readValue(cleanJson, new TypeReference<List<QuizQuestion>>(){});
+                for (QuizQuestion dto : dtos) {
+                    questions.add(toQuestion(dto));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error parsing AI Quiz: " + e.getMessage());
+        }
+        return questions;
+    }
+
+    private QuizPrompt buildQuizPrompt(Long studentId, Long courseId) {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new IllegalArgumentException("Course not found"));
-        
+        List<QuizResult> history = quizResultRepository.findByStudentIdAndCourseId(studentId, courseId);
+        QuizDifficulty difficulty = difficultyOf(history);
+
+        String pedagogicalGoal = difficulty.getPedagogicalGoal();
+        if (difficulty == QuizDifficulty.EASY && !history.isEmpty()) {
+            pedagogicalGoal = "The student failed the last attempt. Generate simpler questions to reinforce basics and build confidence.";
+        }
+        return buildQuizPrompt(course, difficulty, pedagogicalGoal);
+    }
 
+    private QuizPrompt buildQuizPrompt(Course course, QuizDifficulty difficulty, String pedagogicalGoal) {
         String ragQuery = "Core concepts of " + course.getTitle();
         String context = ragService.retrieveContext(course, ragQuery);
 
-        String prompt = String.format("""
+        String text = String.format("""
             You are an AI Tutor Agent.
             
             CONTEXT FROM COURSE MATERIAL:
@@ -91,9 +227,13 @@ public class AiAgentService {
                 "explanation": "Brief explanation of why A is correct."
               }
             ]
-            """, context, difficulty, pedagogicalGoal,n);
+            """, context, difficulty, pedagogicalGoal, difficulty.getQuestionCount());
+
+        String cacheKey = GenerationCache.key(geminiService.getModelName(), QUIZ_PROMPT_VERSION, context,
+                difficulty.name(), String.valueOf(difficulty.getQuestionCount()), pedagogicalGoal);
+        return new QuizPrompt(text, cacheKey);
+    }
 
-        // Call LLM
-        return geminiService.generateContent(prompt);
+    private record QuizPrompt(String text, String cacheKey) {
     }
 }
\ No newline at end of file
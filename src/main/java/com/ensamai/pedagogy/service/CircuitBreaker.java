@@ -0,0 +1,114 @@
+package com.ensamai.pedagogy.service;
+
+/**
+ * Count-based circuit breaker over the outcomes of the last {@code windowSize} calls.
+ *
+ * CLOSED: calls pass; once the window holds {@code minimumCalls} outcomes and the share of
+ * failures or of calls slower than {@code slowCallNanos} reaches its threshold, it opens.
+ * OPEN: calls are refused for {@code openNanos}, then it turns HALF_OPEN.
+ * HALF_OPEN: {@code halfOpenCalls} trial calls pass; if all succeed it closes, any failure
+ * opens it again. Thread-safe.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // ring buffer of the last outcomes: 1 = failed, 2 = slow (both bits when slow and failed)
+    private final byte[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          double slowRateThreshold, long slowCallNanos, long openNanos, int halfOpenCalls) {
+        this.window = new byte[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowRateThreshold = slowRateThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.openNanos = openNanos;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    /**
+     * True if a call may go ahead now; every permitted call must then be reported to onResult.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) return false;
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) return false;
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onResult(boolean success, long durationNanos) {
+        boolean slow = durationNanos >= slowCallNanos;
+        if (state == State.HALF_OPEN) {
+            if (!success || slow) {
+                open();
+            } else if (++trialsSucceeded >= halfOpenCalls) {
+                state = State.CLOSED;
+                clearWindow();
+            }
+            return;
+        }
+        if (state == State.OPEN) return;
+
+        byte outcome = (byte) ((success ? 0 : 1) | (slow ? 2 : 0));
+        if (recorded == window.length) {
+            byte evicted = window[next];
+            if ((evicted & 1) != 0) failures--;
+            if ((evicted & 2) != 0) slowCalls--;
+        } else {
+            recorded++;
+        }
+        window[next] = outcome;
+        next = (next + 1) % window.length;
+        if (!success) failures++;
+        if (slow) slowCalls++;
+
+        if (recorded >= minimumCalls
+                && ((double) failures / recorded >= failureRateThreshold
+                    || (double) slowCalls / recorded >= slowRateThreshold)) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        // an expired OPEN reads as HALF_OPEN, the next call will be a trial
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) return State.HALF_OPEN;
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        clearWindow();
+    }
+
+    private void clearWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
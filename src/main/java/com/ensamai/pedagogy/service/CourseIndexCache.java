@@ -0,0 +1,110 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.CourseChunk;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Byte-budgeted LRU of per-course in-memory indexes.
+ * Indexes are loaded lazily (concurrent misses on one course share a single load),
+ * evicted least-recently-used once the budget is exceeded, and dropped whenever the
+ * chunks of their course change.
+ */
+public abstract class CourseIndexCache<T> implements CourseIndexListener {
+
+    private final long maxBytes;
+
+    // access-ordered, so iteration starts at the least recently used course
+    private final LinkedHashMap<Long, T> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes = 0;
+
+    // concurrent requests for the same cold course share one load
+    private final Map<Long, CompletableFuture<T>> loading = new ConcurrentHashMap<>();
+    // bumped on invalidation so a load that raced with it is not cached
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+
+    protected CourseIndexCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    protected abstract T load(Long courseId);
+
+    protected abstract long sizeInBytes(T index);
+
+    public T get(Long courseId) {
+        synchronized (this) {
+            T index = indexes.get(courseId);
+            if (index != null) return index;
+        }
+
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> pending = loading.putIfAbsent(courseId, created);
+        if (pending != null) {
+            return pending.join();
+        }
+
+        try {
+            long generation = generations.getOrDefault(courseId, 0L);
+            T index = load(courseId);
+            put(courseId, index, generation);
+            created.complete(index);
+            return index;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(courseId, created);
+        }
+    }
+
+    public void invalidate(Long courseId) {
+        generations.merge(courseId, 1L, Long::sum);
+        synchronized (this) {
+            T removed = indexes.remove(courseId);
+            if (removed != null) usedBytes -= sizeInBytes(removed);
+        }
+    }
+
+    @Override
+    public void chunksAdded(Long courseId, List<CourseChunk> chunks) {
+        invalidate(courseId);
+    }
+
+    @Override
+    public void chunksRemoved(Long courseId, Collection<Long> chunkIds) {
+        invalidate(courseId);
+    }
+
+    @Override
+    public void courseRemoved(Long courseId) {
+        invalidate(courseId);
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private synchronized void put(Long courseId, T index, long generation) {
+        if (generations.getOrDefault(courseId, 0L) != generation) return;
+        long size = sizeInBytes(index);
+        if (size > maxBytes) return; // never cacheable, serve it uncached
+
+        T previous = indexes.put(courseId, index);
+        if (previous != null) usedBytes -= sizeInBytes(previous);
+        usedBytes += size;
+
+        Iterator<Map.Entry<Long, T>> eldest = indexes.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<Long, T> entry = eldest.next();
+            if (entry.getKey().equals(courseId)) continue;
+            usedBytes -= sizeInBytes(entry.getValue());
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.CourseChunk;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Notified by RagService whenever the persisted chunks of a course change,
+ * so in-memory and on-disk indexes can follow.
+ */
+public interface CourseIndexListener {
+
+    /**
+     * Called after new chunks (with their normalized embeddings) have been saved.
+     */
+    void chunksAdded(Long courseId, List<CourseChunk> chunks);
+
+    /**
+     * Called after some chunks of the course have been deleted, e.g. orphans of a re-ingest.
+     */
+    void chunksRemoved(Long courseId, Collection<Long> chunkIds);
+
+    /**
+     * Called after every chunk of the course has been deleted.
+     */
+    void courseRemoved(Long courseId);
+}
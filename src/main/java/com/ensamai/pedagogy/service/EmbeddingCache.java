@@ -0,0 +1,161 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.EmbeddingCacheEntry;
+import com.ensamai.pedagogy.rag.ContentHash;
+import com.ensamai.pedagogy.repository.EmbeddingCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Content-addressed cache in front of the embedding API, keyed by SHA-256 of (model, text).
+ * A size-bounded in-heap LRU tier sits over the embedding_cache_entry table, so shared
+ * boilerplate and re-imported courses are never embedded twice, even across restarts.
+ * Vectors are copied in and out, since callers normalize them in place.
+ *
+ * Metrics: embedding.cache.requests{result=hot|stored|miss}, embedding.cache.hot.bytes,
+ * embedding.cache.hot.entries.
+ */
+@Component
+public class EmbeddingCache {
+
+    // key string, array header and map entry overhead per hot entry
+    private static final long ENTRY_OVERHEAD_BYTES = 200;
+
+    private final EmbeddingCacheRepository repository;
+    private final long hotMaxBytes;
+
+    // access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, float[]> hot = new LinkedHashMap<>(1024, 0.75f, true);
+    private long hotBytes = 0;
+
+    private final Counter hotHits;
+    private final Counter storedHits;
+    private final Counter misses;
+
+    public EmbeddingCache(EmbeddingCacheRepository repository,
+                          MeterRegistry meterRegistry,
+                          @Value("${rag.embedding-cache.hot-max-bytes:33554432}") long hotMaxBytes) {
+        this.repository = repository;
+        this.hotMaxBytes = hotMaxBytes;
+        this.hotHits = meterRegistry.counter("embedding.cache.requests", "result", "hot");
+        this.storedHits = meterRegistry.counter("embedding.cache.requests", "result", "stored");
+        this.misses = meterRegistry.counter("embedding.cache.requests", "result", "miss");
+        Gauge.builder("embedding.cache.hot.bytes", this, EmbeddingCache::getHotBytes).register(meterRegistry);
+        Gauge.builder("embedding.cache.hot.entries", this, EmbeddingCache::getHotEntries).register(meterRegistry);
+    }
+
+    public static String key(String model, String text) {
+        return ContentHash.sha256(model, text);
+    }
+
+    /**
+     * Looks up every text, returning a copy of the vector for each one found, by position.
+     * Texts not cached map to null.
+     */
+    public List<float[]> getAll(String model, List<String> texts) {
+        List<float[]> found = new ArrayList<>(Collections.nCopies(texts.size(), null));
+        Map<String, List<Integer>> cold = new HashMap<>();
+
+        synchronized (this) {
+            for (int i = 0; i < texts.size(); i++) {
+                String key = key(model, texts.get(i));
+                float[] vector = hot.get(key);
+                if (vector != null) {
+                    found.set(i, vector.clone());
+                    hotHits.increment();
+                } else {
+                    cold.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        if (cold.isEmpty()) return found;
+
+        List<EmbeddingCacheEntry> stored;
+        try {
+            stored = repository.findAllById(cold.keySet());
+        } catch (DataAccessException e) {
+            System.err.println("Error reading embedding cache: " + e.getMessage());
+            stored = List.of();
+        }
+        for (EmbeddingCacheEntry entry : stored) {
+            promote(entry.getCacheKey(), entry.getEmbedding());
+            for (int i : cold.remove(entry.getCacheKey())) {
+                found.set(i, entry.getEmbedding().clone());
+                storedHits.increment();
+            }
+        }
+        for (List<Integer> positions : cold.values()) {
+            misses.increment(positions.size());
+        }
+        return found;
+    }
+
+    /**
+     * Stores freshly computed vectors; empty vectors (failed calls) are not cached.
+     */
+    public void putAll(String model, List<String> texts, List<float[]> vectors) {
+        Map<String, EmbeddingCacheEntry> entries = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            float[] vector = vectors.get(i);
+            if (vector == null || vector.length == 0) continue;
+            String key = key(model, texts.get(i));
+            entries.putIfAbsent(key, new EmbeddingCacheEntry(key, model, vector.clone()));
+        }
+        if (entries.isEmpty()) return;
+
+        for (EmbeddingCacheEntry entry : entries.values()) {
+            promote(entry.getCacheKey(), entry.getEmbedding());
+        }
+        try {
+            repository.saveAll(entries.values());
+        } catch (DataAccessException e) {
+            // another request stored some of these keys first; keep the rest
+            for (EmbeddingCacheEntry entry : entries.values()) {
+                saveQuietly(entry);
+            }
+        }
+    }
+
+    public synchronized long getHotBytes() {
+        return hotBytes;
+    }
+
+    public synchronized int getHotEntries() {
+        return hot.size();
+    }
+
+    private void saveQuietly(EmbeddingCacheEntry entry) {
+        try {
+            if (!repository.existsById(entry.getCacheKey())) repository.save(entry);
+        } catch (DataAccessException e) {
+            System.err.println("Error storing cached embedding: " + e.getMessage());
+        }
+    }
+
+    private synchronized void promote(String key, float[] vector) {
+        long size = sizeOf(vector);
+        if (size > hotMaxBytes) return;
+
+        float[] previous = hot.put(key, vector);
+        if (previous != null) hotBytes -= sizeOf(previous);
+        hotBytes += size;
+
+        Iterator<Map.Entry<String, float[]>> eldest = hot.entrySet().iterator();
+        while (hotBytes > hotMaxBytes && eldest.hasNext()) {
+            Map.Entry<String, float[]> entry = eldest.next();
+            if (entry.getKey().equals(key)) continue;
+            hotBytes -= sizeOf(entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long sizeOf(float[] vector) {
+        return (long) vector.length * Float.BYTES + ENTRY_OVERHEAD_BYTES;
+    }
+}
@@ -0,0 +1,92 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.rag.EmbeddingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entry point for embeddings: the configured EmbeddingProvider behind the embedding cache.
+ * Texts already cached, or repeated within a call, are sent to the provider once or not at all;
+ * a text already being embedded by a concurrent call is waited for rather than sent again.
+ */
+@Service
+public class EmbeddingService {
+
+    private final EmbeddingProvider provider;
+    private final EmbeddingCache embeddingCache;
+    private final SingleFlight<float[]> inFlight;
+
+    public EmbeddingService(EmbeddingProvider provider, EmbeddingCache embeddingCache, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.embeddingCache = embeddingCache;
+        this.inFlight = new SingleFlight<>(meterRegistry, "embedding", float[]::clone);
+        System.out.println("✅ Embedding provider: " + provider.modelName());
+    }
+
+    public String getModelName() {
+        return provider.modelName();
+    }
+
+    public int getEmbeddingBatchSize() {
+        return provider.batchSize();
+    }
+
+    public int getMaxInFlightBatches() {
+        return provider.maxInFlightBatches();
+    }
+
+    public float[] getEmbedding(String text) {
+        if (!provider.cacheable()) return provider.embed(text);
+
+        float[] cached = embeddingCache.getAll(provider.modelName(), List.of(text)).get(0);
+        if (cached != null) return cached;
+
+        return inFlight.execute(EmbeddingCache.key(provider.modelName(), text), () -> {
+            float[] embedding = provider.embed(text);
+            embeddingCache.putAll(provider.modelName(), List.of(text), List.of(embedding));
+            return embedding;
+        });
+    }
+
+    /**
+     * Embeds many texts, results in input order; texts of a failed batch get an empty vector.
+     */
+    public List<float[]> getEmbeddings(List<String> texts) {
+        if (!provider.cacheable()) return new ArrayList<>(provider.embedAll(texts));
+
+        List<float[]> embeddings = embeddingCache.getAll(provider.modelName(), texts);
+
+        // distinct missing texts -> their positions in the input
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (embeddings.get(i) == null) {
+                missing.computeIfAbsent(texts.get(i), t -> new ArrayList<>()).add(i);
+            }
+        }
+        if (missing.isEmpty()) return embeddings;
+
+        List<String> toFetch = new ArrayList<>(missing.keySet());
+        List<String> keys = new ArrayList<>(toFetch.size());
+        for (String text : toFetch) keys.add(EmbeddingCache.key(provider.modelName(), text));
+        List<float[]> fetched = inFlight.executeAll(keys, positions -> {
+            List<String> batch = new ArrayList<>(positions.size());
+            for (int i : positions) batch.add(toFetch.get(i));
+            List<float[]> vectors = provider.embedAll(batch);
+            embeddingCache.putAll(provider.modelName(), batch, vectors);
+            return vectors;
+        });
+        for (int j = 0; j < toFetch.size(); j++) {
+            List<Integer> positions = missing.get(toFetch.get(j));
+            for (int k = 0; k < positions.size(); k++) {
+                // every position gets its own array, callers normalize in place
+                embeddings.set(positions.get(k), k == 0 ? fetched.get(j) : fetched.get(j).clone());
+            }
+        }
+        return embeddings;
+    }
+}
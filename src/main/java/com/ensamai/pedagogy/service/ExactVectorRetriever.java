@@ -0,0 +1,85 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.rag.CourseVectorIndex;
+import com.ensamai.pedagogy.rag.MultiQueryScan;
+import com.ensamai.pedagogy.rag.SimilarityKernel;
+import com.ensamai.pedagogy.rag.TopK;
+import com.ensamai.pedagogy.rag.VectorRetriever;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exact brute-force scan of one course's resident vector index.
+ */
+@Component
+public class ExactVectorRetriever implements VectorRetriever {
+
+    private final VectorIndexCache indexCache;
+    private final SimilarityKernel similarityKernel;
+
+    // Per-thread scratch space, so scoring a query allocates nothing
+    private final ThreadLocal<TopK> topKSelector = new ThreadLocal<>();
+    private final ThreadLocal<int[]> winnerRows = new ThreadLocal<>();
+
+    public ExactVectorRetriever(VectorIndexCache indexCache, SimilarityKernel similarityKernel) {
+        this.indexCache = indexCache;
+        this.similarityKernel = similarityKernel;
+    }
+
+    @Override
+    public int search(Long courseId, float[] query, int k, long[] out) {
+        if (courseId == null) {
+            throw new UnsupportedOperationException("The exact retriever only searches one course at a time");
+        }
+        CourseVectorIndex index = indexCache.get(courseId);
+        if (index.size() == 0 || query.length != index.getDimension()) return 0;
+
+        // Vectors are unit length, so the dot product is the cosine similarity
+        TopK topK = selector(k);
+        similarityKernel.scoreAll(index.getMatrix(), index.size(), query, topK);
+        int[] winners = winnerRows.get();
+        int count = topK.drainDescending(winners);
+        for (int i = 0; i < count; i++) {
+            out[i] = index.getChunkId(winners[i]);
+        }
+        return count;
+    }
+
+    /**
+     * One blocked pass over the course matrix for all the queries, see MultiQueryScan.
+     */
+    @Override
+    public int[] searchAll(Long courseId, float[][] queries, int k, long[][] out) {
+        if (courseId == null) {
+            throw new UnsupportedOperationException("The exact retriever only searches one course at a time");
+        }
+        int[] counts = new int[queries.length];
+        CourseVectorIndex index = indexCache.get(courseId);
+        if (index.size() == 0) return counts;
+
+        int[][] winners = MultiQueryScan.topRows(similarityKernel, index.getMatrix(), index.size(),
+                index.getDimension(), queries, k);
+        for (int q = 0; q < queries.length; q++) {
+            counts[q] = winners[q].length;
+            for (int i = 0; i < winners[q].length; i++) {
+                out[q][i] = index.getChunkId(winners[q][i]);
+            }
+        }
+        return counts;
+    }
+
+    private TopK selector(int k) {
+        TopK topK = topKSelector.get();
+        if (topK == null || topK.capacity() != k) {
+            topK = new TopK(k);
+            topKSelector.set(topK);
+            winnerRows.set(new int[k]);
+        }
+        topK.reset();
+        return topK;
+    }
+
+    @Override
+    public String name() {
+        return "exact";
+    }
+}
@@ -0,0 +1,193 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.rag.EmbeddingProvider;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embeddings from the Gemini API (embedContent, batchEmbedContents). The default provider,
+ * replaced by the in-process one under the local-embeddings profile.
+ */
+@Service
+@Profile("!local-embeddings")
+public class GeminiEmbeddingProvider implements EmbeddingProvider {
+
+    @Value("${gemini.api.key}")
+    private String apiKey;
+
+    @Value("${gemini.api.url}")
+    private String baseUrl;
+
+    // part of the embedding cache key, so switching models never serves stale vectors
+    @Value("${gemini.embedding.model:text-embedding-004}")
+    private String embeddingModel;
+
+    // texts per batchEmbedContents call (the API accepts at most 100)
+    @Value("${gemini.embedding.batch-size:100}")
+    private int embeddingBatchSize;
+
+    // batch calls allowed in flight at once during ingestion
+    @Value("${gemini.embedding.max-in-flight:4}")
+    private int maxInFlightBatches;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ExecutorService batchExecutor;
+
+    public GeminiEmbeddingProvider(RestTemplate geminiRestTemplate) {
+        this.restTemplate = geminiRestTemplate;
+    }
+
+    @PostConstruct
+    void startBatchExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        batchExecutor = Executors.newFixedThreadPool(maxInFlightBatches, r -> {
+            Thread t = new Thread(r, "gemini-embed-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stopBatchExecutor() {
+        batchExecutor.shutdownNow();
+    }
+
+    @Override
+    public String modelName() {
+        return embeddingModel;
+    }
+
+    @Override
+    public int batchSize() {
+        return embeddingBatchSize;
+    }
+
+    @Override
+    public int maxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        String url = baseUrl + "{model}:embedContent?key={key}";
+
+        try {  
+            ObjectNode rootNode = objectMapper.createObjectNode();
+            ObjectNode contentNode = objectMapper.createObjectNode();
+            ArrayNode partsArray = objectMapper.createArrayNode();
+            ObjectNode textPart = objectMapper.createObjectNode();
+            
+            textPart.put("text", text);
+            partsArray.add(textPart);
+            
+            contentNode.set("parts", partsArray);
+            rootNode.set("content", contentNode);
+            rootNode.put("model", "models/" + embeddingModel);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+
+            HttpEntity<String> entity = new HttpEntity<>(rootNode.toString(), headers);
+            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class, embeddingModel, apiKey);
+
+            if (response.getStatusCode() == HttpStatus.OK) {
+                JsonNode root = objectMapper.readTree(response.getBody());
+                JsonNode valuesNode = root.path("embedding").path("values");
+                
+                float[] embedding = new float[valuesNode.size()];
+                for (int i = 0; i < embedding.length; i++) {
+                    embedding[i] = (float) valuesNode.get(i).asDouble();
+                }
+                return embedding;
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching embedding: " + e.getMessage());
+        }
+        return new float[0];
+    }
+
+    /**
+     * {@code gemini.embedding.batch-size} texts per batchEmbedContents call, with at most
+     * {@code gemini.embedding.max-in-flight} calls running at once.
+     */
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        List<Future<List<float[]>>> batches = new ArrayList<>();
+        for (int from = 0; from < texts.size(); from += embeddingBatchSize) {
+            List<String> batch = texts.subList(from, Math.min(from + embeddingBatchSize, texts.size()));
+            batches.add(batchExecutor.submit(() -> embedBatch(batch)));
+        }
+
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        for (Future<List<float[]>> batch : batches) {
+            try {
+                embeddings.addAll(batch.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while embedding", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Embedding batch failed", e.getCause());
+            }
+        }
+        return embeddings;
+    }
+
+    private List<float[]> embedBatch(List<String> texts) {
+        String url = baseUrl + "{model}:batchEmbedContents?key={key}";
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+
+        try {
+            ObjectNode rootNode = objectMapper.createObjectNode();
+            ArrayNode requests = rootNode.putArray("requests");
+            for (String text : texts) {
+                ObjectNode request = requests.addObject();
+                request.put("model", "models/" + embeddingModel);
+                request.putObject("content").putArray("parts").addObject().put("text", text);
+            }
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+
+            HttpEntity<String> entity = new HttpEntity<>(rootNode.toString(), headers);
+            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class, embeddingModel, apiKey);
+
+            if (response.getStatusCode() == HttpStatus.OK) {
+                JsonNode items = objectMapper.readTree(response.getBody()).path("embeddings");
+                for (JsonNode item : items) {
+                    JsonNode valuesNode = item.path("values");
+                    float[] embedding = new float[valuesNode.size()];
+                    for (int i = 0; i < embedding.length; i++) {
+                        embedding[i] = (float) valuesNode.get(i).asDouble();
+                    }
+                    embeddings.add(embedding);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching embedding batch: " + e.getMessage());
+        }
+
+        if (embeddings.size() != texts.size()) {
+            embeddings.clear();
+            for (int i = 0; i < texts.size(); i++) embeddings.add(new float[0]);
+        }
+        return embeddings;
+    }
+}
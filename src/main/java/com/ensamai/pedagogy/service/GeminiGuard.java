@@ -0,0 +1,198 @@
+package com.ensamai.pedagogy.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Resilience around Gemini generation calls, so upstream trouble costs bounded time and
+ * threads instead of piling up request threads:
+ * - a bulkhead: at most gemini.resilience.max-concurrent calls at once, a caller waits
+ *   gemini.resilience.bulkhead-wait-ms for a slot and is refused after that;
+ * - a circuit breaker opening on the error rate or the slow-call rate of the last calls,
+ *   streamed calls being timed to their first chunk;
+ * - retries with full-jitter exponential backoff, given up when the next attempt would
+ *   start after the deadline, each attempt being handed the time left until it; client
+ *   errors other than 429 are neither retried nor counted as failures by the breaker.
+ * Refused and failed calls throw IllegalStateException.
+ *
+ * Metrics: gemini.circuit.state (0 closed, 1 half-open, 2 open) and
+ * gemini.guard.rejections{reason=circuit-open|bulkhead-full|deadline}.
+ */
+@Component
+public class GeminiGuard {
+
+    private static final long NOT_YET = Long.MIN_VALUE;
+
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitMillis;
+    private final CircuitBreaker circuitBreaker;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long deadlineMillis;
+
+    private final Counter circuitOpenRejections;
+    private final Counter bulkheadRejections;
+    private final Counter deadlineRejections;
+
+    public GeminiGuard(MeterRegistry meterRegistry,
+                       @Value("${gemini.resilience.max-concurrent:8}") int maxConcurrent,
+                       @Value("${gemini.resilience.bulkhead-wait-ms:250}") long bulkheadWaitMillis,
+                       @Value("${gemini.resilience.window-size:20}") int windowSize,
+                       @Value("${gemini.resilience.minimum-calls:5}") int minimumCalls,
+                       @Value("${gemini.resilience.failure-rate:0.5}") double failureRate,
+                       @Value("${gemini.resilience.slow-call-rate:0.5}") double slowCallRate,
+                       @Value("${gemini.resilience.slow-call-ms:20000}") long slowCallMillis,
+                       @Value("${gemini.resilience.open-ms:30000}") long openMillis,
+                       @Value("${gemini.resilience.half-open-calls:2}") int halfOpenCalls,
+                       @Value("${gemini.resilience.max-attempts:3}") int maxAttempts,
+                       @Value("${gemini.resilience.base-backoff-ms:200}") long baseBackoffMillis,
+                       @Value("${gemini.resilience.deadline-ms:45000}") long deadlineMillis) {
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.bulkheadWaitMillis = bulkheadWaitMillis;
+        this.circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRate, slowCallRate,
+                TimeUnit.MILLISECONDS.toNanos(slowCallMillis), TimeUnit.MILLISECONDS.toNanos(openMillis), halfOpenCalls);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.circuitOpenRejections = meterRegistry.counter("gemini.guard.rejections", "reason", "circuit-open");
+        this.bulkheadRejections = meterRegistry.counter("gemini.guard.rejections", "reason", "bulkhead-full");
+        this.deadlineRejections = meterRegistry.counter("gemini.guard.rejections", "reason", "deadline");
+        Gauge.builder("gemini.circuit.state", circuitBreaker, cb -> switch (cb.getState()) {
+            case CLOSED -> 0;
+            case HALF_OPEN -> 1;
+            case OPEN -> 2;
+        }).register(meterRegistry);
+    }
+
+    /**
+     * False while the circuit is open: callers should use a fallback without trying.
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.getState() != CircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * Runs the call with retries; it should throw on failure rather than return a placeholder.
+     */
+    public <T> T call(Supplier<T> call) {
+        return call(budgetMillis -> call.get());
+    }
+
+    /**
+     * Like call(Supplier), the call being given the milliseconds left until the deadline, which
+     * it should use as its timeout so an attempt cannot outlast the deadline.
+     */
+    public <T> T call(LongFunction<T> call) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        RuntimeException lastFailure = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0) {
+                // full jitter: uniform in [0, base * 2^attempt), so retrying callers spread out
+                long backoff = ThreadLocalRandom.current().nextLong(baseBackoffMillis << attempt);
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff) >= deadline) {
+                    deadlineRejections.increment();
+                    break;
+                }
+                sleep(backoff);
+            }
+            // the first attempt runs even with no time left
+            long budgetMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            try {
+                return callOnce(() -> call.apply(budgetMillis));
+            } catch (Rejected e) {
+                // refused by the bulkhead or the circuit, a retry would be refused too
+                throw e;
+            } catch (HttpClientErrorException e) {
+                // a bad request stays bad, only rate limiting is worth waiting out
+                if (e.getStatusCode().value() != 429) throw e;
+                lastFailure = e;
+            } catch (RuntimeException e) {
+                lastFailure = e;
+            }
+        }
+        throw new IllegalStateException("Gemini call failed after retries: " + lastFailure.getMessage(), lastFailure);
+    }
+
+    /**
+     * Runs the call once through the bulkhead and the circuit breaker, for calls that cannot
+     * be retried (a stream already handed out part of its output).
+     */
+    public <T> T callOnce(Supplier<T> call) {
+        return guarded(firstChunk -> call.get());
+    }
+
+    /**
+     * callOnce for a streamed response: the call runs {@code firstChunk} when the first piece of
+     * the response arrives. The circuit breaker times the call up to then, so a long generation
+     * that starts promptly is not a slow call.
+     */
+    public <T> T callStreaming(Function<Runnable, T> call) {
+        return guarded(call);
+    }
+
+    private <T> T guarded(Function<Runnable, T> call) {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            bulkheadRejections.increment();
+            throw new Rejected("Too many concurrent Gemini calls");
+        }
+
+        try {
+            // checked after the bulkhead, so every permitted call is reported back
+            if (!circuitBreaker.tryAcquire()) {
+                circuitOpenRejections.increment();
+                throw new Rejected("Gemini circuit is open");
+            }
+            long start = System.nanoTime();
+            AtomicLong firstChunkAt = new AtomicLong(NOT_YET);
+            boolean success = false;
+            try {
+                T result = call.apply(() -> firstChunkAt.compareAndSet(NOT_YET, System.nanoTime()));
+                success = true;
+                return result;
+            } catch (HttpClientErrorException e) {
+                // the request was at fault, not Gemini; rate limiting still means it is overloaded
+                success = e.getStatusCode().value() != 429;
+                throw e;
+            } finally {
+                long end = firstChunkAt.get() != NOT_YET ? firstChunkAt.get() : System.nanoTime();
+                circuitBreaker.onResult(success, end - start);
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+
+    private static final class Rejected extends IllegalStateException {
+        Rejected(String message) {
+            super(message);
+        }
+    }
+}
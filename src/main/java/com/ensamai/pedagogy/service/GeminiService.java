@@ -1,19 +1,38 @@
 package com.ensamai.pedagogy.service;
 
 import com.ensamai.pedagogy.model.Question;
+import com.ensamai.pedagogy.rag.ContentHash;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Text generation through the Gemini API; embeddings go through EmbeddingService.
+ */
 @Service
 public class GeminiService {
 
@@ -23,76 +42,173 @@ public class GeminiService {
     @Value("${gemini.api.url}") 
     private String baseUrl; 
 
+    @Value("${gemini.generation.model:gemini-2.5-flash}")
+    private String model;
+
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    private final CloseableHttpClient httpClient;
+    private final RequestConfig requestConfig;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    public List<Double> getEmbedding(String text) {
-        String url = baseUrl + "text-embedding-004:embedContent?key=" + apiKey;
-
-        try {  
-            ObjectNode rootNode = objectMapper.createObjectNode();
-            ObjectNode contentNode = objectMapper.createObjectNode();
-            ArrayNode partsArray = objectMapper.createArrayNode();
-            ObjectNode textPart = objectMapper.createObjectNode();
-            
-            textPart.put("text", text);
-            partsArray.add(textPart);
-            
-            contentNode.set("parts", partsArray);
-            rootNode.set("content", contentNode);
-            rootNode.put("model", "models/text-embedding-004");
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<String> entity = new HttpEntity<>(rootNode.toString(), headers);
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-
-            if (response.getStatusCode() == HttpStatus.OK) {
-                JsonNode root = objectMapper.readTree(response.getBody());
-                JsonNode valuesNode = root.path("embedding").path("values");
-                
-                List<Double> embedding = new ArrayList<>();
-                if (valuesNode.isArray()) {
-                    for (JsonNode val : valuesNode) {
-                        embedding.add(val.asDouble());
-                    }
-                }
-                return embedding;
-            }
-        } catch (Exception e) {
-            System.err.println("Error fetching embedding: " + e.getMessage());
-        }
-        return Collections.emptyList();
+
+    // identical prompts sent at the same moment (a whole class opening a quiz) share one call
+    private final SingleFlight<String> inFlight;
+    private final GeminiGuard guard;
+
+    public GeminiService(RestTemplate geminiRestTemplate, CloseableHttpClient geminiHttpClient,
+                         RequestConfig geminiRequestConfig, MeterRegistry meterRegistry, GeminiGuard guard) {
+        this.restTemplate = geminiRestTemplate;
+        this.httpClient = geminiHttpClient;
+        this.requestConfig = geminiRequestConfig;
+        this.guard = guard;
+        this.inFlight = new SingleFlight<>(meterRegistry, "generation", response -> response);
     }
 
+    public String getModelName() {
+        return model;
+    }
+
+    /**
+     * False while the circuit breaker is open; callers should fall back without calling.
+     */
+    public boolean isAvailable() {
+        return guard.isAvailable();
+    }
 
     public String generateContent(String prompt) {
+        try {
+            return inFlight.execute(ContentHash.sha256(model, prompt),
+                    () -> guard.call(budgetMillis -> callGenerateContent(prompt, budgetMillis)));
+        } catch (RuntimeException e) {
+            System.err.println("Error generating content: " + e.getMessage());
 
-        String url = baseUrl + "gemini-2.5-flash:generateContent?key=" + apiKey;
+            return "[]"; 
+        }
+    }
 
-        try {
-            ObjectNode rootNode = objectMapper.createObjectNode();
-            ArrayNode contentsArray = rootNode.putArray("contents");
-            ObjectNode contentObj = contentsArray.addObject();
-            ArrayNode partsArray = contentObj.putArray("parts");
-            partsArray.addObject().put("text", prompt);
+    /**
+     * One generateContent request, waiting at most budgetMillis for the pool and for the
+     * response: on the HTTP client rather than the RestTemplate, whose timeouts are fixed.
+     */
+    private String callGenerateContent(String prompt, long budgetMillis) {
+        URI uri = restTemplate.getUriTemplateHandler()
+                .expand(baseUrl + "{model}:generateContent?key={key}", model, apiKey);
+        HttpPost post = new HttpPost(uri);
+        post.setEntity(new StringEntity(requestBody(prompt), ContentType.APPLICATION_JSON));
+        post.setConfig(RequestConfig.copy(requestConfig)
+                .setConnectionRequestTimeout(shorter(requestConfig.getConnectionRequestTimeout(), budgetMillis))
+                .setResponseTimeout(shorter(requestConfig.getResponseTimeout(), budgetMillis))
+                .build());
+
+        String body;
+        int status;
+        try (ClassicHttpResponse response = httpClient.executeOpen(null, post, null)) {
+            status = response.getCode();
+            body = response.getEntity() != null ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+            if (status >= 400 && status < 500) {
+                throw new HttpClientErrorException(HttpStatusCode.valueOf(status), response.getReasonPhrase());
+            }
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Gemini call failed: " + e.getMessage(), e);
+        }
+        if (status >= 300) throw new IllegalStateException("Gemini call failed with HTTP " + status);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+        return parseGeminiTextResponse(body);
+    }
 
-            HttpEntity<String> entity = new HttpEntity<>(rootNode.toString(), headers);
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
+    private static Timeout shorter(Timeout configured, long budgetMillis) {
+        return configured == null || configured.toMilliseconds() > budgetMillis
+                ? Timeout.ofMilliseconds(budgetMillis) : configured;
+    }
 
-            return parseGeminiTextResponse(response.getBody());
+    /**
+     * Generates with streamGenerateContent, handing each piece of text to the consumer as the
+     * model produces it. Errors are thrown rather than swallowed, so the caller can tell the
+     * client; an exception thrown by the consumer aborts the stream and is rethrown.
+     * Goes through the bulkhead and circuit breaker, but is never retried; the breaker judges
+     * it by the time to its first line, not by the length of the whole generation.
+     *
+     * Runs on the HTTP client itself rather than the RestTemplate: closing a response reads the
+     * rest of the chunked body so the connection can be reused, which would wait for the whole
+     * generation. An abandoned stream cancels the request instead, dropping the connection.
+     */
+    public void streamContent(String prompt, Consumer<String> onText) {
+        URI uri = restTemplate.getUriTemplateHandler()
+                .expand(baseUrl + "{model}:streamGenerateContent?alt=sse&key={key}", model, apiKey);
+        HttpPost post = new HttpPost(uri);
+        post.setEntity(new StringEntity(requestBody(prompt), ContentType.APPLICATION_JSON));
+        // a failing consumer (the student left) is not an upstream failure for the circuit breaker
+        AtomicReference<RuntimeException> consumerFailure = new AtomicReference<>();
+        Consumer<String> consumer = text -> {
+            try {
+                onText.accept(text);
+            } catch (RuntimeException e) {
+                consumerFailure.set(e);
+            }
+        };
+
+        guard.callStreaming(firstChunk -> {
+            ClassicHttpResponse response = null;
+            boolean complete = false;
+            try {
+                response = httpClient.executeOpen(null, post, null);
+                if (response.getCode() >= 300) {
+                    throw new IllegalStateException("Gemini stream failed with HTTP " + response.getCode());
+                }
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8));
+                // an SSE event is its data: lines up to a blank line
+                StringBuilder data = new StringBuilder();
+                String line;
+                while (consumerFailure.get() == null && (line = reader.readLine()) != null) {
+                    firstChunk.run();
+                    if (line.startsWith("data:")) {
+                        data.append(line, 5, line.length());
+                    } else if (line.isEmpty() && data.length() > 0) {
+                        emitText(data.toString(), consumer);
+                        data.setLength(0);
+                    }
+                }
+                if (consumerFailure.get() == null && data.length() > 0) emitText(data.toString(), consumer);
+                complete = consumerFailure.get() == null;
+                return null;
+            } catch (IOException e) {
+                throw new IllegalStateException("Gemini stream failed: " + e.getMessage(), e);
+            } finally {
+                if (!complete) post.cancel();
+                closeQuietly(response);
+            }
+        });
 
-        } catch (Exception e) {
-            System.err.println("Error generating content: " + e.getMessage());
+        if (consumerFailure.get() != null) throw consumerFailure.get();
+    }
 
-            return "[]"; 
+    private static void closeQuietly(ClassicHttpResponse response) {
+        if (response == null) return;
+        try {
+            response.close();
+        } catch (IOException e) {
+            // the connection was dropped on purpose, or is broken already
         }
     }
 
+    private void emitText(String event, Consumer<String> onText) throws IOException {
+        JsonNode parts = objectMapper.readTree(event).path("candidates").path(0).path("content").path("parts");
+        for (JsonNode part : parts) {
+            String text = part.path("text").asText("");
+            if (!text.isEmpty()) onText.accept(text);
+        }
+    }
+
+    private String requestBody(String prompt) {
+        ObjectNode rootNode = objectMapper.createObjectNode();
+        ArrayNode contentsArray = rootNode.putArray("contents");
+        ObjectNode contentObj = contentsArray.addObject();
+        ArrayNode partsArray = contentObj.putArray("parts");
+        partsArray.addObject().put("text", prompt);
+        return rootNode.toString();
+    }
+
     private String parseGeminiTextResponse(String jsonResponse) {
         try {
             JsonNode root = objectMapper.readTree(jsonResponse);
@@ -102,8 +218,8 @@ public class GeminiService {
             
             return text.replace("```json", "").replace("```", "").trim();
         } catch (Exception e) {
-            System.err.println("Error parsing Gemini response: " + e.getMessage());
-            return "[]";
+            // e.g. a blocked answer without candidates, worth a retry
+            throw new IllegalStateException("Error parsing Gemini response: " + e.getMessage(), e);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.rag.ContentHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Reuses model responses for identical prompts, keyed by a fingerprint of everything that
+ * shapes the prompt (model, template version, retrieved context, difficulty...).
+ *
+ * Callers opt in. An entry expires after gemini.generation-cache.ttl-seconds and is dropped
+ * once served gemini.generation-cache.max-reuses times, so students still see fresh quizzes.
+ */
+@Component
+public class GenerationCache {
+
+    private final LinkedHashMap<String, Entry> entries;
+    private final long ttlMillis;
+    private final int maxReuses;
+    private final LongSupplier clock;
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public GenerationCache(MeterRegistry meterRegistry,
+                           @Value("${gemini.generation-cache.max-entries:500}") int maxEntries,
+                           @Value("${gemini.generation-cache.ttl-seconds:600}") long ttlSeconds,
+                           @Value("${gemini.generation-cache.max-reuses:3}") int maxReuses) {
+        this(meterRegistry, maxEntries, ttlSeconds, maxReuses, System::currentTimeMillis);
+    }
+
+    /**
+     * For tests: {@code clock} gives the current time in milliseconds.
+     */
+    GenerationCache(MeterRegistry meterRegistry, int maxEntries, long ttlSeconds, int maxReuses, LongSupplier clock) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxReuses = maxReuses;
+        this.clock = clock;
+        this.hits = meterRegistry.counter("gemini.generation.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("gemini.generation.cache.requests", "result", "miss");
+        Gauge.builder("gemini.generation.cache.entries", this, GenerationCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Cache key of a prompt, from every part that changes its response.
+     */
+    public static String key(String... promptParts) {
+        return ContentHash.sha256(promptParts);
+    }
+
+    /**
+     * The cached response for the key, counting one reuse.
+     */
+    public synchronized Optional<String> take(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && clock.getAsLong() - entry.createdAt > ttlMillis) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (--entry.remainingReuses <= 0) entries.remove(key);
+        hits.increment();
+        return Optional.of(entry.response);
+    }
+
+    public synchronized void put(String key, String response) {
+        if (maxReuses > 0) entries.put(key, new Entry(response, maxReuses, clock.getAsLong()));
+    }
+
+    /**
+     * The cached response, or a freshly generated one, cached if {@code cacheable} accepts it
+     * (failed generations should not be served again).
+     */
+    public String getOrGenerate(String key, Supplier<String> generator, Predicate<String> cacheable) {
+        Optional<String> cached = take(key);
+        if (cached.isPresent()) return cached.get();
+        String response = generator.get();
+        if (cacheable.test(response)) put(key, response);
+        return response;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        final String response;
+        final long createdAt;
+        int remainingReuses;
+
+        Entry(String response, int remainingReuses, long createdAt) {
+            this.response = response;
+            this.remainingReuses = remainingReuses;
+            this.createdAt = createdAt;
+        }
+    }
+}
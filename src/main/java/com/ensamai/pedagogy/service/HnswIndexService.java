@@ -0,0 +1,207 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.CourseChunk;
+import com.ensamai.pedagogy.rag.HnswIndex;
+import com.ensamai.pedagogy.rag.SimilarityKernel;
+import com.ensamai.pedagogy.rag.VectorRetriever;
+import com.ensamai.pedagogy.repository.CourseChunkRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Approximate nearest-neighbour retrieval over the chunks of every course,
+ * enabled with rag.retriever=hnsw.
+ * The graph is loaded from data/ at startup (or rebuilt from the database when the
+ * file is missing or mostly tombstones), updated incrementally on ingest and delete,
+ * and written back to disk shortly after each change.
+ */
+@Component
+@ConditionalOnProperty(name = "rag.retriever", havingValue = "hnsw")
+public class HnswIndexService implements VectorRetriever, CourseIndexListener {
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final CourseChunkRepository chunkRepository;
+    private final SimilarityKernel similarityKernel;
+    private final Path indexPath;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+
+    private volatile HnswIndex index;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "hnsw-index-saver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public HnswIndexService(CourseChunkRepository chunkRepository,
+                            SimilarityKernel similarityKernel,
+                            @Value("${rag.hnsw.path:data/rag-hnsw.idx}") String indexPath,
+                            @Value("${rag.hnsw.m:16}") int m,
+                            @Value("${rag.hnsw.ef-construction:200}") int efConstruction,
+                            @Value("${rag.hnsw.ef-search:100}") int efSearch,
+                            @Value("${rag.hnsw.save-delay-seconds:30}") long saveDelaySeconds) {
+        this.chunkRepository = chunkRepository;
+        this.similarityKernel = similarityKernel;
+        this.indexPath = Paths.get(indexPath);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        saver.scheduleWithFixedDelay(this::saveIfDirty, saveDelaySeconds, saveDelaySeconds, TimeUnit.SECONDS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOrBuild() {
+        HnswIndex loaded = load();
+        // a crash can lose changes made after the last save, so the file must match the database
+        if (loaded != null && loaded.deletedCount() <= loaded.size() / 2
+                && loaded.liveSize() == chunkRepository.countIndexableEmbeddings()) {
+            index = loaded;
+            System.out.println("✅ HNSW index loaded: " + loaded.liveSize() + " chunks");
+            return;
+        }
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the graph from every persisted chunk, dropping tombstones.
+     */
+    public synchronized void rebuild() {
+        HnswIndex rebuilt = null;
+        Pageable page = PageRequest.of(0, REBUILD_PAGE_SIZE);
+        Slice<Object[]> slice;
+        do {
+            slice = chunkRepository.findAllEmbeddings(page);
+            for (Object[] row : slice.getContent()) {
+                float[] vector = (float[]) row[2];
+                if (vector == null || vector.length == 0) continue;
+                if (rebuilt == null) rebuilt = newIndex(vector.length);
+                if (vector.length != rebuilt.getDimension()) continue;
+                rebuilt.insert((Long) row[0], (Long) row[1], vector);
+            }
+            page = slice.nextPageable();
+        } while (slice.hasNext());
+
+        index = rebuilt;
+        dirty.set(true);
+        saveIfDirty();
+        System.out.println("✅ HNSW index built: " + (rebuilt == null ? 0 : rebuilt.liveSize()) + " chunks");
+    }
+
+    @Override
+    public int search(Long courseId, float[] query, int k, long[] out) {
+        HnswIndex current = index;
+        if (current == null || query.length != current.getDimension()) return 0;
+        return current.search(query, k, courseId == null ? HnswIndex.ALL_COURSES : courseId, out);
+    }
+
+    @Override
+    public boolean supportsCrossCourseSearch() {
+        return true;
+    }
+
+    @Override
+    public String name() {
+        return "hnsw";
+    }
+
+    @Override
+    public synchronized void chunksAdded(Long courseId, List<CourseChunk> chunks) {
+        for (CourseChunk chunk : chunks) {
+            float[] vector = chunk.getEmbedding();
+            if (vector == null || vector.length == 0) continue;
+            if (index == null) index = newIndex(vector.length);
+            if (vector.length != index.getDimension()) continue;
+            index.insert(chunk.getId(), courseId, vector);
+        }
+        dirty.set(true);
+    }
+
+    @Override
+    public synchronized void chunksRemoved(Long courseId, Collection<Long> chunkIds) {
+        if (index == null) return;
+        boolean removed = false;
+        for (Long chunkId : chunkIds) {
+            removed |= index.deleteChunk(chunkId);
+        }
+        if (removed) dirty.set(true);
+    }
+
+    @Override
+    public synchronized void courseRemoved(Long courseId) {
+        if (index != null && index.deleteCourse(courseId) > 0) {
+            dirty.set(true);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        saver.shutdownNow();
+        saveIfDirty();
+    }
+
+    private HnswIndex newIndex(int dimension) {
+        return new HnswIndex(dimension, m, efConstruction, efSearch, similarityKernel);
+    }
+
+    private HnswIndex load() {
+        if (!Files.exists(indexPath)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            return HnswIndex.readFrom(in, efSearch, similarityKernel);
+        } catch (IOException e) {
+            System.err.println("Error loading HNSW index, rebuilding: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveIfDirty() {
+        HnswIndex current = index;
+        if (current == null || !dirty.getAndSet(false)) return;
+        Path tmp = null;
+        try {
+            Path parent = indexPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // write next to the target, then swap, so a crash never leaves a torn file
+            tmp = Files.createTempFile(parent, "rag-hnsw", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                current.writeTo(out);
+            }
+            Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            System.err.println("Error saving HNSW index: " + e.getMessage());
+            // a full disk would otherwise collect a partial index file on every retry
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Error deleting " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.Course;
+import com.ensamai.pedagogy.model.CourseChunk;
+import com.ensamai.pedagogy.model.IngestionJob;
+import com.ensamai.pedagogy.model.IngestionStatus;
+import com.ensamai.pedagogy.repository.CourseRepository;
+import com.ensamai.pedagogy.repository.IngestionJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs course ingestion in the background, so uploads return immediately.
+ *
+ * A job runs a three-stage pipeline connected by bounded queues:
+ *   chunk (stream the course text and PDF pages, diffed by content hash against the stored chunks)
+ *   -> embed (batched embedding calls) -> persist (one transaction per batch),
+ * and finally deletes the orphaned chunks. Only changed text costs an embedding call, the PDF text
+ * is never held in memory as a whole, and after a restart an unfinished job finds the chunks
+ * it already persisted unchanged.
+ */
+@Service
+public class IngestionPipelineService {
+
+    private static final long POLL_MILLIS = 200;
+
+    private final IngestionJobRepository jobRepository;
+    private final CourseRepository courseRepository;
+    private final RagService ragService;
+    private final EmbeddingService embeddingService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkQueueCapacity;
+    private final long stopTimeoutMillis;
+
+    private final ExecutorService jobExecutor;
+    private final ExecutorService stageExecutor;
+    private final Map<Long, ReentrantLock> courseLocks = new ConcurrentHashMap<>();
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    // failure flag of each course's running job, set from outside to stop it
+    private final Map<Long, AtomicReference<Throwable>> runningJobs = new ConcurrentHashMap<>();
+    // courses whose deletion is in progress, until its transaction completes
+    private final Set<Long> deletedCourses = ConcurrentHashMap.newKeySet();
+
+    public IngestionPipelineService(IngestionJobRepository jobRepository,
+                                    CourseRepository courseRepository,
+                                    RagService ragService,
+                                    EmbeddingService embeddingService,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${rag.ingestion.max-concurrent-jobs:2}") int maxConcurrentJobs,
+                                    @Value("${rag.ingestion.chunk-queue-capacity:256}") int chunkQueueCapacity,
+                                    @Value("${rag.ingestion.stop-timeout-ms:10000}") long stopTimeoutMillis) {
+        this.jobRepository = jobRepository;
+        this.courseRepository = courseRepository;
+        this.ragService = ragService;
+        this.embeddingService = embeddingService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkQueueCapacity = chunkQueueCapacity;
+        this.stopTimeoutMillis = stopTimeoutMillis;
+        this.jobExecutor = Executors.newFixedThreadPool(maxConcurrentJobs, namedThreads("ingestion-job"));
+        this.stageExecutor = Executors.newCachedThreadPool(namedThreads("ingestion-stage"));
+    }
+
+    /**
+     * Queues ingestion of the course and returns the new job straight away.
+     */
+    public IngestionJob submit(Course course) {
+        IngestionJob job = jobRepository.save(new IngestionJob(course.getId()));
+        jobExecutor.submit(() -> run(job.getId()));
+        return job;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        List<IngestionJob> unfinished = jobRepository.findByStatusInOrderByIdAsc(
+                List.of(IngestionStatus.QUEUED, IngestionStatus.RUNNING));
+        for (IngestionJob job : unfinished) {
+            System.out.println("🔁 Resuming ingestion job " + job.getId() + " for course " + job.getCourseId()
+                    + " (" + job.getPersistedChunks() + " chunks already stored)");
+            jobExecutor.submit(() -> run(job.getId()));
+        }
+    }
+
+    public Optional<IngestionJob> latestJob(Long courseId) {
+        return jobRepository.findFirstByCourseIdOrderByIdDesc(courseId);
+    }
+
+    /**
+     * Streams progress events of the course's ingestion until its current job finishes.
+     */
+    public SseEmitter subscribe(Long courseId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        List<SseEmitter> emitters = subscribers.computeIfAbsent(courseId, id -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        Optional<IngestionJob> latest = latestJob(courseId);
+        latest.ifPresent(job -> send(emitter, job));
+        if (latest.isEmpty() || latest.get().isFinished()) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * Stops the course's running job, waits until its stages have exited and drops its queued
+     * jobs, so nothing persists chunks of a course being deleted. Call inside the deleting
+     * transaction, first: a rollback lets the course be ingested again.
+     * Waits at most rag.ingestion.stop-timeout-ms (the request thread is blocked meanwhile) and
+     * returns false when the job has not stopped by then; the course must not be deleted.
+     */
+    public boolean stopForDeletion(Long courseId) {
+        deletedCourses.add(courseId);
+        AtomicReference<Throwable> failure = runningJobs.get(courseId);
+        if (failure != null) failure.compareAndSet(null, new CancellationException("Course deleted"));
+
+        // a running job holds the course lock until it has finished
+        ReentrantLock lock = courseLocks.computeIfAbsent(courseId, id -> new ReentrantLock());
+        boolean stopped;
+        try {
+            stopped = lock.tryLock(stopTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = false;
+        }
+        if (!stopped) {
+            deletedCourses.remove(courseId);
+            return false;
+        }
+        try {
+            latestJob(courseId)
+                    .filter(job -> !job.isFinished())
+                    .ifPresent(job -> finish(job, IngestionStatus.FAILED, "Course deleted"));
+        } finally {
+            lock.unlock();
+        }
+
+        // once committed, jobs find the course gone; after a rollback it can be ingested again
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    deletedCourses.remove(courseId);
+                }
+            });
+        } else {
+            deletedCourses.remove(courseId);
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // unfinished jobs stay RUNNING in the database and are resumed on next start
+        jobExecutor.shutdownNow();
+        stageExecutor.shutdownNow();
+    }
+
+    // --- job execution ---
+
+    private void run(Long jobId) {
+        IngestionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.isFinished()) return;
+
+        // one job per course at a time; an older job is dropped if a newer one exists
+        ReentrantLock lock = courseLocks.computeIfAbsent(job.getCourseId(), id -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (deletedCourses.contains(job.getCourseId())) {
+                finish(job, IngestionStatus.FAILED, "Course deleted");
+                return;
+            }
+            try {
+                execute(job);
+            } catch (Exception e) {
+                System.err.println("Ingestion job " + job.getId() + " failed: " + e.getMessage());
+                finish(job, IngestionStatus.FAILED, e.getMessage());
+            } finally {
+                runningJobs.remove(job.getCourseId());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void execute(IngestionJob job) throws Exception {
+        Long latestId = latestJob(job.getCourseId()).map(IngestionJob::getId).orElse(job.getId());
+        if (!latestId.equals(job.getId())) {
+            finish(job, IngestionStatus.FAILED, "Superseded by job " + latestId);
+            return;
+        }
+        Course course = courseRepository.findById(job.getCourseId()).orElse(null);
+        if (course == null) {
+            finish(job, IngestionStatus.FAILED, "Course no longer exists");
+            return;
+        }
+        IngestionPlan plan = ragService.planIngestion(course.getId());
+        job.setStatus(IngestionStatus.RUNNING);
+        job.setTotalChunks(0);
+        job.setReusedChunks(0);
+        job.setEmbeddedChunks(0);
+        job.setPersistedChunks(0);
+        job.setUpdatedAt(LocalDateTime.now());
+        jobRepository.save(job);
+        publish(job);
+
+        int batchSize = embeddingService.getEmbeddingBatchSize();
+        BlockingQueue<Object> chunkQueue = new ArrayBlockingQueue<>(chunkQueueCapacity);
+        BlockingQueue<Object> embeddedQueue = new ArrayBlockingQueue<>(embeddingService.getMaxInFlightBatches());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger embedded = new AtomicInteger();
+        // registered before checking, so stopForDeletion either sees this job or is seen here
+        runningJobs.put(course.getId(), failure);
+        if (deletedCourses.contains(course.getId())) failure.compareAndSet(null, new CancellationException("Course deleted"));
+
+        Future<?> chunker = stageExecutor.submit(() ->
+                chunkStage(course, plan, chunkQueue, failure));
+        Future<?> embedder = stageExecutor.submit(() ->
+                embedStage(batchSize, chunkQueue, embeddedQueue, embedded, failure));
+        try {
+            persistStage(job, course, plan, embeddedQueue, embedded, failure);
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            throw e;
+        } finally {
+            if (failure.get() != null) {
+                chunker.cancel(true);
+                embedder.cancel(true);
+            }
+        }
+        // stopped after the last batch was persisted, the orphans are left to the deletion
+        checkFailure(failure);
+
+        // the chunk stage has read the whole course by now, so the plan is complete
+        job.setTotalChunks(plan.getTotalChunks());
+        job.setReusedChunks(plan.getReusedChunks());
+        job.setPersistedChunks(plan.getReusedChunks() + embedded.get());
+        removeOrphans(job, plan.getOrphanChunkIds());
+        job.setEmbeddedChunks(job.getPersistedChunks());
+        finish(job, IngestionStatus.COMPLETED, null);
+    }
+
+    /**
+     * Stage 1: streams the chunks of the course and feeds those that need an embedding to the embed stage.
+     */
+    private void chunkStage(Course course, IngestionPlan plan, BlockingQueue<Object> out,
+                            AtomicReference<Throwable> failure) {
+        try {
+            ragService.forEachChunk(course, (text, page) -> {
+                if (plan.offer(RagService.chunkHash(text, page))) put(out, new PendingChunk(text, page), failure);
+            });
+            put(out, EndOfStream.INSTANCE, failure);
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+    }
+
+    /**
+     * Stage 2: groups chunks into batches and embeds them, several batches per call
+     * so up to the provider's max-in-flight batch requests run at once.
+     */
+    private void embedStage(int batchSize, BlockingQueue<Object> in, BlockingQueue<Object> out,
+                            AtomicInteger embedded, AtomicReference<Throwable> failure) {
+        try {
+            int window = batchSize * embeddingService.getMaxInFlightBatches();
+            List<PendingChunk> pending = new ArrayList<>(window);
+            boolean done = false;
+            while (!done) {
+                Object item = take(in, failure);
+                if (item == EndOfStream.INSTANCE) {
+                    done = true;
+                } else {
+                    pending.add((PendingChunk) item);
+                    List<Object> drained = new ArrayList<>();
+                    in.drainTo(drained, window - pending.size());
+                    for (Object next : drained) {
+                        if (next == EndOfStream.INSTANCE) done = true;
+                        else pending.add((PendingChunk) next);
+                    }
+                }
+                if (pending.size() >= window || (done && !pending.isEmpty())) {
+                    List<String> texts = new ArrayList<>(pending.size());
+                    List<Integer> pages = new ArrayList<>(pending.size());
+                    for (PendingChunk chunk : pending) {
+                        texts.add(chunk.text);
+                        pages.add(chunk.pageNumber);
+                    }
+                    List<float[]> vectors = embeddingService.getEmbeddings(texts);
+                    // a failed call yields empty vectors; fail the job rather than store them
+                    for (float[] vector : vectors) {
+                        if (vector.length == 0) throw new IllegalStateException("Embedding request failed");
+                    }
+                    for (int from = 0; from < pending.size(); from += batchSize) {
+                        int to = Math.min(from + batchSize, pending.size());
+                        put(out, new EmbeddedBatch(new ArrayList<>(texts.subList(from, to)),
+                                new ArrayList<>(pages.subList(from, to)),
+                                new ArrayList<>(vectors.subList(from, to))), failure);
+                        embedded.addAndGet(to - from);
+                    }
+                    pending.clear();
+                }
+            }
+            put(out, EndOfStream.INSTANCE, failure);
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+    }
+
+    /**
+     * Stage 3: saves each batch and the job progress in one transaction.
+     */
+    private void persistStage(IngestionJob job, Course course, IngestionPlan plan, BlockingQueue<Object> in,
+                              AtomicInteger embedded, AtomicReference<Throwable> failure) throws Exception {
+        int persisted = 0;
+        while (true) {
+            Object item = take(in, failure);
+            if (item == EndOfStream.INSTANCE) break;
+            checkFailure(failure);
+
+            EmbeddedBatch batch = (EmbeddedBatch) item;
+            persisted += batch.texts.size();
+            int persistedSoFar = persisted;
+            List<CourseChunk> saved = transactionTemplate.execute(status -> {
+                List<CourseChunk> chunks = ragService.saveChunks(course, batch.texts, batch.pages, batch.vectors);
+                // totals keep growing while the chunk stage is still reading the PDF
+                int reused = plan.getReusedChunks();
+                job.setTotalChunks(plan.getTotalChunks());
+                job.setReusedChunks(reused);
+                job.setPersistedChunks(reused + persistedSoFar);
+                job.setEmbeddedChunks(reused + Math.max(embedded.get(), persistedSoFar));
+                job.setUpdatedAt(LocalDateTime.now());
+                jobRepository.save(job);
+                return chunks;
+            });
+            ragService.publishChunksAdded(course.getId(), saved);
+            publish(job);
+        }
+    }
+
+    /**
+     * Drops stored chunks whose text left the course, once the new chunks are in place.
+     */
+    private void removeOrphans(IngestionJob job, List<Long> orphanIds) {
+        if (orphanIds.isEmpty()) return;
+        transactionTemplate.executeWithoutResult(status -> {
+            ragService.deleteChunks(orphanIds);
+            job.setRemovedChunks(orphanIds.size());
+            job.setUpdatedAt(LocalDateTime.now());
+            jobRepository.save(job);
+        });
+        ragService.publishChunksRemoved(job.getCourseId(), orphanIds);
+    }
+
+    private void finish(IngestionJob job, IngestionStatus status, String errorMessage) {
+        job.setStatus(status);
+        job.setErrorMessage(errorMessage);
+        job.setUpdatedAt(LocalDateTime.now());
+        jobRepository.save(job);
+        publish(job);
+        List<SseEmitter> emitters = subscribers.remove(job.getCourseId());
+        if (emitters != null) emitters.forEach(SseEmitter::complete);
+    }
+
+    // --- queue helpers: block in short slices so a failed stage unblocks the others ---
+
+    private static void put(BlockingQueue<Object> queue, Object item, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkFailure(failure);
+        }
+    }
+
+    private static Object take(BlockingQueue<Object> queue, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        Object item;
+        while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            checkFailure(failure);
+        }
+        return item;
+    }
+
+    private static void checkFailure(AtomicReference<Throwable> failure) {
+        Throwable t = failure.get();
+        if (t != null) throw new IllegalStateException("Pipeline stage failed: " + t.getMessage(), t);
+    }
+
+    // --- progress events ---
+
+    private void publish(IngestionJob job) {
+        List<SseEmitter> emitters = subscribers.get(job.getCourseId());
+        if (emitters == null) return;
+        for (SseEmitter emitter : emitters) {
+            send(emitter, job);
+        }
+    }
+
+    private void send(SseEmitter emitter, IngestionJob job) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(job));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private enum EndOfStream { INSTANCE }
+
+    private static final class PendingChunk {
+        final String text;
+        final Integer pageNumber;
+
+        PendingChunk(String text, Integer pageNumber) {
+            this.text = text;
+            this.pageNumber = pageNumber;
+        }
+    }
+
+    private static final class EmbeddedBatch {
+        final List<String> texts;
+        final List<Integer> pages;
+        final List<float[]> vectors;
+
+        EmbeddedBatch(List<String> texts, List<Integer> pages, List<float[]> vectors) {
+            this.texts = texts;
+            this.pages = pages;
+            this.vectors = vectors;
+        }
+    }
+}
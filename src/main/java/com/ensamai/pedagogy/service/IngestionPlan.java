@@ -0,0 +1,69 @@
+package com.ensamai.pedagogy.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Diff between the chunks of a course and the chunks already stored, built while the
+ * course is read: each chunk hash is offered once, in order, and the plan answers whether
+ * it still needs an embedding. Once every chunk has been offered, stored chunks that were
+ * never offered (or duplicated) are the orphans. Only hashes are kept, never chunk text.
+ * A stored chunk without a usable embedding (a failed embedding call stored an empty one)
+ * is never reused: its text is embedded again and the old row becomes an orphan.
+ *
+ * Offered from the chunk stage and read from the persist stage, hence synchronized.
+ */
+public class IngestionPlan {
+
+    // stored hash -> ids of the stored chunks with that hash, in id order
+    private final Map<String, List<Long>> stored = new LinkedHashMap<>();
+    // chunks that cannot be reused: no hash, or no embedding
+    private final List<Long> staleIds = new ArrayList<>();
+    private final Set<String> offered = new HashSet<>();
+    private int reusedChunks;
+
+    /**
+     * @param storedRows [chunkId, contentHash, embedding byte length] rows of the course,
+     *                   see findHashesByCourseId
+     */
+    public IngestionPlan(List<Object[]> storedRows) {
+        for (Object[] row : storedRows) {
+            Long id = ((Number) row[0]).longValue();
+            String hash = (String) row[1];
+            boolean embedded = row[2] != null && ((Number) row[2]).longValue() > 0;
+            if (hash == null || !embedded) staleIds.add(id);
+            else stored.computeIfAbsent(hash, h -> new ArrayList<>()).add(id);
+        }
+    }
+
+    /**
+     * Records a chunk of the course; true when it has to be embedded and stored,
+     * false when an identical chunk is already stored or was offered before.
+     */
+    public synchronized boolean offer(String hash) {
+        if (!offered.add(hash)) return false;
+        if (stored.containsKey(hash)) {
+            reusedChunks++;
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized int getReusedChunks() { return reusedChunks; }
+
+    public synchronized int getTotalChunks() { return offered.size(); }
+
+    /**
+     * Stored chunks that no longer belong to the course, valid once every chunk has been offered.
+     * The first stored copy of an offered text is kept, any other copy is an orphan.
+     */
+    public synchronized List<Long> getOrphanChunkIds() {
+        List<Long> orphans = new ArrayList<>(staleIds);
+        stored.forEach((hash, ids) -> orphans.addAll(offered.contains(hash) ? ids.subList(1, ids.size()) : ids));
+        return orphans;
+    }
+}
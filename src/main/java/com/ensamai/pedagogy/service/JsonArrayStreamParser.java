@@ -0,0 +1,76 @@
+package com.ensamai.pedagogy.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Incremental parser for a JSON array of objects arriving in pieces, as a streamed model
+ * answer does. Each element is handed to the consumer as raw JSON as soon as its closing
+ * brace arrives, without waiting for the rest of the array.
+ *
+ * Text before the opening bracket (e.g. a ```json fence) and after the closing one is ignored.
+ * Strings are tracked, so braces and brackets inside them do not count. Not thread-safe.
+ */
+public class JsonArrayStreamParser {
+
+    private final Consumer<String> onElement;
+    private final StringBuilder element = new StringBuilder();
+
+    private boolean inArray;
+    private boolean finished;
+    private boolean inString;
+    private boolean escaped;
+    // nesting depth inside the current element, 0 between elements
+    private int depth;
+    private int elements;
+
+    public JsonArrayStreamParser(Consumer<String> onElement) {
+        this.onElement = onElement;
+    }
+
+    public void feed(CharSequence text) {
+        for (int i = 0; i < text.length() && !finished; i++) {
+            char c = text.charAt(i);
+            if (!inArray) {
+                if (c == '[') inArray = true;
+                continue;
+            }
+            if (depth == 0) {
+                // between elements only commas and whitespace are expected
+                if (c == '{') {
+                    depth = 1;
+                    element.append(c);
+                } else if (c == ']') {
+                    finished = true;
+                }
+                continue;
+            }
+
+            element.append(c);
+            if (inString) {
+                if (escaped) escaped = false;
+                else if (c == '\\') escaped = true;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                elements++;
+                String json = element.toString();
+                element.setLength(0);
+                onElement.accept(json);
+            }
+        }
+    }
+
+    /**
+     * True once the closing bracket of the array has been seen.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int getElementCount() {
+        return elements;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.CourseChunk;
+import com.ensamai.pedagogy.rag.Bm25Index;
+import com.ensamai.pedagogy.repository.CourseChunkRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * BM25 keyword index over the text of every chunk, used by rag.mode=hybrid and rag.mode=lexical.
+ * Built from the database at startup and kept up to date from the ingestion events;
+ * it lives only in memory, since indexing plain text is quick.
+ */
+@Component
+@ConditionalOnExpression("'${rag.mode:vector}' != 'vector'")
+public class LexicalIndexService implements CourseIndexListener {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final CourseChunkRepository chunkRepository;
+    private final Bm25Index index = new Bm25Index();
+
+    public LexicalIndexService(CourseChunkRepository chunkRepository) {
+        this.chunkRepository = chunkRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        Slice<Object[]> slice = chunkRepository.findAllContents(PageRequest.of(0, PAGE_SIZE));
+        while (true) {
+            for (Object[] row : slice.getContent()) {
+                index.add((Long) row[0], (Long) row[1], (String) row[2]);
+            }
+            if (!slice.hasNext()) break;
+            slice = chunkRepository.findAllContents(slice.nextPageable());
+        }
+        System.out.println("✅ Lexical index built: " + index.liveSize() + " chunks in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Ids of the best keyword matches in the course, or in every course when courseId is null.
+     */
+    public int search(Long courseId, String query, int k, long[] out) {
+        return index.search(query, k, courseId == null ? Bm25Index.ALL_COURSES : courseId, out);
+    }
+
+    @Override
+    public void chunksAdded(Long courseId, List<CourseChunk> chunks) {
+        for (CourseChunk chunk : chunks) {
+            index.add(chunk.getId(), courseId, chunk.getContent());
+        }
+    }
+
+    @Override
+    public void chunksRemoved(Long courseId, Collection<Long> chunkIds) {
+        chunkIds.forEach(index::deleteChunk);
+        compactIfNeeded();
+    }
+
+    @Override
+    public void courseRemoved(Long courseId) {
+        index.deleteCourse(courseId);
+        compactIfNeeded();
+    }
+
+    private void compactIfNeeded() {
+        // tombstones skew document frequencies, so they are not left to pile up
+        if (index.deletedCount() > index.liveSize() / 4) index.compact();
+    }
+}
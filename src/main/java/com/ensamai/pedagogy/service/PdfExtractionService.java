@@ -0,0 +1,45 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.rag.PdfPageReader;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the text of uploaded course PDFs page by page, on a pool shared by all ingestion jobs.
+ */
+@Service
+public class PdfExtractionService {
+
+    private final ExecutorService executor;
+    private final PdfPageReader reader;
+
+    public PdfExtractionService(@Value("${rag.pdf.extraction-threads:0}") int threads,
+                                @Value("${rag.pdf.pages-in-flight:16}") int pagesInFlight) {
+        // 0 means one thread per core
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "pdf-extraction-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.reader = new PdfPageReader(executor, parallelism, pagesInFlight);
+    }
+
+    /**
+     * Calls the consumer with the text of each page, in page order. Returns the page count.
+     */
+    public int forEachPage(byte[] pdf, PdfPageReader.PageConsumer consumer) throws Exception {
+        return reader.read(pdf, consumer);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,340 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.CourseChunk;
+import com.ensamai.pedagogy.rag.PqIndex;
+import com.ensamai.pedagogy.rag.ProductQuantizer;
+import com.ensamai.pedagogy.rag.SimilarityKernel;
+import com.ensamai.pedagogy.rag.TopK;
+import com.ensamai.pedagogy.rag.VectorRetriever;
+import com.ensamai.pedagogy.repository.CourseChunkRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Product-quantized retrieval over the chunks of every course, enabled with rag.retriever=pq,
+ * for catalogs too large to keep float or int8 vectors in heap.
+ * Codebooks are trained per embedding model and stored with the codes in
+ * data/rag-pq-{model}.idx. The index is trained in the background from the stored
+ * CourseChunk rows (at first start, or on demand via POST /admin/rag/pq/retrain),
+ * kept up to date on ingest and delete, and its approximate candidates are reranked
+ * with the exact float vectors.
+ */
+@Component
+@ConditionalOnProperty(name = "rag.retriever", havingValue = "pq")
+public class PqIndexService implements VectorRetriever, CourseIndexListener {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final CourseChunkRepository chunkRepository;
+    private final SimilarityKernel similarityKernel;
+    private final Path indexPath;
+    private final int subspaces;
+    private final int trainingSample;
+    private final int iterations;
+    private final int rerankFactor;
+
+    private volatile PqIndex index;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final AtomicBoolean building = new AtomicBoolean(false);
+    // changes seen while a rebuild runs, replayed on the rebuilt index
+    private List<Consumer<PqIndex>> pendingChanges;
+
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pq-index-builder");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pq-index-saver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PqIndexService(CourseChunkRepository chunkRepository,
+                          SimilarityKernel similarityKernel,
+                          @Value("${rag.pq.dir:data}") String directory,
+                          EmbeddingService embeddingService,
+                          @Value("${rag.pq.subspaces:96}") int subspaces,
+                          @Value("${rag.pq.training-sample:20000}") int trainingSample,
+                          @Value("${rag.pq.iterations:10}") int iterations,
+                          @Value("${rag.pq.rerank-factor:8}") int rerankFactor,
+                          @Value("${rag.pq.save-delay-seconds:30}") long saveDelaySeconds) {
+        this.chunkRepository = chunkRepository;
+        this.similarityKernel = similarityKernel;
+        this.indexPath = Paths.get(directory, "rag-pq-" + embeddingService.getModelName().replaceAll("[^A-Za-z0-9._-]", "_") + ".idx");
+        this.subspaces = subspaces;
+        this.trainingSample = trainingSample;
+        this.iterations = iterations;
+        if (rerankFactor < 1) {
+            throw new IllegalStateException("rag.pq.rerank-factor must be at least 1: " + rerankFactor);
+        }
+        this.rerankFactor = rerankFactor;
+        saver.scheduleWithFixedDelay(this::saveIfDirty, saveDelaySeconds, saveDelaySeconds, TimeUnit.SECONDS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOrBuild() {
+        PqIndex loaded = load();
+        if (loaded == null) {
+            System.out.println("⏳ No PQ index for this model, training one in the background");
+            retrainAsync();
+            return;
+        }
+        // a crash can lose changes made after the last save, so the codes must match the database
+        if (loaded.deletedCount() > loaded.size() / 2
+                || loaded.liveSize() != chunkRepository.countIndexableEmbeddings()) {
+            System.out.println("⏳ PQ index out of date, re-encoding with the stored codebooks");
+            building.set(true);
+            builder.submit(() -> {
+                try {
+                    rebuild(new PqIndex(loaded.getQuantizer()));
+                } catch (RuntimeException e) {
+                    System.err.println("Error re-encoding PQ index: " + e.getMessage());
+                } finally {
+                    building.set(false);
+                }
+            });
+            return;
+        }
+        index = loaded;
+        System.out.println("✅ PQ index loaded: " + loaded.liveSize() + " chunks");
+    }
+
+    /**
+     * Trains new codebooks on a sample of the stored chunks and re-encodes every chunk,
+     * in the background. Retrieval keeps using the current index until the new one is ready.
+     * Returns false when a build is already running.
+     */
+    public boolean retrainAsync() {
+        if (!building.compareAndSet(false, true)) return false;
+        builder.submit(() -> {
+            try {
+                ProductQuantizer quantizer = train();
+                if (quantizer != null) rebuild(new PqIndex(quantizer));
+            } catch (RuntimeException e) {
+                System.err.println("Error training PQ index: " + e.getMessage());
+            } finally {
+                building.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isBuilding() {
+        return building.get();
+    }
+
+    @Override
+    public int search(Long courseId, float[] query, int k, long[] out) {
+        PqIndex current = index;
+        if (current == null || query.length != current.getDimension()) return 0;
+
+        // Approximate candidates from the codes, then exact rerank on their float vectors
+        long[] candidates = new long[k * rerankFactor];
+        int count = current.search(query, candidates.length,
+                courseId == null ? PqIndex.ALL_COURSES : courseId, candidates);
+        List<Long> candidateIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            candidateIds.add(candidates[i]);
+        }
+
+        List<Object[]> exact = chunkRepository.findEmbeddingsByIdIn(candidateIds);
+        TopK topK = new TopK(k);
+        for (int i = 0; i < exact.size(); i++) {
+            float[] vector = (float[]) exact.get(i)[1];
+            if (vector == null || vector.length != query.length) continue;
+            topK.offer(i, similarityKernel.dot(vector, 0, query));
+        }
+        int[] winners = new int[k];
+        int found = topK.drainDescending(winners);
+        for (int i = 0; i < found; i++) {
+            out[i] = (Long) exact.get(winners[i])[0];
+        }
+        return found;
+    }
+
+    @Override
+    public boolean supportsCrossCourseSearch() {
+        return true;
+    }
+
+    @Override
+    public String name() {
+        return "pq";
+    }
+
+    @Override
+    public void chunksAdded(Long courseId, List<CourseChunk> chunks) {
+        apply(target -> {
+            for (CourseChunk chunk : chunks) {
+                float[] vector = chunk.getEmbedding();
+                if (vector == null || vector.length != target.getDimension()) continue;
+                target.add(chunk.getId(), courseId, vector);
+            }
+        });
+    }
+
+    @Override
+    public void chunksRemoved(Long courseId, Collection<Long> chunkIds) {
+        apply(target -> chunkIds.forEach(target::deleteChunk));
+    }
+
+    @Override
+    public void courseRemoved(Long courseId) {
+        apply(target -> target.deleteCourse(courseId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+        saver.shutdownNow();
+        saveIfDirty();
+    }
+
+    private synchronized void apply(Consumer<PqIndex> change) {
+        if (pendingChanges != null) pendingChanges.add(change);
+        if (index == null) {
+            // nothing trained yet: the chunks are already in the database the next build reads
+            retrainAsync();
+            return;
+        }
+        change.accept(index);
+        dirty.set(true);
+    }
+
+    private ProductQuantizer train() {
+        // reservoir sample over every stored vector
+        Random random = new Random(42);
+        float[] sample = null;
+        int dimension = 0;
+        int sampled = 0;
+        long seen = 0;
+        Pageable page = PageRequest.of(0, PAGE_SIZE);
+        Slice<Object[]> slice;
+        do {
+            slice = chunkRepository.findAllEmbeddings(page);
+            for (Object[] row : slice.getContent()) {
+                float[] vector = (float[]) row[2];
+                if (vector == null || vector.length == 0) continue;
+                if (sample == null) {
+                    dimension = vector.length;
+                    sample = new float[trainingSample * dimension];
+                }
+                if (vector.length != dimension) continue;
+                seen++;
+                long slot = sampled < trainingSample ? sampled++ : (long) (random.nextDouble() * seen);
+                if (slot < trainingSample) {
+                    System.arraycopy(vector, 0, sample, (int) slot * dimension, dimension);
+                }
+            }
+            page = slice.nextPageable();
+        } while (slice.hasNext());
+
+        if (sample == null) {
+            System.out.println("PQ training skipped: no embedded chunks yet");
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        ProductQuantizer quantizer = ProductQuantizer.train(sample, sampled, dimension,
+                Math.min(subspaces, dimension), iterations, 42);
+        System.out.println("✅ PQ codebooks trained on " + sampled + " chunks in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return quantizer;
+    }
+
+    private void rebuild(PqIndex rebuilt) {
+        synchronized (this) {
+            pendingChanges = new ArrayList<>();
+        }
+        try {
+            Pageable page = PageRequest.of(0, PAGE_SIZE);
+            Slice<Object[]> slice;
+            do {
+                slice = chunkRepository.findAllEmbeddings(page);
+                for (Object[] row : slice.getContent()) {
+                    float[] vector = (float[]) row[2];
+                    if (vector == null || vector.length != rebuilt.getDimension()) continue;
+                    rebuilt.add((Long) row[0], (Long) row[1], vector);
+                }
+                page = slice.nextPageable();
+            } while (slice.hasNext());
+        } catch (RuntimeException e) {
+            // a partial index would lose chunks; the current one stays, changes were applied to it too
+            synchronized (this) {
+                pendingChanges = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            pendingChanges.forEach(change -> change.accept(rebuilt));
+            pendingChanges = null;
+            index = rebuilt;
+            dirty.set(true);
+        }
+        saveIfDirty();
+        System.out.println("✅ PQ index built: " + rebuilt.liveSize() + " chunks, "
+                + rebuilt.sizeInBytes() / (1024 * 1024) + " MB");
+    }
+
+    private PqIndex load() {
+        if (!Files.exists(indexPath)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            return PqIndex.readFrom(in);
+        } catch (IOException e) {
+            System.err.println("Error loading PQ index, retraining: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveIfDirty() {
+        PqIndex current = index;
+        if (current == null || !dirty.getAndSet(false)) return;
+        Path tmp = null;
+        try {
+            Path parent = indexPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // write next to the target, then swap, so a crash never leaves a torn file
+            tmp = Files.createTempFile(parent, "rag-pq", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                current.writeTo(out);
+            }
+            Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            System.err.println("Error saving PQ index: " + e.getMessage());
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Error deleting " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.dto.QuantizationRecallDTO;
+import com.ensamai.pedagogy.model.Course;
+import com.ensamai.pedagogy.rag.CourseVectorIndex;
+import com.ensamai.pedagogy.rag.QuantizedVectorIndex;
+import com.ensamai.pedagogy.rag.SimilarityKernel;
+import com.ensamai.pedagogy.rag.TopK;
+import com.ensamai.pedagogy.repository.CourseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Measures recall@k of the int8 path against the exact float scan on the stored course data.
+ * Each sampled chunk vector is used as a query (the chunk itself is left out of every result),
+ * and the overlap with the float top-k is averaged, with and without the float rerank.
+ */
+@Service
+public class QuantizationReportService {
+
+    private final CourseRepository courseRepository;
+    private final VectorIndexCache vectorIndexCache;
+    private final SimilarityKernel similarityKernel;
+    private final int defaultRerankFactor;
+
+    public QuantizationReportService(CourseRepository courseRepository,
+                                     VectorIndexCache vectorIndexCache,
+                                     SimilarityKernel similarityKernel,
+                                     @Value("${rag.quantized.rerank-factor:4}") int defaultRerankFactor) {
+        this.courseRepository = courseRepository;
+        this.vectorIndexCache = vectorIndexCache;
+        this.similarityKernel = similarityKernel;
+        this.defaultRerankFactor = defaultRerankFactor;
+    }
+
+    public List<QuantizationRecallDTO> recallReport(int k, int maxQueries, Integer rerankFactor) {
+        int factor = rerankFactor != null ? rerankFactor : defaultRerankFactor;
+        List<QuantizationRecallDTO> report = new ArrayList<>();
+        for (Course course : courseRepository.findAll()) {
+            // built outside the caches, so the report does not evict live indexes
+            CourseVectorIndex exact = vectorIndexCache.load(course.getId());
+            if (exact.size() < 2) continue;
+            QuantizedVectorIndex quantized = QuantizedVectorIndex.quantize(exact);
+            report.add(measure(course, exact, quantized, Math.min(k, exact.size() - 1), maxQueries, factor));
+        }
+        return report;
+    }
+
+    private QuantizationRecallDTO measure(Course course, CourseVectorIndex exact, QuantizedVectorIndex quantized,
+                                          int k, int maxQueries, int factor) {
+        int dimension = exact.getDimension();
+        float[] matrix = exact.getMatrix();
+        int queries = Math.min(maxQueries, exact.size());
+        double firstPassHits = 0;
+        double rerankedHits = 0;
+        int expected = 0;
+
+        for (int q = 0; q < queries; q++) {
+            // evenly spread over the course
+            int queryRow = (int) ((long) q * exact.size() / queries);
+            float[] query = Arrays.copyOfRange(matrix, queryRow * dimension, (queryRow + 1) * dimension);
+
+            TopK truthHeap = new TopK(k + 1);
+            similarityKernel.scoreAll(matrix, exact.size(), query, truthHeap);
+            Set<Integer> truth = drainWithout(truthHeap, queryRow, k);
+
+            TopK firstPassHeap = new TopK(k + 1);
+            quantized.scoreAll(query, firstPassHeap);
+            Set<Integer> firstPass = drainWithout(firstPassHeap, queryRow, k);
+
+            TopK candidateHeap = new TopK(Math.min(exact.size(), k * factor + 1));
+            quantized.scoreAll(query, candidateHeap);
+            int[] candidates = new int[candidateHeap.capacity()];
+            int candidateCount = candidateHeap.drainDescending(candidates);
+            TopK rerankHeap = new TopK(k + 1);
+            for (int i = 0; i < candidateCount; i++) {
+                rerankHeap.offer(candidates[i], similarityKernel.dot(matrix, candidates[i] * dimension, query));
+            }
+            Set<Integer> reranked = drainWithout(rerankHeap, queryRow, k);
+
+            expected += truth.size();
+            for (int row : truth) {
+                if (firstPass.contains(row)) firstPassHits++;
+                if (reranked.contains(row)) rerankedHits++;
+            }
+        }
+
+        return new QuantizationRecallDTO(course.getId(), course.getTitle(), exact.size(), queries, k, factor,
+                expected == 0 ? 1.0 : firstPassHits / expected,
+                expected == 0 ? 1.0 : rerankedHits / expected,
+                exact.sizeInBytes(), quantized.sizeInBytes());
+    }
+
+    private static Set<Integer> drainWithout(TopK heap, int excludedRow, int k) {
+        int[] rows = new int[heap.capacity()];
+        int count = heap.drainDescending(rows);
+        Set<Integer> kept = new HashSet<>();
+        for (int i = 0; i < count && kept.size() < k; i++) {
+            if (rows[i] != excludedRow) kept.add(rows[i]);
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,32 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.rag.QuantizedVectorIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the int8 index of recently used courses in memory, about a quarter of the
+ * size of their float index; the float vectors themselves stay in the database.
+ */
+@Component
+public class QuantizedIndexCache extends CourseIndexCache<QuantizedVectorIndex> {
+
+    private final VectorIndexCache vectorIndexCache;
+
+    public QuantizedIndexCache(VectorIndexCache vectorIndexCache,
+                               @Value("${rag.index.quantized-cache-max-bytes:268435456}") long maxBytes) {
+        super(maxBytes);
+        this.vectorIndexCache = vectorIndexCache;
+    }
+
+    @Override
+    protected QuantizedVectorIndex load(Long courseId) {
+        // the float index is only transient here, it is not put in the float cache
+        return QuantizedVectorIndex.quantize(vectorIndexCache.load(courseId));
+    }
+
+    @Override
+    protected long sizeInBytes(QuantizedVectorIndex index) {
+        return index.sizeInBytes();
+    }
+}
@@ -0,0 +1,78 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.rag.QuantizedVectorIndex;
+import com.ensamai.pedagogy.rag.SimilarityKernel;
+import com.ensamai.pedagogy.rag.TopK;
+import com.ensamai.pedagogy.rag.VectorRetriever;
+import com.ensamai.pedagogy.repository.CourseChunkRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Two-pass scan of one course, enabled with rag.retriever=quantized: the resident int8
+ * index picks {@code k * rag.quantized.rerank-factor} candidates, then only their exact
+ * float vectors are read back and reranked.
+ */
+@Component
+public class QuantizedVectorRetriever implements VectorRetriever {
+
+    private final QuantizedIndexCache indexCache;
+    private final CourseChunkRepository chunkRepository;
+    private final SimilarityKernel similarityKernel;
+    private final int rerankFactor;
+
+    public QuantizedVectorRetriever(QuantizedIndexCache indexCache,
+                                    CourseChunkRepository chunkRepository,
+                                    SimilarityKernel similarityKernel,
+                                    @Value("${rag.quantized.rerank-factor:4}") int rerankFactor) {
+        this.indexCache = indexCache;
+        this.chunkRepository = chunkRepository;
+        this.similarityKernel = similarityKernel;
+        if (rerankFactor < 1) {
+            throw new IllegalStateException("rag.quantized.rerank-factor must be at least 1: " + rerankFactor);
+        }
+        this.rerankFactor = rerankFactor;
+    }
+
+    @Override
+    public int search(Long courseId, float[] query, int k, long[] out) {
+        if (courseId == null) {
+            throw new UnsupportedOperationException("The quantized retriever only searches one course at a time");
+        }
+        QuantizedVectorIndex index = indexCache.get(courseId);
+        if (index.size() == 0 || query.length != index.getDimension()) return 0;
+
+        // First pass on the int8 codes
+        TopK candidates = new TopK(Math.min(index.size(), k * rerankFactor));
+        index.scoreAll(query, candidates);
+        int[] rows = new int[candidates.capacity()];
+        int count = candidates.drainDescending(rows);
+        List<Long> candidateIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            candidateIds.add(index.getChunkId(rows[i]));
+        }
+
+        // Exact rerank on the float vectors of the candidates only
+        List<Object[]> exact = chunkRepository.findEmbeddingsByIdIn(candidateIds);
+        TopK topK = new TopK(k);
+        for (int i = 0; i < exact.size(); i++) {
+            float[] vector = (float[]) exact.get(i)[1];
+            if (vector == null || vector.length != query.length) continue;
+            topK.offer(i, similarityKernel.dot(vector, 0, query));
+        }
+        int[] winners = new int[k];
+        int found = topK.drainDescending(winners);
+        for (int i = 0; i < found; i++) {
+            out[i] = (Long) exact.get(winners[i])[0];
+        }
+        return found;
+    }
+
+    @Override
+    public String name() {
+        return "quantized";
+    }
+}
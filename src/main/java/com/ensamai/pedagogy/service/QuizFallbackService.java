@@ -0,0 +1,45 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.Question;
+import com.ensamai.pedagogy.repository.QuestionRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Questions to show when no AI quiz can be generated, for the quiz page and the quiz stream
+ * alike: the instructor's question bank, else a pooled quiz of any difficulty, else a cached
+ * response to the same prompt.
+ */
+@Service
+public class QuizFallbackService {
+
+    public record FallbackQuiz(List<Question> questions, String notice) {
+    }
+
+    private final QuestionRepository questionRepository;
+    private final QuizPool quizPool;
+    private final AiAgentService aiAgentService;
+
+    public QuizFallbackService(QuestionRepository questionRepository, QuizPool quizPool, AiAgentService aiAgentService) {
+        this.questionRepository = questionRepository;
+        this.quizPool = quizPool;
+        this.aiAgentService = aiAgentService;
+    }
+
+    public FallbackQuiz fallbackQuiz(Long studentId, Long courseId) {
+        List<Question> official = questionRepository.findByCourseId(courseId);
+        if (!official.isEmpty()) {
+            return new FallbackQuiz(official, "AI generation is unavailable right now, here are your instructor's questions instead.");
+        }
+
+        Optional<String> earlier = quizPool.takeAny(courseId);
+        if (earlier.isEmpty()) earlier = aiAgentService.cachedQuiz(studentId, courseId);
+        List<Question> questions = earlier.map(aiAgentService::parseQuiz).orElse(new ArrayList<>());
+        return new FallbackQuiz(questions, questions.isEmpty()
+                ? "AI generation is unavailable right now, please try again in a few minutes."
+                : "AI generation is unavailable right now, this practice quiz was prepared earlier.");
+    }
+}
@@ -0,0 +1,155 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.CourseChunk;
+import com.ensamai.pedagogy.model.PooledQuiz;
+import com.ensamai.pedagogy.model.QuizDifficulty;
+import com.ensamai.pedagogy.repository.PooledQuizRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pre-generated AI practice quizzes per (course, difficulty), filled by QuizPoolRefiller and
+ * drained by the quiz page, so taking a quiz is normally a database read instead of a model call.
+ *
+ * Any change to a course's chunks empties its pool, and a quiz generated before the change
+ * (its epoch is stale) is dropped instead of pooled. Depths are the quiz.pool.depth gauges.
+ */
+@Component
+public class QuizPool implements CourseIndexListener {
+
+    private static final int MAX_CLAIM_ATTEMPTS = 3;
+
+    private final PooledQuizRepository repository;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> depths = new ConcurrentHashMap<>();
+    private final Map<Long, Long> epochs = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public QuizPool(PooledQuizRepository repository, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+        this.hits = meterRegistry.counter("quiz.pool.requests", "result", "hit");
+        this.misses = meterRegistry.counter("quiz.pool.requests", "result", "miss");
+    }
+
+    /**
+     * Takes the oldest pooled quiz of the course at this difficulty, as the model's JSON.
+     */
+    public Optional<String> take(Long courseId, QuizDifficulty difficulty) {
+        // a concurrent request may claim the same quiz first, then the next one is tried
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            Optional<PooledQuiz> oldest = repository.findFirstByCourseIdAndDifficultyOrderByIdAsc(courseId, difficulty);
+            if (oldest.isEmpty()) break;
+            if (repository.claim(oldest.get().getId()) == 1) {
+                depth(courseId, difficulty).decrementAndGet();
+                hits.increment();
+                return Optional.of(oldest.get().getQuestionsJson());
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Takes a pooled quiz of the course at any difficulty, preferring the easiest;
+     * a fallback for when a quiz cannot be generated.
+     */
+    public Optional<String> takeAny(Long courseId) {
+        for (QuizDifficulty difficulty : QuizDifficulty.values()) {
+            Optional<String> quiz = take(courseId, difficulty);
+            if (quiz.isPresent()) return quiz;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Read before generating a quiz and pass it to offer.
+     */
+    public long epoch(Long courseId) {
+        return epochs.getOrDefault(courseId, 0L);
+    }
+
+    /**
+     * Pools a generated quiz, unless the course changed since {@code epoch} was read.
+     */
+    public synchronized boolean offer(Long courseId, QuizDifficulty difficulty, long epoch, String questionsJson) {
+        if (epoch != epoch(courseId)) return false;
+        repository.save(new PooledQuiz(courseId, difficulty, questionsJson));
+        depth(courseId, difficulty).incrementAndGet();
+        return true;
+    }
+
+    public int getDepth(Long courseId, QuizDifficulty difficulty) {
+        return depth(courseId, difficulty).get();
+    }
+
+    /**
+     * Re-reads every depth from the database, correcting for other instances sharing it.
+     */
+    public void refreshDepths() {
+        Set<String> seen = new HashSet<>();
+        for (Object[] row : repository.countByKey()) {
+            Long courseId = (Long) row[0];
+            QuizDifficulty difficulty = (QuizDifficulty) row[1];
+            depth(courseId, difficulty).set(((Number) row[2]).intValue());
+            seen.add(key(courseId, difficulty));
+        }
+        depths.forEach((key, depth) -> {
+            if (!seen.contains(key)) depth.set(0);
+        });
+    }
+
+    public synchronized void invalidate(Long courseId) {
+        epochs.merge(courseId, 1L, Long::sum);
+        int deleted = repository.deleteByCourseId(courseId);
+        for (QuizDifficulty difficulty : QuizDifficulty.values()) {
+            AtomicInteger depth = depths.get(key(courseId, difficulty));
+            if (depth != null) depth.set(0);
+        }
+        if (deleted > 0) {
+            System.out.println("🧹 Quiz pool of course " + courseId + " emptied (" + deleted + " quizzes)");
+        }
+    }
+
+    @Override
+    public void chunksAdded(Long courseId, List<CourseChunk> chunks) {
+        invalidate(courseId);
+    }
+
+    @Override
+    public void chunksRemoved(Long courseId, Collection<Long> chunkIds) {
+        invalidate(courseId);
+    }
+
+    @Override
+    public void courseRemoved(Long courseId) {
+        invalidate(courseId);
+    }
+
+    private AtomicInteger depth(Long courseId, QuizDifficulty difficulty) {
+        return depths.computeIfAbsent(key(courseId, difficulty), key -> {
+            AtomicInteger depth = new AtomicInteger();
+            Gauge.builder("quiz.pool.depth", depth, AtomicInteger::get)
+                    .tag("course", String.valueOf(courseId))
+                    .tag("difficulty", difficulty.name())
+                    .register(meterRegistry);
+            return depth;
+        });
+    }
+
+    private static String key(Long courseId, QuizDifficulty difficulty) {
+        return courseId + ":" + difficulty;
+    }
+}
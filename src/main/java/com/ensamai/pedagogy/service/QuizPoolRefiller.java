@@ -0,0 +1,108 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.Course;
+import com.ensamai.pedagogy.model.QuizDifficulty;
+import com.ensamai.pedagogy.repository.CourseChunkRepository;
+import com.ensamai.pedagogy.repository.CourseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the quiz pool of every ingested course at its target depth per difficulty:
+ * quiz.pool.target-depth, or quiz.pool.depth.{courseId} to keep a course warm before an exam.
+ *
+ * Each run generates at most quiz.pool.max-generations-per-run quizzes, one per key per round,
+ * so the shallowest pools fill first and no single course takes the whole model budget.
+ * Courses with an unfinished ingestion are skipped, their pool would be emptied again.
+ */
+@Component
+@ConditionalOnProperty(name = "quiz.pool.enabled", havingValue = "true", matchIfMissing = true)
+public class QuizPoolRefiller {
+
+    private final QuizPool quizPool;
+    private final AiAgentService aiAgentService;
+    private final CourseRepository courseRepository;
+    private final CourseChunkRepository chunkRepository;
+    private final IngestionPipelineService ingestionPipelineService;
+    private final Environment environment;
+    private final int targetDepth;
+    private final int maxGenerationsPerRun;
+
+    public QuizPoolRefiller(QuizPool quizPool,
+                            AiAgentService aiAgentService,
+                            CourseRepository courseRepository,
+                            CourseChunkRepository chunkRepository,
+                            IngestionPipelineService ingestionPipelineService,
+                            Environment environment,
+                            @Value("${quiz.pool.target-depth:2}") int targetDepth,
+                            @Value("${quiz.pool.max-generations-per-run:10}") int maxGenerationsPerRun) {
+        this.quizPool = quizPool;
+        this.aiAgentService = aiAgentService;
+        this.courseRepository = courseRepository;
+        this.chunkRepository = chunkRepository;
+        this.ingestionPipelineService = ingestionPipelineService;
+        this.environment = environment;
+        this.targetDepth = targetDepth;
+        this.maxGenerationsPerRun = maxGenerationsPerRun;
+    }
+
+    @Scheduled(initialDelayString = "${quiz.pool.initial-delay-ms:30000}",
+               fixedDelayString = "${quiz.pool.refill-interval-ms:60000}")
+    public void refill() {
+        quizPool.refreshDepths();
+        // background refills never compete with students for a failing model
+        if (!aiAgentService.isGenerationAvailable()) return;
+
+        List<Long> courseIds = new ArrayList<>();
+        for (Long courseId : chunkRepository.findIngestedCourseIds()) {
+            boolean ingesting = ingestionPipelineService.latestJob(courseId)
+                    .map(job -> !job.isFinished())
+                    .orElse(false);
+            if (!ingesting && depthFor(courseId) > 0) courseIds.add(courseId);
+        }
+
+        int generated = 0;
+        for (int round = 0; generated < maxGenerationsPerRun; round++) {
+            boolean missing = false;
+            for (Long courseId : courseIds) {
+                int target = depthFor(courseId);
+                for (QuizDifficulty difficulty : QuizDifficulty.values()) {
+                    // one quiz per key per round, shallowest keys first
+                    if (quizPool.getDepth(courseId, difficulty) > round || round >= target) continue;
+                    if (generated >= maxGenerationsPerRun) return;
+                    missing = true;
+                    generated++;
+                    if (!generate(courseId, difficulty)) return;
+                }
+            }
+            if (!missing) return;
+        }
+    }
+
+    /**
+     * Generates and pools one quiz; false when generation failed, ending this run.
+     */
+    private boolean generate(Long courseId, QuizDifficulty difficulty) {
+        Course course = courseRepository.findById(courseId).orElse(null);
+        if (course == null) return true;
+
+        long epoch = quizPool.epoch(courseId);
+        String questionsJson = aiAgentService.generateQuiz(course, difficulty);
+        if (aiAgentService.parseQuiz(questionsJson).isEmpty()) {
+            System.err.println("Quiz pool refill failed for course " + courseId + " (" + difficulty + "), retrying next run");
+            return false;
+        }
+        quizPool.offer(courseId, difficulty, epoch, questionsJson);
+        return true;
+    }
+
+    private int depthFor(Long courseId) {
+        return environment.getProperty("quiz.pool.depth." + courseId, Integer.class, targetDepth);
+    }
+}
@@ -0,0 +1,157 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.Question;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams AI practice quizzes to the browser over SSE: a "question" event per question as
+ * soon as the model has written it, then "done" (or "error"). Generation runs on its own
+ * pool so no request thread waits on the model; the pool defaults to the Gemini bulkhead
+ * size, so streams beyond it queue here instead of being refused by the bulkhead. At most
+ * quiz.stream.queue-capacity streams wait; past that the fallback quiz is sent right away,
+ * and a stream whose student left (or timed out) is dropped from the queue.
+ *
+ * When generation fails before the first question (bulkhead or circuit refusal, upstream
+ * error) or yields none, the fallback quiz is streamed instead: a "notice" event, its questions, then "done".
+ *
+ * Time to the first question, the wait students actually feel, is the quiz.stream.first.question
+ * timer; quiz.stream.duration times the whole quiz; quiz.stream.rejected counts streams
+ * refused by the full queue.
+ */
+@Service
+public class QuizStreamService {
+
+    private final AiAgentService aiAgentService;
+    private final QuizFallbackService quizFallbackService;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final Timer firstQuestion;
+    private final Timer duration;
+    private final Counter rejected;
+
+    public QuizStreamService(AiAgentService aiAgentService,
+                             QuizFallbackService quizFallbackService,
+                             MeterRegistry meterRegistry,
+                             @Value("${quiz.stream.max-concurrent:${gemini.resilience.max-concurrent:8}}") int maxConcurrent,
+                             @Value("${quiz.stream.queue-capacity:64}") int queueCapacity,
+                             @Value("${quiz.stream.timeout-ms:180000}") long timeoutMillis) {
+        this.aiAgentService = aiAgentService;
+        this.quizFallbackService = quizFallbackService;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+            Thread t = new Thread(r, "quiz-stream-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.firstQuestion = meterRegistry.timer("quiz.stream.first.question");
+        this.duration = meterRegistry.timer("quiz.stream.duration");
+        this.rejected = meterRegistry.counter("quiz.stream.rejected");
+    }
+
+    public SseEmitter stream(Long studentId, Long courseId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Future<?> task;
+        try {
+            task = executor.submit(() -> generate(emitter, studentId, courseId));
+        } catch (RejectedExecutionException e) {
+            // the queue would make this student wait minutes for a slot: the fallback is instant
+            rejected.increment();
+            try {
+                sendFallback(emitter, studentId, courseId);
+                emitter.complete();
+            } catch (Exception sendFailure) {
+                emitter.completeWithError(sendFailure);
+            }
+            return emitter;
+        }
+        // a stream still queued when its student leaves never starts; a running one stops
+        // at its next question, whose send fails
+        emitter.onTimeout(() -> cancel(task));
+        emitter.onError(error -> cancel(task));
+        emitter.onCompletion(() -> cancel(task));
+        return emitter;
+    }
+
+    private void cancel(Future<?> task) {
+        // a cancelled task would hold its queue slot until a worker reached it
+        if (task.cancel(false)) executor.remove((Runnable) task);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void generate(SseEmitter emitter, Long studentId, Long courseId) {
+        long start = System.nanoTime();
+        AtomicInteger sent = new AtomicInteger();
+        try {
+            int count = aiAgentService.streamQuiz(studentId, courseId, question -> {
+                if (sent.getAndIncrement() == 0) {
+                    firstQuestion.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                try {
+                    emitter.send(SseEmitter.event().name("question").data(question));
+                } catch (IOException e) {
+                    // the student left: abort the model stream instead of generating for nobody
+                    throw new UncheckedIOException(e);
+                }
+            });
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (count == 0) {
+                // nothing usable came back: fall back, as the quiz page does
+                sendFallback(emitter, studentId, courseId);
+            } else {
+                emitter.send(SseEmitter.event().name("done").data(Map.of("questions", count)));
+            }
+            emitter.complete();
+        } catch (UncheckedIOException e) {
+            emitter.completeWithError(e.getCause());
+        } catch (IOException e) {
+            // the student left after the last question
+            emitter.completeWithError(e);
+        } catch (Exception e) {
+            System.err.println("Error streaming quiz for course " + courseId + ": " + e.getMessage());
+            try {
+                if (sent.get() == 0) {
+                    sendFallback(emitter, studentId, courseId);
+                } else {
+                    // the student is already answering the questions shown, keep them
+                    emitter.send(SseEmitter.event().name("error").data(Map.of("questions", sent.get())));
+                }
+                emitter.complete();
+            } catch (Exception sendFailure) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private void sendFallback(SseEmitter emitter, Long studentId, Long courseId) throws IOException {
+        QuizFallbackService.FallbackQuiz fallback = quizFallbackService.fallbackQuiz(studentId, courseId);
+        emitter.send(SseEmitter.event().name("notice").data(Map.of("message", fallback.notice())));
+        for (Question q : fallback.questions()) {
+            // bank questions are entities: send the question alone, not its course
+            emitter.send(SseEmitter.event().name("question").data(new Question(q.getQuestionText(),
+                    q.getOptionA(), q.getOptionB(), q.getOptionC(), q.getOptionD(), q.getCorrectAnswer(), null)));
+        }
+        emitter.send(SseEmitter.event().name("done").data(Map.of("questions", fallback.questions().size())));
+    }
+}
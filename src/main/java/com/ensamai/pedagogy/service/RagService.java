@@ -2,72 +2,328 @@ package com.ensamai.pedagogy.service;
 
 import com.ensamai.pedagogy.model.Course;
 import com.ensamai.pedagogy.model.CourseChunk;
+import com.ensamai.pedagogy.rag.ContentHash;
+import com.ensamai.pedagogy.rag.ReciprocalRankFusion;
+import com.ensamai.pedagogy.rag.TextChunker;
+import com.ensamai.pedagogy.rag.VectorMath;
+import com.ensamai.pedagogy.rag.VectorRetriever;
 import com.ensamai.pedagogy.repository.CourseChunkRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class RagService {
 
     @Autowired
-    private GeminiService geminiService;
+    private EmbeddingService embeddingService;
 
     @Autowired
     private CourseChunkRepository chunkRepository;
 
+    @Autowired
+    private RetrievalCache retrievalCache;
+
+    @Autowired
+    private PdfExtractionService pdfExtractionService;
+
+    @Autowired
+    private TextChunker textChunker;
+
+    @Autowired
+    private List<CourseIndexListener> indexListeners;
+
+    @Autowired
+    private List<VectorRetriever> retrievers;
+
+    @Autowired
+    private ObjectProvider<LexicalIndexService> lexicalIndex;
+
+    // exact (per-course scan), quantized (int8 scan + float rerank),
+    // hnsw (approximate, all courses), pq (product-quantized, all courses)
+    // or segments (exact scan of memory-mapped files, all courses)
+    @Value("${rag.retriever:exact}")
+    private String retrieverName;
+
+    // vector (embeddings only), hybrid (vector and BM25 fused by reciprocal rank)
+    // or lexical (BM25 only, queries never call the embedding API)
+    @Value("${rag.mode:vector}")
+    private String mode;
+
+    // Candidates taken from each side before fusing, in hybrid mode
+    @Value("${rag.hybrid.candidates:20}")
+    private int hybridCandidates;
+
+    // Number of chunks joined into the quiz context
+    @Value("${rag.top-k:3}")
+    private int topKSize;
+
+    private static final int RRF_K = 60;
+
+    private VectorRetriever retriever;
 
-    public void ingestCourse(Course course) {
+    @PostConstruct
+    void selectRetriever() {
+        if (!List.of("vector", "hybrid", "lexical").contains(mode)) {
+            throw new IllegalStateException("Unknown rag.mode: " + mode);
+        }
+        retriever = retrievers.stream()
+                .filter(r -> r.name().equals(retrieverName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown rag.retriever: " + retrieverName));
+    }
+
+
+    /**
+     * Receives the chunks of a course, see forEachChunk.
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(String text, Integer pageNumber) throws Exception;
+    }
 
-        String[] rawChunks = course.getContent().split("(?<=\\.)\\s+"); 
-        List<String> chunks = new ArrayList<>();
-        StringBuilder currentChunk = new StringBuilder();
-        
-        for (String sentence : rawChunks) {
-            if (currentChunk.length() + sentence.length() > 500) {
-                chunks.add(currentChunk.toString());
-                currentChunk = new StringBuilder();
+    /**
+     * Starts diffing the course against its stored chunks: offer every chunk hash
+     * (see chunkHash) to the plan, then read the orphans.
+     */
+    public IngestionPlan planIngestion(Long courseId) {
+        return new IngestionPlan(chunkRepository.findHashesByCourseId(courseId));
+    }
+
+    /**
+     * Streams the non-blank chunks of the course: the typed content first (no page number),
+     * then the PDF page by page. Only a few pages of PDF text are in memory at any time.
+     */
+    public void forEachChunk(Course course, ChunkConsumer consumer) throws Exception {
+        String content = course.getContent();
+        if (content != null && !content.isBlank()) {
+            for (String chunk : splitIntoChunks(content)) {
+                consumer.accept(chunk, null);
             }
-            currentChunk.append(sentence).append(" ");
         }
-        if (!currentChunk.isEmpty()) chunks.add(currentChunk.toString());
+        byte[] pdf = course.getPdfFile();
+        if (pdf != null && pdf.length > 0) {
+            pdfExtractionService.forEachPage(pdf, (page, text) -> {
+                if (text.isBlank()) return;
+                for (String chunk : splitIntoChunks(text)) {
+                    consumer.accept(chunk, page);
+                }
+            });
+        }
+    }
 
-        for (String text : chunks) {
-            List<Double> vector = geminiService.getEmbedding(text);
+    /**
+     * Content hash of a chunk. PDF chunks include their page, so text moved to
+     * another page is stored again with its new page number.
+     */
+    public static String chunkHash(String text, Integer pageNumber) {
+        return pageNumber == null ? ContentHash.sha256(text) : ContentHash.sha256(text, pageNumber.toString());
+    }
+
+    /**
+     * Splits course text into overlapping chunks on paragraph and sentence boundaries, see TextChunker.
+     */
+    public List<String> splitIntoChunks(CharSequence content) {
+        return textChunker.split(content);
+    }
+
+    /**
+     * Normalizes and saves one batch of embedded chunks, inside the caller's transaction.
+     */
+    public List<CourseChunk> saveChunks(Course course, List<String> texts, List<Integer> pages,
+                                        List<float[]> vectors) {
+        List<CourseChunk> batch = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            float[] vector = vectors.get(i);
             CourseChunk chunk = new CourseChunk();
-            chunk.setContent(text);
+            chunk.setContent(texts.get(i));
+            chunk.setPageNumber(pages.get(i));
+            chunk.setContentHash(chunkHash(texts.get(i), pages.get(i)));
+            chunk.setEmbeddingNorm(VectorMath.normalize(vector));
             chunk.setEmbedding(vector);
             chunk.setCourse(course);
-            chunkRepository.save(chunk);
+            batch.add(chunk);
         }
+        return chunkRepository.saveAll(batch);
+    }
+
+    /**
+     * Lets the indexes pick up chunks once their transaction has committed.
+     */
+    public void publishChunksAdded(Long courseId, List<CourseChunk> chunks) {
+        indexListeners.forEach(l -> l.chunksAdded(courseId, chunks));
+    }
+
+    /**
+     * Deletes the given chunks, inside the caller's transaction.
+     */
+    public void deleteChunks(Collection<Long> chunkIds) {
+        if (!chunkIds.isEmpty()) chunkRepository.deleteAllByIdInBatch(chunkIds);
+    }
+
+    public void publishChunksRemoved(Long courseId, Collection<Long> chunkIds) {
+        if (chunkIds.isEmpty()) return;
+        indexListeners.forEach(l -> l.chunksRemoved(courseId, chunkIds));
+    }
+
+    /**
+     * Deletes the course's chunks; the indexes drop the course once the transaction
+     * commits, so a rolled back deletion leaves it searchable.
+     */
+    @Transactional
+    public void deleteCourseChunks(Long courseId) {
+        chunkRepository.deleteAll(chunkRepository.findByCourseId(courseId));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                indexListeners.forEach(l -> l.courseRemoved(courseId));
+            }
+        });
     }
 
     public String retrieveContext(Course course, String query) {
-        List<Double> queryVector = geminiService.getEmbedding(query);
-        List<CourseChunk> allChunks = chunkRepository.findByCourseId(course.getId());
-
-
-        return allChunks.stream()
-                .sorted(Comparator.comparingDouble(c -> -cosineSimilarity(c.getEmbedding(), queryVector))) // Descending
-                .limit(3)	
-                .map(CourseChunk::getContent)
-                .collect(Collectors.joining("\n---\n"));
-    }
-
-    private double cosineSimilarity(List<Double> v1, List<Double> v2) {
-        if (v1 == null || v2 == null || v1.size() != v2.size()) return 0.0;
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-        for (int i = 0; i < v1.size(); i++) {
-            dotProduct += v1.get(i) * v2.get(i);
-            normA += Math.pow(v1.get(i), 2);
-            normB += Math.pow(v2.get(i), 2);
+        return retrieve(course.getId(), List.of(query)).get(0);
+    }
+
+    /**
+     * Contexts for several queries of one course, in query order. The uncached queries are
+     * embedded in one batch call and share one scan of the course vectors, so N queries cost
+     * about as much as one.
+     */
+    public List<String> retrieveContexts(Course course, List<String> queries) {
+        return retrieve(course.getId(), queries);
+    }
+
+    /**
+     * Retrieves the best matching chunks across every course.
+     * Needs a retriever that supports it (rag.retriever=hnsw, pq or segments), or rag.mode=lexical.
+     */
+    public String retrieveContextAcrossCourses(String query) {
+        if (!mode.equals("lexical") && !retriever.supportsCrossCourseSearch()) {
+            throw new IllegalStateException("Cross-course search needs rag.retriever=hnsw, pq or segments, current: " + retriever.name());
+        }
+        return retrieve(null, List.of(query)).get(0);
+    }
+
+    private List<String> retrieve(Long courseId, List<String> queries) {
+        String[] contexts = new String[queries.size()];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            contexts[i] = retrievalCache.getContext(courseId, queries.get(i));
+            if (contexts[i] == null) missing.add(i);
+        }
+        if (missing.isEmpty()) return Arrays.asList(contexts);
+        long version = retrievalCache.version(courseId);
+
+        List<String> toSearch = new ArrayList<>(missing.size());
+        for (int i : missing) toSearch.add(queries.get(i));
+        long[][] winners = new long[toSearch.size()][topKSize];
+        // hybrid results ranked by keywords alone because the query could not be embedded
+        boolean[] keywordOnly = new boolean[toSearch.size()];
+        int[] counts = switch (mode) {
+            case "lexical" -> lexicalSearch(courseId, toSearch, topKSize, winners);
+            case "hybrid" -> hybridSearch(courseId, toSearch, winners, keywordOnly);
+            default -> retriever.searchAll(courseId, queryVectors(toSearch), topKSize, winners);
+        };
+
+        // Only the winners' text is read from the database, in one query for all of them
+        Set<Long> allIds = new HashSet<>();
+        for (int j = 0; j < counts.length; j++) {
+            for (int i = 0; i < counts[j]; i++) allIds.add(winners[j][i]);
+        }
+        Map<Long, String> contents = new HashMap<>();
+        if (!allIds.isEmpty()) {
+            for (Object[] row : chunkRepository.findContentsByIdIn(allIds)) {
+                contents.put((Long) row[0], (String) row[1]);
+            }
+        }
+
+        for (int j = 0; j < counts.length; j++) {
+            String context = Arrays.stream(winners[j], 0, counts[j])
+                    .mapToObj(contents::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.joining("\n---\n"));
+            // an empty result is not cached, the course may simply not be ingested yet; nor is a
+            // keyword-only one, the next call may get an embedding
+            if (counts[j] > 0 && !keywordOnly[j]) retrievalCache.putContext(courseId, toSearch.get(j), version, context);
+            contexts[missing.get(j)] = context;
+        }
+        return Arrays.asList(contexts);
+    }
+
+    private int[] lexicalSearch(Long courseId, List<String> queries, int k, long[][] out) {
+        int[] counts = new int[queries.size()];
+        for (int q = 0; q < queries.size(); q++) {
+            counts[q] = lexicalIndex.getObject().search(courseId, queries.get(q), k, out[q]);
+        }
+        return counts;
+    }
+
+    /**
+     * Fuses the vector and BM25 rankings with reciprocal rank fusion: each chunk scores
+     * the sum of 1 / (60 + rank) over the lists it appears in, so no score scale is compared.
+     * Flags in {@code keywordOnly} the queries that could not be embedded (API down), which
+     * get the keyword ranking alone.
+     */
+    private int[] hybridSearch(Long courseId, List<String> queries, long[][] out, boolean[] keywordOnly) {
+        long[][] lexical = new long[queries.size()][hybridCandidates];
+        int[] lexicalCounts = lexicalSearch(courseId, queries, hybridCandidates, lexical);
+
+        long[][] semantic = new long[queries.size()][hybridCandidates];
+        // a retriever without cross-course search leaves course-less queries to the keywords
+        int[] semanticCounts = new int[queries.size()];
+        if (courseId != null || retriever.supportsCrossCourseSearch()) {
+            float[][] vectors = queryVectors(queries);
+            for (int q = 0; q < queries.size(); q++) keywordOnly[q] = vectors[q].length == 0;
+            semanticCounts = retriever.searchAll(courseId, vectors, hybridCandidates, semantic);
+        }
+
+        int[] counts = new int[queries.size()];
+        for (int q = 0; q < queries.size(); q++) {
+            counts[q] = ReciprocalRankFusion.fuse(RRF_K, new long[][]{semantic[q], lexical[q]},
+                    new int[]{semanticCounts[q], lexicalCounts[q]}, out[q]);
+        }
+        return counts;
+    }
+
+    /**
+     * Normalized embeddings of the queries; those not cached are embedded in one batch call.
+     */
+    private float[][] queryVectors(List<String> queries) {
+        float[][] vectors = new float[queries.size()][];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            vectors[i] = retrievalCache.getQueryVector(queries.get(i));
+            if (vectors[i] == null) missing.add(i);
+        }
+        if (missing.isEmpty()) return vectors;
+
+        List<String> texts = new ArrayList<>(missing.size());
+        for (int i : missing) texts.add(queries.get(i));
+        List<float[]> embedded = embeddingService.getEmbeddings(texts);
+        for (int j = 0; j < missing.size(); j++) {
+            float[] vector = embedded.get(j);
+            VectorMath.normalize(vector);
+            // a failed call returns an empty vector, ask again next time
+            if (vector.length > 0) retrievalCache.putQueryVector(texts.get(j), vector);
+            vectors[missing.get(j)] = vector;
         }
-        return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
+        return vectors;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.CourseChunk;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoizes retrieval: the joined context per (course, normalized query, course index version),
+ * and the normalized embedding per query text. Quizzes of a course always ask the same query,
+ * so most of them skip both the embedding call and the vector search.
+ *
+ * Every change to a course's chunks bumps its version, so contexts computed before the change
+ * are never served again; cross-course contexts follow a global version bumped on any change.
+ */
+@Component
+public class RetrievalCache implements CourseIndexListener {
+
+    private static final String ALL_COURSES = "*";
+
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    private final LinkedHashMap<String, String> contexts;
+    private final LinkedHashMap<String, float[]> queryVectors;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public RetrievalCache(MeterRegistry meterRegistry,
+                          @Value("${rag.retrieval-cache.max-entries:1024}") int maxEntries,
+                          @Value("${rag.retrieval-cache.max-query-embeddings:256}") int maxQueryEmbeddings) {
+        this.contexts = lruMap(maxEntries);
+        this.queryVectors = lruMap(maxQueryEmbeddings);
+        this.hits = meterRegistry.counter("rag.retrieval.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("rag.retrieval.cache.requests", "result", "miss");
+    }
+
+    /**
+     * Current index version of the course (or of all courses when courseId is null).
+     * Read it before retrieving and pass it to putContext.
+     */
+    public long version(Long courseId) {
+        return courseId == null ? globalVersion.get() : versions.getOrDefault(courseId, 0L);
+    }
+
+    public synchronized String getContext(Long courseId, String query) {
+        String context = contexts.get(contextKey(courseId, query, version(courseId)));
+        (context != null ? hits : misses).increment();
+        return context;
+    }
+
+    public synchronized void putContext(Long courseId, String query, long version, String context) {
+        // a version that moved on meanwhile would never be read again
+        if (version != version(courseId)) return;
+        contexts.put(contextKey(courseId, query, version), context);
+    }
+
+    /**
+     * The normalized embedding of the query, shared: callers must not modify it.
+     */
+    public synchronized float[] getQueryVector(String query) {
+        return queryVectors.get(query);
+    }
+
+    public synchronized void putQueryVector(String query, float[] normalizedVector) {
+        queryVectors.put(query, normalizedVector);
+    }
+
+    @Override
+    public void chunksAdded(Long courseId, List<CourseChunk> chunks) {
+        invalidate(courseId);
+    }
+
+    @Override
+    public void chunksRemoved(Long courseId, Collection<Long> chunkIds) {
+        invalidate(courseId);
+    }
+
+    @Override
+    public void courseRemoved(Long courseId) {
+        invalidate(courseId);
+    }
+
+    private synchronized void invalidate(Long courseId) {
+        versions.merge(courseId, 1L, Long::sum);
+        globalVersion.incrementAndGet();
+        String coursePrefix = courseId + ":";
+        String globalPrefix = ALL_COURSES + ":";
+        contexts.keySet().removeIf(key -> key.startsWith(coursePrefix) || key.startsWith(globalPrefix));
+    }
+
+    private static String contextKey(Long courseId, String query, long version) {
+        String normalized = query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return (courseId == null ? ALL_COURSES : courseId) + ":" + version + ":" + normalized;
+    }
+
+    private static <V> LinkedHashMap<String, V> lruMap(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+}
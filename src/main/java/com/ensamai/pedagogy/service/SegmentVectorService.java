@@ -0,0 +1,210 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.CourseChunk;
+import com.ensamai.pedagogy.rag.SegmentStore;
+import com.ensamai.pedagogy.rag.SimilarityKernel;
+import com.ensamai.pedagogy.rag.VectorRetriever;
+import com.ensamai.pedagogy.repository.CourseChunkRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exact retrieval over memory-mapped vector segments under data/segments, enabled with
+ * rag.retriever=segments. Vectors are read in place from the OS page cache instead of being
+ * rehydrated through Hibernate, so a restart only maps the files and compares row counts.
+ * Ingests append a segment, deletes append tombstones, and a background task compacts
+ * once there are too many segments or too many deleted rows.
+ */
+@Component
+@ConditionalOnProperty(name = "rag.retriever", havingValue = "segments")
+public class SegmentVectorService implements VectorRetriever, CourseIndexListener {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final CourseChunkRepository chunkRepository;
+    private final SimilarityKernel similarityKernel;
+    private final int maxSegments;
+    private final long maxSegmentBytes;
+    private final SegmentStore store;
+
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "segment-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SegmentVectorService(CourseChunkRepository chunkRepository,
+                                SimilarityKernel similarityKernel,
+                                @Value("${rag.segments.dir:data/segments}") String directory,
+                                @Value("${rag.segments.max-segments:32}") int maxSegments,
+                                @Value("${rag.segments.max-segment-bytes:1073741824}") long maxSegmentBytes,
+                                @Value("${rag.segments.compact-interval-seconds:60}") long compactIntervalSeconds)
+            throws IOException {
+        this.chunkRepository = chunkRepository;
+        this.similarityKernel = similarityKernel;
+        this.maxSegments = maxSegments;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.store = SegmentStore.open(Paths.get(directory));
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded, compactIntervalSeconds, compactIntervalSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        // a crash can lose an append or a tombstone, so the segments must match the database
+        long live = store.liveRows();
+        if (live == chunkRepository.countIndexableEmbeddings()) {
+            System.out.println("✅ Vector segments mapped: " + live + " chunks in " + store.segmentCount() + " segments");
+            return;
+        }
+        rebuild();
+    }
+
+    /**
+     * Rewrites every segment from the chunks stored in the database.
+     */
+    public void rebuild() {
+        try {
+            store.replaceAll(new StoredEmbeddings(), maxSegmentBytes);
+            System.out.println("✅ Vector segments rebuilt: " + store.liveRows() + " chunks in "
+                    + store.segmentCount() + " segments");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error rebuilding vector segments", e);
+        }
+    }
+
+    @Override
+    public int search(Long courseId, float[] query, int k, long[] out) {
+        return store.search(query, k, courseId == null ? SegmentStore.ALL_COURSES : courseId, out, similarityKernel);
+    }
+
+    @Override
+    public boolean supportsCrossCourseSearch() {
+        return true;
+    }
+
+    @Override
+    public String name() {
+        return "segments";
+    }
+
+    @Override
+    public void chunksAdded(Long courseId, List<CourseChunk> chunks) {
+        List<CourseChunk> embedded = new ArrayList<>(chunks.size());
+        for (CourseChunk chunk : chunks) {
+            if (chunk.getEmbedding() != null && chunk.getEmbedding().length > 0) embedded.add(chunk);
+        }
+        if (embedded.isEmpty()) return;
+
+        long[] chunkIds = new long[embedded.size()];
+        float[][] vectors = new float[embedded.size()][];
+        for (int i = 0; i < chunkIds.length; i++) {
+            chunkIds[i] = embedded.get(i).getId();
+            vectors[i] = embedded.get(i).getEmbedding();
+        }
+        try {
+            store.append(courseId, chunkIds, vectors);
+        } catch (IOException e) {
+            // the row count check at next start rebuilds the segments
+            System.err.println("Error appending vector segment: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void chunksRemoved(Long courseId, Collection<Long> chunkIds) {
+        try {
+            store.deleteChunks(chunkIds);
+        } catch (IOException e) {
+            System.err.println("Error recording deleted chunks: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void courseRemoved(Long courseId) {
+        try {
+            store.deleteCourse(courseId);
+        } catch (IOException e) {
+            System.err.println("Error recording deleted course: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactor.shutdownNow();
+    }
+
+    private void compactIfNeeded() {
+        try {
+            long total = store.totalRows();
+            if (store.segmentCount() > maxSegments || (total > 0 && store.liveRows() < total * 3 / 4)) {
+                store.compact(maxSegmentBytes);
+                System.out.println("✅ Vector segments compacted: " + store.liveRows() + " chunks in "
+                        + store.segmentCount() + " segments");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error compacting vector segments: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pages through the stored embeddings, ordered by course, as {chunkId, courseId, vector} rows.
+     */
+    private class StoredEmbeddings implements Iterator<Object[]> {
+        private Slice<Object[]> slice;
+        private Iterator<Object[]> rows;
+        private Object[] next;
+
+        StoredEmbeddings() {
+            slice = chunkRepository.findAllEmbeddingsByCourse(PageRequest.of(0, PAGE_SIZE));
+            rows = slice.getContent().iterator();
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null) {
+                while (!rows.hasNext()) {
+                    if (!slice.hasNext()) return;
+                    Pageable page = slice.nextPageable();
+                    slice = chunkRepository.findAllEmbeddingsByCourse(page);
+                    rows = slice.getContent().iterator();
+                }
+                Object[] row = rows.next();
+                float[] vector = (float[]) row[2];
+                if (vector != null && vector.length > 0) next = row;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (next == null) throw new NoSuchElementException();
+            Object[] row = next;
+            advance();
+            return row;
+        }
+    }
+}
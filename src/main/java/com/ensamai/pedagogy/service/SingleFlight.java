@@ -0,0 +1,113 @@
+package com.ensamai.pedagogy.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces identical concurrent calls: while a call for a key is in flight, later callers
+ * with the same key wait for its result instead of calling again. Nothing is cached, the key
+ * is forgotten as soon as the call returns.
+ *
+ * Every caller gets its own copy of the result through {@code copy}, for values callers
+ * modify (embeddings are normalized in place). Metrics: singleflight.calls{name, result=
+ * executed|collapsed} and the singleflight.in.flight gauge.
+ */
+public class SingleFlight<V> {
+
+    private final Map<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copy;
+    private final Counter executed;
+    private final Counter collapsed;
+
+    public SingleFlight(MeterRegistry meterRegistry, String name, UnaryOperator<V> copy) {
+        this.copy = copy;
+        this.executed = meterRegistry.counter("singleflight.calls", "name", name, "result", "executed");
+        this.collapsed = meterRegistry.counter("singleflight.calls", "name", name, "result", "collapsed");
+        Gauge.builder("singleflight.in.flight", inFlight, Map::size).tag("name", name).register(meterRegistry);
+    }
+
+    public V execute(String key, Supplier<V> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            collapsed.increment();
+            return await(running);
+        }
+
+        executed.increment();
+        try {
+            V value = call.get();
+            mine.complete(value);
+            return copy.apply(value);
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Batch form of execute for distinct keys: {@code call} receives the positions of the keys
+     * not already in flight and returns their values in that order; the other keys wait for
+     * the calls running them. Results are by position.
+     */
+    public List<V> executeAll(List<String> keys, Function<List<Integer>, List<V>> call) {
+        List<CompletableFuture<V>> futures = new ArrayList<>(keys.size());
+        List<Integer> claimed = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            CompletableFuture<V> mine = new CompletableFuture<>();
+            CompletableFuture<V> running = inFlight.putIfAbsent(keys.get(i), mine);
+            futures.add(running != null ? running : mine);
+            if (running == null) claimed.add(i);
+        }
+        collapsed.increment(keys.size() - claimed.size());
+        executed.increment(claimed.size());
+
+        // our own keys are completed before waiting on anyone else's, so two batches
+        // waiting on each other's keys cannot deadlock
+        if (!claimed.isEmpty()) {
+            try {
+                List<V> values = call.apply(claimed);
+                for (int j = 0; j < claimed.size(); j++) {
+                    futures.get(claimed.get(j)).complete(values.get(j));
+                }
+            } catch (RuntimeException | Error e) {
+                for (int i : claimed) futures.get(i).completeExceptionally(e);
+                throw e;
+            } finally {
+                for (int i : claimed) inFlight.remove(keys.get(i), futures.get(i));
+            }
+        }
+
+        List<V> results = new ArrayList<>(keys.size());
+        for (CompletableFuture<V> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return copy.apply(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced call", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.rag.CourseVectorIndex;
+import com.ensamai.pedagogy.repository.CourseChunkRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Keeps the vector index of recently used courses in memory, so retrieval
+ * does not rehydrate every chunk from the database on each quiz.
+ */
+@Component
+public class VectorIndexCache extends CourseIndexCache<CourseVectorIndex> {
+
+    private final CourseChunkRepository chunkRepository;
+
+    public VectorIndexCache(CourseChunkRepository chunkRepository,
+                            @Value("${rag.index.cache-max-bytes:268435456}") long maxBytes) {
+        super(maxBytes);
+        this.chunkRepository = chunkRepository;
+    }
+
+    /**
+     * Reads the float vectors of the course from the database, bypassing the cache.
+     */
+    @Override
+    public CourseVectorIndex load(Long courseId) {
+        List<Object[]> rows = chunkRepository.findEmbeddingsByCourseId(courseId);
+
+        int dimension = 0;
+        int count = 0;
+        for (Object[] row : rows) {
+            float[] vector = (float[]) row[1];
+            if (vector == null || vector.length == 0) continue;
+            if (dimension == 0) dimension = vector.length;
+            if (vector.length == dimension) count++;
+        }
+
+        long[] chunkIds = new long[count];
+        float[] matrix = new float[count * dimension];
+        int r = 0;
+        for (Object[] row : rows) {
+            float[] vector = (float[]) row[1];
+            if (vector == null || vector.length == 0 || vector.length != dimension) continue;
+            chunkIds[r] = (Long) row[0];
+            System.arraycopy(vector, 0, matrix, r * dimension, dimension);
+            r++;
+        }
+        return new CourseVectorIndex(chunkIds, matrix, dimension);
+    }
+
+    @Override
+    protected long sizeInBytes(CourseVectorIndex index) {
+        return index.sizeInBytes();
+    }
+}
@@ -0,0 +1,140 @@
+package com.ensamai.pedagogy.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Bm25IndexTest {
+
+    @Test
+    void moreOccurrencesRankHigher() {
+        Bm25Index index = new Bm25Index();
+        index.add(1, 1, "photosynthesis happens in leaves of green plants");
+        index.add(2, 1, "photosynthesis photosynthesis photosynthesis converts light in leaves");
+        index.add(3, 1, "cellular respiration releases energy");
+
+        assertArrayEquals(new long[]{2, 1}, search(index, "photosynthesis", Bm25Index.ALL_COURSES));
+    }
+
+    @Test
+    void shorterDocumentsRankHigherForTheSameFrequency() {
+        Bm25Index index = new Bm25Index();
+        index.add(1, 1, "mitochondria produce energy inside cells through many chemical reactions every second");
+        index.add(2, 1, "mitochondria produce energy");
+        index.add(3, 1, "ribosomes build proteins");
+
+        assertArrayEquals(new long[]{2, 1}, search(index, "mitochondria", Bm25Index.ALL_COURSES));
+    }
+
+    @Test
+    void rareTermsOutweighCommonOnes() {
+        Bm25Index index = new Bm25Index();
+        index.add(1, 1, "energy energy");
+        index.add(2, 1, "energy enzyme");
+        index.add(3, 1, "energy light");
+        index.add(4, 1, "energy water");
+
+        // "enzyme" is in one document, "energy" in all of them
+        long[] out = search(index, "energy enzyme", Bm25Index.ALL_COURSES);
+        assertEquals(2, out[0]);
+        assertEquals(4, out.length);
+    }
+
+    @Test
+    void emptyAndTinyCorporaAreSearchable() {
+        Bm25Index index = new Bm25Index();
+        assertEquals(0, search(index, "anything", Bm25Index.ALL_COURSES).length);
+
+        // a term found in every document still gets a positive IDF
+        index.add(1, 1, "osmosis");
+        assertArrayEquals(new long[]{1}, search(index, "osmosis", Bm25Index.ALL_COURSES));
+        assertEquals(0, search(index, "diffusion", Bm25Index.ALL_COURSES).length);
+        // nothing left once stop words and one-letter tokens are removed
+        assertEquals(0, search(index, "the and a", Bm25Index.ALL_COURSES).length);
+    }
+
+    @Test
+    void searchIsFilteredByCourse() {
+        Bm25Index index = new Bm25Index();
+        index.add(1, 10, "newton laws of motion");
+        index.add(2, 20, "newton method for roots");
+
+        assertArrayEquals(new long[]{2}, search(index, "newton", 20));
+        assertEquals(2, search(index, "newton", Bm25Index.ALL_COURSES).length);
+    }
+
+    @Test
+    void deletedChunksAndCoursesAreNotReturned() {
+        Bm25Index index = new Bm25Index();
+        index.add(1, 10, "entropy of a system");
+        index.add(2, 10, "entropy increases");
+        index.add(3, 20, "entropy in information theory");
+
+        assertTrue(index.deleteChunk(1));
+        assertFalse(index.deleteChunk(1));
+        assertArrayEquals(new long[]{2}, search(index, "entropy", 10));
+
+        assertEquals(1, index.deleteCourse(10));
+        assertArrayEquals(new long[]{3}, search(index, "entropy", Bm25Index.ALL_COURSES));
+        assertEquals(1, index.liveSize());
+        assertEquals(2, index.deletedCount());
+    }
+
+    @Test
+    void reAddingAChunkReplacesItsText() {
+        Bm25Index index = new Bm25Index();
+        index.add(1, 1, "kinetic energy");
+        index.add(1, 1, "potential energy");
+
+        assertEquals(0, search(index, "kinetic", Bm25Index.ALL_COURSES).length);
+        assertArrayEquals(new long[]{1}, search(index, "potential", Bm25Index.ALL_COURSES));
+        assertEquals(1, index.liveSize());
+    }
+
+    @Test
+    void compactionScoresLikeAnIndexOfTheLiveChunks() {
+        Bm25Index index = new Bm25Index();
+        index.add(1, 1, "acid base reaction");
+        index.add(2, 1, "acid rain acid");
+        index.add(3, 1, "strong acid acid solution");
+        index.add(4, 1, "weak base");
+        index.deleteChunk(2);
+
+        index.compact();
+
+        Bm25Index fresh = new Bm25Index();
+        fresh.add(1, 1, "acid base reaction");
+        fresh.add(3, 1, "strong acid acid solution");
+        fresh.add(4, 1, "weak base");
+        assertEquals(0, index.deletedCount());
+        assertEquals(3, index.liveSize());
+        // tombstones counted in the document frequencies until now, no longer
+        assertArrayEquals(search(fresh, "acid base", Bm25Index.ALL_COURSES),
+                search(index, "acid base", Bm25Index.ALL_COURSES));
+
+        // renumbered documents still map to their chunks
+        assertTrue(index.deleteChunk(3));
+        assertArrayEquals(new long[]{1, 4}, search(index, "acid base", Bm25Index.ALL_COURSES));
+        index.add(5, 1, "acid");
+        assertEquals(5, search(index, "acid", Bm25Index.ALL_COURSES)[0]);
+    }
+
+    @Test
+    void tokensAreFoldedAndFiltered() {
+        assertEquals(List.of("ecole", "energie", "x2"), Bm25Index.tokenize("L'École: l'énergie, x2 dans a!"));
+        assertEquals(List.of(), Bm25Index.tokenize(null));
+    }
+
+    private static long[] search(Bm25Index index, String query, long course) {
+        long[] out = new long[10];
+        int count = index.search(query, out.length, course, out);
+        long[] found = new long[count];
+        System.arraycopy(out, 0, found, 0, count);
+        return found;
+    }
+}
@@ -0,0 +1,173 @@
+package com.ensamai.pedagogy.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int NODES = 2000;
+    private static final int COURSES = 4;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+
+    private final SimilarityKernel kernel = SimilarityKernels.create("scalar");
+    private final Random random = new Random(5);
+    private final float[][] vectors = new float[NODES][];
+
+    @Test
+    void recallAgainstBruteForce() {
+        HnswIndex index = filledIndex();
+
+        double hits = 0;
+        double courseHits = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = unitVector(random);
+            hits += overlap(search(index, query, HnswIndex.ALL_COURSES), exactTopK(query, HnswIndex.ALL_COURSES));
+            long course = q % COURSES;
+            courseHits += overlap(search(index, query, course), exactTopK(query, course));
+        }
+        double recall = hits / (QUERIES * K);
+        double courseRecall = courseHits / (QUERIES * K);
+        assertTrue(recall >= 0.95, "recall@10 " + recall);
+        assertTrue(courseRecall >= 0.95, "course recall@10 " + courseRecall);
+    }
+
+    @Test
+    void smallCourseIsFoundExactly() {
+        HnswIndex index = filledIndex();
+        // a course much smaller than ef: a filtered walk would cover the whole graph
+        float[][] small = new float[5][];
+        for (int i = 0; i < small.length; i++) {
+            small[i] = unitVector(random);
+            index.insert(NODES + i, 99, small[i]);
+        }
+
+        for (int q = 0; q < 10; q++) {
+            float[] query = unitVector(random);
+            TopK exact = new TopK(K);
+            for (int i = 0; i < small.length; i++) exact.offer(NODES + i, VectorMath.dot(small[i], 0, query));
+            int[] expected = new int[K];
+            int expectedCount = exact.drainDescending(expected);
+
+            long[] found = search(index, query, 99);
+            assertEquals(small.length, expectedCount);
+            assertEquals(expectedCount, found.length);
+            for (int i = 0; i < found.length; i++) assertEquals(expected[i], found[i]);
+        }
+        assertEquals(0, index.search(unitVector(random), K, 123, new long[K]));
+    }
+
+    @Test
+    void tombstonedNodesAreNeverReturned() {
+        HnswIndex index = filledIndex();
+
+        assertEquals(NODES / COURSES, index.deleteCourse(1));
+        assertTrue(index.deleteChunk(0));
+        assertFalse(index.deleteChunk(0));
+        // re-inserting a chunk replaces its node
+        index.insert(2, 2, unitVector(random));
+        assertEquals(NODES / COURSES + 2, index.deletedCount());
+        assertEquals(NODES + 1, index.size());
+        assertEquals(NODES - NODES / COURSES - 1, index.liveSize());
+
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = unitVector(random);
+            long[] out = new long[K];
+            int count = index.search(query, K, HnswIndex.ALL_COURSES, out);
+            assertEquals(K, count);
+            for (int i = 0; i < count; i++) {
+                assertTrue(out[i] % COURSES != 1, "deleted course returned: " + out[i]);
+                assertTrue(out[i] != 0, "deleted chunk returned");
+            }
+        }
+        assertEquals(0, index.search(unitVector(random), K, 1, new long[K]));
+    }
+
+    @Test
+    void writeToAndReadFromRoundTrip() throws IOException {
+        HnswIndex index = filledIndex();
+        index.deleteCourse(3);
+        index.deleteChunk(4);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            index.writeTo(out);
+        }
+        HnswIndex read = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                index.getEfSearch(), kernel);
+
+        assertEquals(index.getDimension(), read.getDimension());
+        assertEquals(index.size(), read.size());
+        assertEquals(index.liveSize(), read.liveSize());
+        assertEquals(index.deletedCount(), read.deletedCount());
+        for (int q = 0; q < 20; q++) {
+            float[] query = unitVector(random);
+            for (long course : new long[]{HnswIndex.ALL_COURSES, 0, 3}) {
+                assertArrayEquals(search(index, query, course), search(read, query, course));
+            }
+        }
+        // the read index keeps growing like the original
+        read.insert(NODES, 3, unitVector(random));
+        assertEquals(1, read.search(unitVector(random), K, 3, new long[K]));
+    }
+
+    private HnswIndex filledIndex() {
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100, 64, kernel);
+        for (int i = 0; i < NODES; i++) {
+            vectors[i] = unitVector(random);
+            index.insert(i, i % COURSES, vectors[i]);
+        }
+        return index;
+    }
+
+    private static long[] search(HnswIndex index, float[] query, long course) {
+        long[] out = new long[K];
+        return Arrays.copyOf(out, index.search(query, K, course, out));
+    }
+
+    private long[] exactTopK(float[] query, long course) {
+        TopK topK = new TopK(K);
+        for (int i = 0; i < NODES; i++) {
+            if (course == HnswIndex.ALL_COURSES || i % COURSES == course) {
+                topK.offer(i, VectorMath.dot(vectors[i], 0, query));
+            }
+        }
+        int[] rows = new int[K];
+        int count = topK.drainDescending(rows);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) ids[i] = rows[i];
+        return ids;
+    }
+
+    private static int overlap(long[] found, long[] exact) {
+        Set<Long> expected = new HashSet<>();
+        for (long id : exact) expected.add(id);
+        int hits = 0;
+        for (long id : found) {
+            if (expected.contains(id)) hits++;
+        }
+        return hits;
+    }
+
+    private static float[] unitVector(Random random) {
+        float[] v = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) v[d] = (float) random.nextGaussian();
+        VectorMath.normalize(v);
+        return v;
+    }
+}
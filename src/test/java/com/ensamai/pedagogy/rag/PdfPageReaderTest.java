@@ -0,0 +1,103 @@
+package com.ensamai.pedagogy.rag;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfPageReaderTest {
+
+    private static final int PAGES = 12;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void pagesReachTheConsumerInOrder() throws Exception {
+        byte[] pdf = pdf(PAGES);
+        // fewer pages in flight than workers would allow: the window is widened to the parallelism
+        PdfPageReader reader = new PdfPageReader(executor, 4, 2);
+        List<Integer> numbers = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+
+        int pages = reader.read(pdf, (number, text) -> {
+            numbers.add(number);
+            texts.add(text);
+        });
+
+        assertEquals(PAGES, pages);
+        for (int page = 1; page <= PAGES; page++) {
+            assertEquals(page, numbers.get(page - 1));
+            assertTrue(texts.get(page - 1).contains("Marker " + page + " "), texts.get(page - 1));
+        }
+    }
+
+    @Test
+    void consumerFailureStopsTheWorkers() throws Exception {
+        byte[] pdf = pdf(PAGES);
+        PdfPageReader reader = new PdfPageReader(executor, 4, 4);
+        IllegalStateException failure = new IllegalStateException("embedding queue closed");
+        List<Integer> consumed = new ArrayList<>();
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> reader.read(pdf, (number, text) -> {
+            consumed.add(number);
+            if (number == 3) throw failure;
+        }));
+
+        assertSame(failure, thrown);
+        assertEquals(List.of(1, 2, 3), consumed);
+        // no worker is left extracting pages nobody will read
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void corruptPdfIsRejected() {
+        PdfPageReader reader = new PdfPageReader(executor, 2, 2);
+        byte[] garbage = "%PDF-1.7\nthis is not a PDF body".getBytes();
+
+        assertThrows(IOException.class, () -> reader.read(garbage, (number, text) -> {
+            throw new AssertionError("no page expected");
+        }));
+    }
+
+    private static byte[] pdf(int pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int page = 1; page <= pages; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Marker " + page + " of the course notes");
+                    content.endText();
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.ensamai.pedagogy.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PqIndexTest {
+
+    private static final int DIMENSION = 256;
+    private static final int SUBSPACES = 32;
+    private static final int ROWS = 4000;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+    // the retriever's default rag.pq.rerank-factor
+    private static final int RERANK_FACTOR = 8;
+    private static final int TOPIC_DIRECTIONS = 8;
+    private static final double SPREAD = 0.3;
+    private static final double NOISE = 0.1;
+
+    @Test
+    void rerankedPqScanFindsTheExactTopK() {
+        Random random = new Random(5);
+        float[] matrix = clusteredRows(random, ROWS);
+        PqIndex index = new PqIndex(ProductQuantizer.train(matrix, ROWS, DIMENSION, SUBSPACES, 10, 1));
+        for (int r = 0; r < ROWS; r++) {
+            index.add(r, 1, row(matrix, r));
+        }
+
+        double pqHits = 0;
+        double rerankedHits = 0;
+        long[] candidates = new long[K * RERANK_FACTOR];
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = row(clusteredRows(random, 1), 0);
+            Set<Integer> exact = exactTopK(matrix, query);
+
+            int count = index.search(query, candidates.length, PqIndex.ALL_COURSES, candidates);
+            TopK reranked = new TopK(K);
+            for (int i = 0; i < count; i++) {
+                int row = (int) candidates[i];
+                if (i < K && exact.contains(row)) pqHits++;
+                reranked.offer(row, VectorMath.dot(matrix, row * DIMENSION, query));
+            }
+            int[] winners = new int[K];
+            reranked.drainDescending(winners);
+            for (int row : winners) {
+                if (exact.contains(row)) rerankedHits++;
+            }
+        }
+
+        double pqRecall = pqHits / (QUERIES * K);
+        double rerankedRecall = rerankedHits / (QUERIES * K);
+        // 0.748 and 1.0 with this seed: the codes only shortlist, the exact rerank restores the ranking
+        assertTrue(pqRecall >= 0.6, "pq recall@10 " + pqRecall);
+        assertTrue(rerankedRecall >= 0.98, "reranked recall@10 " + rerankedRecall);
+    }
+
+    @Test
+    void searchFiltersByCourseAndSkipsDeletedChunks() {
+        Random random = new Random(8);
+        float[] matrix = clusteredRows(random, 600);
+        PqIndex index = new PqIndex(ProductQuantizer.train(matrix, 600, DIMENSION, SUBSPACES, 5, 1));
+        for (int r = 0; r < 600; r++) {
+            index.add(r, r % 3, row(matrix, r));
+        }
+
+        long[] out = new long[50];
+        int count = index.search(row(matrix, 0), out.length, 1, out);
+        assertEquals(50, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(1, out[i] % 3);
+        }
+
+        assertTrue(index.deleteChunk(1));
+        assertFalse(index.deleteChunk(1));
+        assertEquals(199, index.deleteCourse(1));
+        assertEquals(400, index.liveSize());
+        assertEquals(0, index.search(row(matrix, 1), 10, 1, out));
+
+        // re-adding a chunk replaces its previous code
+        index.add(0, 0, row(matrix, 5));
+        assertEquals(400, index.liveSize());
+        assertEquals(601, index.size());
+    }
+
+    @Test
+    void anyChunkIdCanBeReplacedAndDeleted() {
+        Random random = new Random(4);
+        float[] matrix = clusteredRows(random, 100);
+        PqIndex index = new PqIndex(ProductQuantizer.train(matrix, 100, DIMENSION, SUBSPACES, 5, 1));
+        long[] ids = {0, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 40, (1L << 40) + 1024};
+        for (int r = 0; r < ids.length; r++) {
+            index.add(ids[r], 1, row(matrix, r));
+        }
+        for (int r = 0; r < ids.length; r++) {
+            index.add(ids[r], 1, row(matrix, r + ids.length));
+        }
+        assertEquals(2 * ids.length, index.size());
+        assertEquals(ids.length, index.liveSize());
+
+        for (long id : ids) assertTrue(index.deleteChunk(id), "chunk " + id);
+        assertEquals(0, index.liveSize());
+        assertFalse(index.deleteChunk(7));
+    }
+
+    @Test
+    void writeAndReadKeepOnlyLiveRows() throws IOException {
+        Random random = new Random(9);
+        float[] matrix = clusteredRows(random, 300);
+        PqIndex index = new PqIndex(ProductQuantizer.train(matrix, 300, DIMENSION, SUBSPACES, 5, 1));
+        for (int r = 0; r < 300; r++) {
+            index.add(r, r % 2, row(matrix, r));
+        }
+        index.deleteCourse(1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        PqIndex read = PqIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(150, read.size());
+        assertEquals(0, read.deletedCount());
+        long[] expected = new long[10];
+        long[] actual = new long[10];
+        float[] query = row(matrix, 42);
+        assertEquals(index.search(query, 10, PqIndex.ALL_COURSES, expected),
+                read.search(query, 10, PqIndex.ALL_COURSES, actual));
+        assertArrayEquals(expected, actual);
+        // the chunk-id lookup is rebuilt from the live rows
+        assertTrue(read.deleteChunk(42));
+        assertFalse(read.deleteChunk(43));
+
+        byte[] corrupt = bytes.toByteArray();
+        corrupt[0] ^= 1;
+        assertThrows(IOException.class,
+                () -> PqIndex.readFrom(new DataInputStream(new ByteArrayInputStream(corrupt))));
+    }
+
+    private static Set<Integer> exactTopK(float[] matrix, float[] query) {
+        TopK topK = new TopK(K);
+        for (int r = 0; r < ROWS; r++) {
+            topK.offer(r, VectorMath.dot(matrix, r * DIMENSION, query));
+        }
+        int[] rows = new int[K];
+        topK.drainDescending(rows);
+        Set<Integer> set = new HashSet<>();
+        for (int row : rows) set.add(row);
+        return set;
+    }
+
+    // unit rows around 20 fixed topics, each spreading along a few directions of its own
+    // plus a little isotropic noise, like embeddings of a few subjects
+    private static float[] clusteredRows(Random random, int rows) {
+        Random topics = new Random(0);
+        float[][] centers = new float[20][DIMENSION];
+        float[][][] directions = new float[20][TOPIC_DIRECTIONS][DIMENSION];
+        for (int t = 0; t < centers.length; t++) {
+            gaussian(topics, centers[t], 1.0);
+            VectorMath.normalize(centers[t]);
+            for (float[] direction : directions[t]) {
+                gaussian(topics, direction, 1.0);
+                VectorMath.normalize(direction);
+            }
+        }
+        float[] matrix = new float[rows * DIMENSION];
+        float[] point = new float[DIMENSION];
+        for (int r = 0; r < rows; r++) {
+            int t = random.nextInt(centers.length);
+            gaussian(random, point, NOISE / Math.sqrt(DIMENSION));
+            for (int d = 0; d < DIMENSION; d++) point[d] += centers[t][d];
+            for (float[] direction : directions[t]) {
+                float weight = (float) (random.nextGaussian() * SPREAD);
+                for (int d = 0; d < DIMENSION; d++) point[d] += weight * direction[d];
+            }
+            VectorMath.normalize(point);
+            System.arraycopy(point, 0, matrix, r * DIMENSION, DIMENSION);
+        }
+        return matrix;
+    }
+
+    private static void gaussian(Random random, float[] out, double sigma) {
+        for (int d = 0; d < out.length; d++) out[d] = (float) (random.nextGaussian() * sigma);
+    }
+
+    private static float[] row(float[] matrix, int row) {
+        float[] vector = new float[DIMENSION];
+        System.arraycopy(matrix, row * DIMENSION, vector, 0, DIMENSION);
+        return vector;
+    }
+}
@@ -0,0 +1,128 @@
+package com.ensamai.pedagogy.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantizedVectorIndexTest {
+
+    private static final int DIMENSION = 768;
+    private static final int ROWS = 2000;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+    // the retriever's default rag.quantized.rerank-factor
+    private static final int RERANK_FACTOR = 4;
+    private static final double NOISE = 0.6;
+
+    @Test
+    void rerankedQuantizedScanFindsTheExactTopK() {
+        Random random = new Random(11);
+        // clustered rows, so neighbours are close and the int8 rounding can reorder them
+        float[][] centers = new float[40][];
+        for (int c = 0; c < centers.length; c++) {
+            centers[c] = unitVector(random, DIMENSION);
+        }
+        float[] matrix = new float[ROWS * DIMENSION];
+        long[] chunkIds = new long[ROWS];
+        for (int r = 0; r < ROWS; r++) {
+            System.arraycopy(pointNear(random, centers[r % centers.length]), 0, matrix, r * DIMENSION, DIMENSION);
+            chunkIds[r] = r;
+        }
+        QuantizedVectorIndex quantized = QuantizedVectorIndex.quantize(new CourseVectorIndex(chunkIds, matrix, DIMENSION));
+
+        double firstPassHits = 0;
+        double rerankedHits = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = pointNear(random, centers[random.nextInt(centers.length)]);
+            Set<Integer> exact = exactTopK(matrix, query, K);
+
+            TopK candidates = new TopK(K * RERANK_FACTOR);
+            quantized.scoreAll(query, candidates);
+            int[] rows = new int[candidates.capacity()];
+            int count = candidates.drainDescending(rows);
+
+            TopK reranked = new TopK(K);
+            for (int i = 0; i < count; i++) {
+                if (i < K && exact.contains(rows[i])) firstPassHits++;
+                reranked.offer(rows[i], VectorMath.dot(matrix, rows[i] * DIMENSION, query));
+            }
+            int[] winners = new int[K];
+            assertEquals(K, reranked.drainDescending(winners));
+            for (int row : winners) {
+                if (exact.contains(row)) rerankedHits++;
+            }
+        }
+
+        double firstPassRecall = firstPassHits / (QUERIES * K);
+        double rerankedRecall = rerankedHits / (QUERIES * K);
+        // 0.986 and 1.0 with this seed
+        assertTrue(firstPassRecall >= 0.95, "first pass recall@10 " + firstPassRecall);
+        assertTrue(rerankedRecall >= 0.99, "reranked recall@10 " + rerankedRecall);
+        assertTrue(rerankedRecall >= firstPassRecall);
+    }
+
+    @Test
+    void indexIsAboutAQuarterOfTheFloatMatrix() {
+        Random random = new Random(3);
+        float[] matrix = new float[ROWS * DIMENSION];
+        for (int r = 0; r < ROWS; r++) {
+            System.arraycopy(unitVector(random, DIMENSION), 0, matrix, r * DIMENSION, DIMENSION);
+        }
+        CourseVectorIndex index = new CourseVectorIndex(new long[ROWS], matrix, DIMENSION);
+        QuantizedVectorIndex quantized = QuantizedVectorIndex.quantize(index);
+
+        assertTrue(quantized.sizeInBytes() * 3.5 < index.sizeInBytes(),
+                quantized.sizeInBytes() + " vs " + index.sizeInBytes());
+    }
+
+    @Test
+    void constantDimensionsAndEmptyCoursesQuantize() {
+        float[] matrix = new float[2 * 4];
+        matrix[0] = 1f;
+        matrix[4] = 1f;
+        QuantizedVectorIndex quantized = QuantizedVectorIndex.quantize(new CourseVectorIndex(new long[]{7, 8}, matrix, 4));
+        TopK topK = new TopK(2);
+        quantized.scoreAll(new float[]{1f, 0f, 0f, 0f}, topK);
+        assertEquals(2, topK.size());
+
+        QuantizedVectorIndex empty = QuantizedVectorIndex.quantize(new CourseVectorIndex(new long[0], new float[0], 4));
+        assertEquals(0, empty.size());
+    }
+
+    private static Set<Integer> exactTopK(float[] matrix, float[] query, int k) {
+        TopK topK = new TopK(k);
+        for (int r = 0; r < ROWS; r++) {
+            topK.offer(r, VectorMath.dot(matrix, r * DIMENSION, query));
+        }
+        int[] rows = new int[k];
+        topK.drainDescending(rows);
+        Set<Integer> set = new HashSet<>();
+        for (int row : rows) set.add(row);
+        return set;
+    }
+
+    // unit vector at a distance of about NOISE from the center
+    private static float[] pointNear(Random random, float[] center) {
+        double sigma = NOISE / Math.sqrt(center.length);
+        float[] point = new float[center.length];
+        for (int d = 0; d < center.length; d++) {
+            point[d] = center[d] + (float) (random.nextGaussian() * sigma);
+        }
+        VectorMath.normalize(point);
+        return point;
+    }
+
+    private static float[] unitVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        VectorMath.normalize(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,60 @@
+package com.ensamai.pedagogy.rag;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReciprocalRankFusionTest {
+
+    private static final int K = 60;
+
+    @Test
+    void idsInBothListsRankFirst() {
+        long[] vector = {1, 2, 3};
+        long[] keyword = {4, 3, 5};
+        long[] out = new long[5];
+
+        int count = ReciprocalRankFusion.fuse(K, new long[][]{vector, keyword}, new int[]{3, 3}, out);
+
+        assertEquals(5, count);
+        // 3: 1/63 + 1/62 beats every id found by one list only
+        assertEquals(3, out[0]);
+        // then rank 1 of either list, the vector list first, then rank 2, then rank 3
+        assertArrayEquals(new long[]{3, 1, 4, 2, 5}, out);
+    }
+
+    @Test
+    void onlyTheCountedPrefixOfEachListIsUsed() {
+        long[] out = new long[4];
+        int count = ReciprocalRankFusion.fuse(K, new long[][]{{7, 8, 0}, {9, 0, 0}}, new int[]{2, 1}, out);
+
+        assertEquals(3, count);
+        assertArrayEquals(new long[]{7, 9, 8}, new long[]{out[0], out[1], out[2]});
+    }
+
+    @Test
+    void outputIsCutToItsLength() {
+        long[] out = new long[2];
+        assertEquals(2, ReciprocalRankFusion.fuse(K, new long[][]{{1, 2, 3}}, new int[]{3}, out));
+        assertArrayEquals(new long[]{1, 2}, out);
+    }
+
+    @Test
+    void emptyListsFuseToNothing() {
+        assertEquals(0, ReciprocalRankFusion.fuse(K, new long[][]{{}, {}}, new int[]{0, 0}, new long[3]));
+    }
+
+    @Test
+    void smallerKFavoursTopRanksOverAgreement() {
+        // with k = 60, two middling ranks (3 and 3) beat a single first place;
+        // with k = 0 the first place wins
+        long[][] rankings = {{1, 5, 2}, {6, 7, 2}};
+        long[] out = new long[5];
+
+        ReciprocalRankFusion.fuse(60, rankings, new int[]{3, 3}, out);
+        assertEquals(2, out[0]);
+        ReciprocalRankFusion.fuse(0, rankings, new int[]{3, 3}, out);
+        assertEquals(1, out[0]);
+    }
+}
@@ -0,0 +1,295 @@
+package com.ensamai.pedagogy.rag;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentStoreTest {
+
+    private static final int DIMENSION = 16;
+    private static final SimilarityKernel KERNEL = SimilarityKernels.create("scalar");
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(1);
+
+    @Test
+    void appendedSegmentsAreSearchablePerCourseAndAcrossCourses() throws IOException {
+        SegmentStore store = SegmentStore.open(directory);
+        float[][] course1 = unitVectors(3);
+        float[][] course2 = unitVectors(2);
+        store.append(1, new long[]{10, 11, 12}, course1);
+        store.append(2, new long[]{20, 21}, course2);
+
+        assertEquals(2, store.segmentCount());
+        assertEquals(5, store.liveRows());
+        assertEquals(11, top(store, course1[1], 1));
+        assertEquals(21, top(store, course2[1], SegmentStore.ALL_COURSES));
+        // the closest chunk of course 1 to a course 2 vector is still from course 1
+        long[] out = new long[5];
+        assertEquals(3, store.search(course2[1], 5, 1, out, KERNEL));
+        for (int i = 0; i < 3; i++) assertTrue(out[i] >= 10 && out[i] <= 12);
+    }
+
+    @Test
+    void tombstonedChunksAndCoursesAreSkipped() throws IOException {
+        SegmentStore store = SegmentStore.open(directory);
+        float[][] course1 = unitVectors(3);
+        store.append(1, new long[]{10, 11, 12}, course1);
+        store.append(2, new long[]{20, 21}, unitVectors(2));
+
+        store.deleteChunks(List.of(11L));
+        store.deleteCourse(2);
+
+        assertEquals(2, store.liveRows());
+        assertEquals(5, store.totalRows());
+        long[] out = new long[5];
+        assertEquals(2, store.search(course1[1], 5, SegmentStore.ALL_COURSES, out, KERNEL));
+        assertFalse(out[0] == 11 || out[1] == 11);
+        assertEquals(0, store.search(course1[1], 5, 2, out, KERNEL));
+    }
+
+    @Test
+    void compactionMergesSegmentsAndDropsTombstonedRows() throws IOException {
+        SegmentStore store = SegmentStore.open(directory);
+        float[][] course1 = unitVectors(3);
+        float[][] course3 = unitVectors(2);
+        store.append(3, new long[]{30, 31}, course3);
+        store.append(1, new long[]{10, 11, 12}, course1);
+        store.append(2, new long[]{20}, unitVectors(1));
+        store.deleteChunks(List.of(10L));
+        store.deleteCourse(2);
+
+        store.compact(1 << 20);
+
+        assertEquals(1, store.segmentCount());
+        assertEquals(4, store.totalRows());
+        assertEquals(4, store.liveRows());
+        assertFalse(Files.exists(directory.resolve("tombstones.log")));
+        assertEquals(12, top(store, course1[2], 1));
+        assertEquals(30, top(store, course3[0], SegmentStore.ALL_COURSES));
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.filter(f -> f.getFileName().toString().startsWith("seg-")).count());
+        }
+    }
+
+    @Test
+    void compactionSplitsByMaxSegmentSizeKeepingCoursesGrouped() throws IOException {
+        SegmentStore store = SegmentStore.open(directory);
+        for (int i = 0; i < 3; i++) {
+            store.append(2, new long[]{20 + i}, unitVectors(1));
+            store.append(1, new long[]{10 + i}, unitVectors(1));
+        }
+
+        // room for four rows per segment: course 1, then course 2 split over two segments
+        store.compact(VectorSegment.sizeInBytes(4, DIMENSION));
+
+        assertEquals(2, store.segmentCount());
+        assertEquals(6, store.liveRows());
+        long[] out = new long[3];
+        assertEquals(3, store.search(unitVectors(1)[0], 3, 1, out, KERNEL));
+        for (long id : out) assertTrue(id >= 10 && id <= 12);
+    }
+
+    @Test
+    void largeMostlyLiveSegmentsAreKeptWithTheirTombstones() throws IOException {
+        SegmentStore store = SegmentStore.open(directory);
+        float[][] large = unitVectors(8);
+        store.append(1, new long[]{10, 11, 12, 13, 14, 15, 16, 17}, large);
+        store.append(2, new long[]{20}, unitVectors(1));
+        store.append(3, new long[]{30}, unitVectors(1));
+        Path largeFile;
+        try (var files = Files.list(directory)) {
+            largeFile = files.filter(f -> f.getFileName().toString().startsWith("seg-")).sorted().findFirst().orElseThrow();
+        }
+        // one row in eight of the large segment, and a small segment's course
+        store.deleteChunks(List.of(11L));
+        store.deleteCourse(3);
+
+        store.compact(VectorSegment.sizeInBytes(8, DIMENSION));
+
+        assertEquals(2, store.segmentCount());
+        assertTrue(Files.exists(largeFile));
+        assertEquals(8, store.liveRows());
+        assertEquals(9, store.totalRows());
+        assertTrue(Files.exists(directory.resolve("tombstones.log")));
+
+        SegmentStore reopened = SegmentStore.open(directory);
+        assertEquals(8, reopened.liveRows());
+        long[] out = new long[8];
+        assertEquals(7, reopened.search(large[1], 8, 1, out, KERNEL));
+        for (long id : out) assertTrue(id != 11);
+        // the deleted course's tombstone went with its last row
+        store.append(3, new long[]{31}, unitVectors(1));
+        assertEquals(9, store.liveRows());
+    }
+
+    @Test
+    void mostlyDeletedSegmentsAreRewritten() throws IOException {
+        SegmentStore store = SegmentStore.open(directory);
+        store.append(1, new long[]{10, 11, 12, 13}, unitVectors(4));
+        store.deleteChunks(List.of(10L, 11L));
+
+        store.compact(VectorSegment.sizeInBytes(4, DIMENSION));
+
+        assertEquals(1, store.segmentCount());
+        assertEquals(2, store.totalRows());
+        assertEquals(2, store.liveRows());
+        assertFalse(Files.exists(directory.resolve("tombstones.log")));
+    }
+
+    @Test
+    void compactionKeepsEveryDimension() throws IOException {
+        SegmentStore store = SegmentStore.open(directory);
+        float[][] course1 = unitVectors(2);
+        store.append(1, new long[]{10, 11}, course1);
+        float[][] other = new float[2][8];
+        other[0][0] = 1f;
+        other[1][1] = 1f;
+        // a course embedded by another model
+        store.append(2, new long[]{20, 21}, other);
+        store.append(1, new long[]{12}, unitVectors(1));
+
+        store.compact(1 << 20);
+
+        assertEquals(2, store.segmentCount());
+        assertEquals(5, store.liveRows());
+        assertEquals(10, top(store, course1[0], 1));
+        assertEquals(21, top(store, other[1], SegmentStore.ALL_COURSES));
+    }
+
+    @Test
+    void reopeningRestoresSegmentsAndTombstones() throws IOException {
+        SegmentStore store = SegmentStore.open(directory);
+        float[][] course1 = unitVectors(3);
+        store.append(1, new long[]{10, 11, 12}, course1);
+        store.append(2, new long[]{20}, unitVectors(1));
+        store.deleteChunks(List.of(12L));
+        store.deleteCourse(2);
+        // leftover of an append that crashed before the manifest was replaced
+        Files.write(directory.resolve("seg-0000000099.vec"), new byte[128]);
+
+        SegmentStore reopened = SegmentStore.open(directory);
+
+        assertEquals(2, reopened.segmentCount());
+        assertEquals(2, reopened.liveRows());
+        assertEquals(10, top(reopened, course1[0], 1));
+        assertEquals(0, reopened.search(course1[0], 5, 2, new long[5], KERNEL));
+        assertFalse(Files.exists(directory.resolve("seg-0000000099.vec")));
+
+        // new segments do not reuse a live segment's name
+        reopened.append(3, new long[]{30}, unitVectors(1));
+        assertEquals(3, SegmentStore.open(directory).segmentCount());
+    }
+
+    @Test
+    void tornTombstoneRecordIsIgnored() throws IOException {
+        SegmentStore store = SegmentStore.open(directory);
+        store.append(1, new long[]{10, 11}, unitVectors(2));
+        store.deleteChunks(List.of(10L));
+        Files.write(directory.resolve("tombstones.log"), new byte[]{'K', 0, 0}, StandardOpenOption.APPEND);
+
+        assertEquals(1, SegmentStore.open(directory).liveRows());
+    }
+
+    @Test
+    void truncatedSegmentIsRejected() throws IOException {
+        Path file = directory.resolve("seg.vec");
+        VectorSegment.write(file, DIMENSION, new long[]{1, 2}, new long[]{7, 7}, flatten(unitVectors(2)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - Long.BYTES);
+        }
+
+        IOException e = assertThrows(IOException.class, () -> VectorSegment.open(file));
+        assertTrue(e.getMessage().startsWith("Truncated"));
+        Files.write(file, new byte[10]);
+        assertThrows(IOException.class, () -> VectorSegment.open(file));
+    }
+
+    @Test
+    void wrongMagicIsRejected() throws IOException {
+        Path file = directory.resolve("seg.vec");
+        VectorSegment.write(file, DIMENSION, new long[]{1}, new long[]{7}, flatten(unitVectors(1)));
+        patchLong(file, 0, 0x1234L);
+
+        IOException e = assertThrows(IOException.class, () -> VectorSegment.open(file));
+        assertTrue(e.getMessage().startsWith("Not a vector segment"));
+    }
+
+    @Test
+    void segmentRoundTripsRowsAndCourseRanges() throws IOException {
+        float[][] vectors = unitVectors(5);
+        VectorSegment segment = VectorSegment.write(directory.resolve("seg.vec"), DIMENSION,
+                new long[]{1, 2, 3, 4, 5}, new long[]{7, 7, 9, 9, 9}, flatten(vectors));
+
+        assertEquals(5, segment.size());
+        assertArrayEquals(new int[]{0, 2}, segment.courseRange(7));
+        assertArrayEquals(new int[]{2, 5}, segment.courseRange(9));
+        assertNull(segment.courseRange(8));
+        assertEquals(4, segment.getChunkId(3));
+        assertArrayEquals(vectors[3], segment.readRow(3), 0f);
+    }
+
+    @Test
+    void nonContiguousCourseRowsAreRejected() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> VectorSegment.write(directory.resolve("bad.vec"),
+                DIMENSION, new long[]{1, 2, 3}, new long[]{7, 9, 7}, flatten(unitVectors(3))));
+
+        // a file whose course column was altered on disk: course 7, 9, then 7 again
+        Path file = directory.resolve("seg.vec");
+        VectorSegment.write(file, DIMENSION, new long[]{1, 2, 3}, new long[]{7, 9, 9}, flatten(unitVectors(3)));
+        int courseIdsOffset = 64 + 3 * DIMENSION * Float.BYTES + 3 * Long.BYTES;
+        patchLong(file, courseIdsOffset + 2 * Long.BYTES, 7L);
+
+        IOException e = assertThrows(IOException.class, () -> VectorSegment.open(file));
+        assertTrue(e.getMessage().contains("not contiguous"));
+    }
+
+    private static long top(SegmentStore store, float[] query, long courseFilter) {
+        long[] out = new long[1];
+        assertEquals(1, store.search(query, 1, courseFilter, out, KERNEL));
+        return out[0];
+    }
+
+    private static void patchLong(Path file, int offset, long value) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(value);
+        bytes.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes, offset);
+        }
+    }
+
+    private float[][] unitVectors(int count) {
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < DIMENSION; d++) vector[d] = (float) random.nextGaussian();
+            VectorMath.normalize(vector);
+        }
+        return vectors;
+    }
+
+    private static float[] flatten(float[][] vectors) {
+        float[] matrix = new float[vectors.length * DIMENSION];
+        for (int i = 0; i < vectors.length; i++) {
+            System.arraycopy(vectors[i], 0, matrix, i * DIMENSION, DIMENSION);
+        }
+        return matrix;
+    }
+}
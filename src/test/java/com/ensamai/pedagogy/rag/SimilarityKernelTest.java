@@ -0,0 +1,115 @@
+package com.ensamai.pedagogy.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SimilarityKernelTest {
+
+    private static final int K = 10;
+
+    @Test
+    void vectorKernelRanksLikeScalarKernel() {
+        SimilarityKernel scalar = SimilarityKernels.create("scalar");
+        SimilarityKernel vector = vectorKernel();
+
+        // 768 is a multiple of every lane width, 771 exercises the scalar tail
+        for (int dimension : new int[]{256, 768, 771}) {
+            Random random = new Random(dimension);
+            int rows = 2000;
+            float[] matrix = randomUnitRows(random, rows, dimension);
+            for (int q = 0; q < 20; q++) {
+                float[] query = randomUnitRows(random, 1, dimension);
+                assertArrayEquals(topRows(scalar, matrix, rows, query), topRows(vector, matrix, rows, query),
+                        "ranking differs for " + vector.name() + " at dimension " + dimension);
+            }
+        }
+    }
+
+    @Test
+    void vectorKernelMatchesScalarDotProduct() {
+        SimilarityKernel scalar = SimilarityKernels.create("scalar");
+        SimilarityKernel vector = vectorKernel();
+        Random random = new Random(42);
+        float[] matrix = randomUnitRows(random, 50, 768);
+        float[] query = randomUnitRows(random, 1, 768);
+
+        for (int row = 0; row < 50; row++) {
+            assertEquals(scalar.dot(matrix, row * 768, query), vector.dot(matrix, row * 768, query), 1e-5f);
+        }
+    }
+
+    @Test
+    void byteBufferRowsScoreLikeArrayRows() {
+        Random random = new Random(7);
+        int dimension = 771;
+        float[] matrix = randomUnitRows(random, 20, dimension);
+        float[] query = randomUnitRows(random, 1, dimension);
+        // little-endian, behind a header like a mapped segment
+        ByteBuffer buffer = ByteBuffer.allocate(64 + matrix.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(64);
+        buffer.asFloatBuffer().put(matrix);
+
+        List<SimilarityKernel> kernels = new ArrayList<>(List.of(SimilarityKernels.create("scalar")));
+        SimilarityKernel vector = vectorKernelOrNull();
+        if (vector != null) kernels.add(vector);
+        for (SimilarityKernel kernel : kernels) {
+            for (int row = 0; row < 20; row++) {
+                assertEquals(kernel.dot(matrix, row * dimension, query),
+                        kernel.dot(buffer, 64 + row * dimension * Float.BYTES, query), 1e-5f, kernel.name());
+            }
+        }
+    }
+
+    @Test
+    void scalarKernelIsAlwaysAvailable() {
+        assertEquals("scalar", SimilarityKernels.create("scalar").name());
+    }
+
+    /**
+     * The Vector API kernel itself: "auto" would fall back to the scalar loop and
+     * compare it with itself.
+     */
+    private static SimilarityKernel vectorKernel() {
+        SimilarityKernel kernel = vectorKernelOrNull();
+        assumeTrue(kernel != null, "Vector API kernel not available");
+        return kernel;
+    }
+
+    private static SimilarityKernel vectorKernelOrNull() {
+        try {
+            return SimilarityKernels.create("vector");
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static int[] topRows(SimilarityKernel kernel, float[] matrix, int rows, float[] query) {
+        TopK topK = new TopK(K);
+        kernel.scoreAll(matrix, rows, query, topK);
+        int[] out = new int[K];
+        topK.drainDescending(out);
+        return out;
+    }
+
+    private static float[] randomUnitRows(Random random, int rows, int dimension) {
+        float[] matrix = new float[rows * dimension];
+        float[] row = new float[dimension];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < dimension; i++) {
+                row[i] = (float) random.nextGaussian();
+            }
+            VectorMath.normalize(row);
+            System.arraycopy(row, 0, matrix, r * dimension, dimension);
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,136 @@
+package com.ensamai.pedagogy.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextChunkerTest {
+
+    @Test
+    void emptyAndBlankTextHaveNoChunks() {
+        TextChunker chunker = new TextChunker(32, 4);
+        assertEquals(List.of(), chunker.split(""));
+        assertEquals(List.of(), chunker.split(" \n\n\t  \n"));
+    }
+
+    @Test
+    void shortTextIsOneTrimmedChunk() {
+        assertEquals(List.of("Cells divide by mitosis."), new TextChunker(32, 4).split("\n  Cells divide by mitosis.  \n"));
+    }
+
+    @Test
+    void chunksStayWithinTheBudgetAndCoverTheText() {
+        TextChunker chunker = new TextChunker(32, 8);
+        String text = sentences(60);
+        List<int[]> ranges = ranges(chunker, text);
+
+        assertTrue(ranges.size() > 1);
+        assertEquals(0, ranges.get(0)[0]);
+        assertEquals(text.length(), ranges.get(ranges.size() - 1)[1]);
+        for (int i = 0; i < ranges.size(); i++) {
+            int[] range = ranges.get(i);
+            assertTrue(TextChunker.estimateTokens(text, range[0], range[1]) <= 32);
+            assertFalse(Character.isWhitespace(text.charAt(range[0])));
+            assertFalse(Character.isWhitespace(text.charAt(range[1] - 1)));
+            // no gap between a chunk and the next one
+            if (i > 0) assertTrue(range[0] <= ranges.get(i - 1)[1] + 1);
+        }
+    }
+
+    @Test
+    void chunksEndAtSentencesAndOverlapFromASentenceStart() {
+        TextChunker chunker = new TextChunker(32, 8);
+        String text = sentences(60);
+        List<int[]> ranges = ranges(chunker, text);
+
+        for (int i = 1; i < ranges.size(); i++) {
+            int[] previous = ranges.get(i - 1);
+            int[] range = ranges.get(i);
+            assertEquals('.', text.charAt(previous[1] - 1));
+            assertTrue(range[0] < previous[1], "chunk " + i + " does not overlap the previous one");
+            assertTrue(Character.isUpperCase(text.charAt(range[0])));
+            // one six-token sentence: the overlap does not go past its eight tokens to a word boundary
+            assertEquals(6, TextChunker.estimateTokens(text, range[0], previous[1]));
+        }
+    }
+
+    @Test
+    void noOverlapWhenOverlapIsZero() {
+        String text = sentences(60);
+        List<int[]> ranges = ranges(new TextChunker(32, 0), text);
+
+        for (int i = 1; i < ranges.size(); i++) {
+            assertTrue(ranges.get(i)[0] > ranges.get(i - 1)[1]);
+        }
+    }
+
+    @Test
+    void paragraphBreaksArePreferredOverSentences() {
+        String first = "Plants make sugar from light. The process needs water. It releases oxygen as well.";
+        String second = "Animals eat plants for energy. They breathe the oxygen back in.";
+        List<String> chunks = new TextChunker(32, 0).split(first + "\n\n" + second);
+
+        assertEquals(List.of(first, second), chunks);
+    }
+
+    @Test
+    void headingStartsANewChunkWithoutOverlap() {
+        String intro = "Motion is described by position, velocity and acceleration over time.";
+        String section = "# Forces\nA force changes the motion of a body.";
+        List<String> chunks = new TextChunker(40, 8).split(intro + "\n" + section);
+
+        assertEquals(List.of(intro, section), chunks);
+
+        // a short unpunctuated line after a blank line is a heading too
+        List<String> plain = new TextChunker(40, 8).split(intro + "\n\nForces\nA force changes the motion of a body.");
+        assertEquals(2, plain.size());
+        assertTrue(plain.get(1).startsWith("Forces\n"));
+    }
+
+    @Test
+    void veryLongTokenIsKeptWholeAndChunkingMovesOn() {
+        String word = "a".repeat(400);
+        List<String> chunks = new TextChunker(16, 4).split("Short intro here. " + word + " and some words after it.");
+
+        // no chunk of just the overlap "intro here." before the word
+        assertEquals(List.of("Short intro here.", word, "and some words after it."), chunks);
+        assertEquals(List.of(word), new TextChunker(16, 4).split(word));
+    }
+
+    @Test
+    void tokensAreEstimatedPerFourCharactersAndPunctuation() {
+        assertEquals(0, TextChunker.estimateTokens("", 0, 0));
+        // "abcd" 1, "abcde" 2, "," 1, "x" 1, "!" 1
+        assertEquals(6, TextChunker.estimateTokens("abcd abcde, x!", 0, 14));
+        assertEquals(2, TextChunker.estimateTokens("abcd abcde, x!", 5, 10));
+    }
+
+    @Test
+    void invalidSizesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(4, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(32, 16));
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(32, -1));
+    }
+
+    private static List<int[]> ranges(TextChunker chunker, String text) {
+        List<int[]> ranges = new ArrayList<>();
+        chunker.chunk(text, (start, end) -> ranges.add(new int[]{start, end}));
+        return ranges;
+    }
+
+    // numbered sentences of six estimated tokens each
+    private static String sentences(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) text.append(' ');
+            text.append("Cell ").append(i).append(" uses energy.");
+        }
+        return text.toString();
+    }
+}
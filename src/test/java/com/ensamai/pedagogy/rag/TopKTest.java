@@ -0,0 +1,123 @@
+package com.ensamai.pedagogy.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopKTest {
+
+    @Test
+    void keepsTheBestScoresBestFirst() {
+        Random random = new Random(3);
+        float[] scores = new float[1000];
+        TopK topK = new TopK(10);
+        for (int row = 0; row < scores.length; row++) {
+            scores[row] = random.nextFloat() * 2 - 1;
+            topK.offer(row, scores[row]);
+        }
+        int[] expected = IntStream.range(0, scores.length).boxed()
+                .sorted(Comparator.comparingDouble(row -> -scores[row]))
+                .limit(10).mapToInt(Integer::intValue).toArray();
+
+        int[] rows = new int[10];
+        float[] outScores = new float[10];
+        assertEquals(10, topK.drainDescending(rows, outScores));
+        assertArrayEquals(expected, rows);
+        for (int i = 0; i < 10; i++) assertEquals(scores[rows[i]], outScores[i]);
+        assertEquals(0, topK.size());
+    }
+
+    @Test
+    void fewerOffersThanKAreAllKept() {
+        TopK topK = new TopK(8);
+        topK.offer(4, 0.1f);
+        topK.offer(7, 0.9f);
+        topK.offer(2, -0.5f);
+
+        assertEquals(3, topK.size());
+        assertEquals(Float.NEGATIVE_INFINITY, topK.threshold());
+        int[] rows = new int[8];
+        assertEquals(3, topK.drainDescending(rows));
+        assertArrayEquals(new int[]{7, 4, 2}, Arrays.copyOf(rows, 3));
+    }
+
+    @Test
+    void thresholdIsTheLowestKeptScoreOnceFull() {
+        TopK topK = new TopK(3);
+        topK.offer(0, 0.5f);
+        topK.offer(1, 0.2f);
+        assertEquals(Float.NEGATIVE_INFINITY, topK.threshold());
+        topK.offer(2, 0.8f);
+        assertEquals(0.2f, topK.threshold());
+        topK.offer(3, 0.6f);
+        assertEquals(0.5f, topK.threshold());
+        // not better than the bar: ignored
+        topK.offer(4, 0.1f);
+        assertEquals(3, topK.size());
+        assertEquals(0.5f, topK.threshold());
+    }
+
+    @Test
+    void tiesAtTheBarKeepTheFirstOffered() {
+        TopK topK = new TopK(2);
+        topK.offer(1, 0.5f);
+        topK.offer(2, 0.5f);
+        topK.offer(3, 0.5f);
+        topK.offer(4, 0.5f);
+
+        int[] rows = new int[2];
+        float[] scores = new float[2];
+        assertEquals(2, topK.drainDescending(rows, scores));
+        Arrays.sort(rows);
+        assertArrayEquals(new int[]{1, 2}, rows);
+        assertArrayEquals(new float[]{0.5f, 0.5f}, scores);
+    }
+
+    @Test
+    void tiedScoresDrainAmongTheirRank() {
+        TopK topK = new TopK(5);
+        topK.offer(1, 0.3f);
+        topK.offer(2, 0.7f);
+        topK.offer(3, 0.3f);
+        topK.offer(4, 0.9f);
+        topK.offer(5, 0.7f);
+
+        int[] rows = new int[5];
+        float[] scores = new float[5];
+        topK.drainDescending(rows, scores);
+        assertArrayEquals(new float[]{0.9f, 0.7f, 0.7f, 0.3f, 0.3f}, scores);
+        assertEquals(4, rows[0]);
+        assertTrue((rows[1] == 2 && rows[2] == 5) || (rows[1] == 5 && rows[2] == 2));
+        assertTrue((rows[3] == 1 && rows[4] == 3) || (rows[3] == 3 && rows[4] == 1));
+    }
+
+    @Test
+    void resetMakesItReusable() {
+        TopK topK = new TopK(2);
+        topK.offer(1, 0.9f);
+        topK.offer(2, 0.8f);
+        topK.reset();
+
+        assertEquals(0, topK.size());
+        assertEquals(Float.NEGATIVE_INFINITY, topK.threshold());
+        topK.offer(3, 0.1f);
+        int[] rows = new int[2];
+        assertEquals(1, topK.drainDescending(rows));
+        assertEquals(3, rows[0]);
+        // draining empties it too
+        assertEquals(0, topK.drainDescending(rows));
+    }
+
+    @Test
+    void kMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new TopK(0));
+    }
+}
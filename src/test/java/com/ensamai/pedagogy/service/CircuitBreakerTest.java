@@ -0,0 +1,127 @@
+package com.ensamai.pedagogy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = 0;
+    private static final long SLOW_CALL = TimeUnit.SECONDS.toNanos(1);
+    private static final long OPEN = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long OPEN_FOREVER = TimeUnit.HOURS.toNanos(1);
+
+    @Test
+    void opensOnceEnoughCallsFailed() {
+        // window 10, at least 4 calls, opens at 50% failures
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1.0, SLOW_CALL, OPEN_FOREVER, 2);
+
+        for (int i = 0; i < 3; i++) record(breaker, false);
+        // three failures out of three, but fewer calls than the minimum
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        record(breaker, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void staysClosedBelowTheFailureRate() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1.0, SLOW_CALL, OPEN_FOREVER, 2);
+
+        for (int i = 0; i < 20; i++) {
+            // one failure in three
+            record(breaker, i % 3 != 2);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.75, 1.0, SLOW_CALL, OPEN_FOREVER, 2);
+
+        record(breaker, false);
+        record(breaker, false);
+        record(breaker, true);
+        record(breaker, true);
+        // the two failures are pushed out before a third one arrives
+        record(breaker, true);
+        record(breaker, true);
+        record(breaker, false);
+        record(breaker, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        record(breaker, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void opensOnSlowCallsToo() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 0.5, SLOW_CALL, OPEN_FOREVER, 2);
+
+        record(breaker, true, FAST);
+        record(breaker, true, FAST);
+        record(breaker, true, SLOW_CALL);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        record(breaker, true, SLOW_CALL);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void halfOpenLetsTrialCallsThroughAndClosesWhenTheyAllSucceed() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker(2);
+
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(OPEN) + 20);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // only two trials at once
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onResult(true, FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult(true, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // the failures before it opened are forgotten: three new ones are below the minimum
+        for (int i = 0; i < 3; i++) record(breaker, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void aFailedOrSlowTrialOpensItAgain() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker(2);
+
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(OPEN) + 20);
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(false, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(OPEN) + 20);
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(true, SLOW_CALL);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private static CircuitBreaker openBreaker(int halfOpenCalls) {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1.0, SLOW_CALL, OPEN, halfOpenCalls);
+        for (int i = 0; i < 4; i++) record(breaker, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static void record(CircuitBreaker breaker, boolean success) {
+        record(breaker, success, FAST);
+    }
+
+    private static void record(CircuitBreaker breaker, boolean success, long durationNanos) {
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(success, durationNanos);
+    }
+}
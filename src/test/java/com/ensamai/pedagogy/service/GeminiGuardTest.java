@@ -0,0 +1,252 @@
+package com.ensamai.pedagogy.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeminiGuardTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void fullBulkheadRefusesAfterItsWait() throws Exception {
+        GeminiGuard guard = guard(1, 3, 1, 60_000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = executor.submit(() -> guard.callOnce(() -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        AtomicInteger calls = new AtomicInteger();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> guard.call(() -> "second-" + calls.incrementAndGet()));
+        assertTrue(e.getMessage().contains("Too many concurrent"), e.getMessage());
+        // a refusal is not retried
+        assertEquals(0, calls.get());
+        assertEquals(1.0, rejections("bulkhead-full"));
+
+        release.countDown();
+        assertEquals("first", holder.get(10, TimeUnit.SECONDS));
+        assertEquals("second-1", guard.call(() -> "second-" + calls.incrementAndGet()));
+    }
+
+    @Test
+    void openCircuitRefusesWithoutCalling() {
+        // opens after 5 failed calls, see guard()
+        GeminiGuard guard = guard(8, 1, 1, 60_000);
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+                throw new IllegalStateException("upstream down");
+            }));
+        }
+        assertFalse(guard.isAvailable());
+
+        AtomicInteger calls = new AtomicInteger();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> guard.call(() -> "" + calls.incrementAndGet()));
+        assertTrue(e.getMessage().contains("circuit is open"), e.getMessage());
+        assertEquals(0, calls.get());
+        assertEquals(1.0, rejections("circuit-open"));
+        assertEquals(2.0, gauge());
+    }
+
+    @Test
+    void failuresAreRetriedUpToMaxAttempts() {
+        GeminiGuard guard = guard(8, 3, 1, 60_000);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("ok", guard.call(() -> {
+            if (calls.incrementAndGet() < 3) throw new IllegalStateException("flaky");
+            return "ok";
+        }));
+        assertEquals(3, calls.get());
+
+        // a fresh guard: five failures in a row would open the circuit before the last attempt
+        GeminiGuard failing = guard(8, 3, 1, 60_000);
+        calls.set(0);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> failing.call(() -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("down");
+        }));
+        assertEquals(3, calls.get());
+        assertTrue(e.getMessage().startsWith("Gemini call failed after retries: down"), e.getMessage());
+    }
+
+    @Test
+    void onlyRateLimitingClientErrorsAreRetried() {
+        GeminiGuard guard = guard(8, 3, 1, 60_000);
+        AtomicInteger calls = new AtomicInteger();
+        HttpClientErrorException badRequest = new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+
+        assertSame(badRequest, assertThrows(HttpClientErrorException.class, () -> guard.call(() -> {
+            calls.incrementAndGet();
+            throw badRequest;
+        })));
+        assertEquals(1, calls.get());
+
+        calls.set(0);
+        assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+            calls.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+        }));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuit() {
+        GeminiGuard guard = guard(8, 1, 1, 60_000);
+        for (int i = 0; i < 5; i++) {
+            assertThrows(HttpClientErrorException.class, () -> guard.call(() -> {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            }));
+        }
+        assertTrue(guard.isAvailable());
+
+        // rate limiting does: 5 failures out of 10 calls
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+                throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+            }));
+        }
+        assertFalse(guard.isAvailable());
+    }
+
+    @Test
+    void eachAttemptIsGivenTheTimeLeftUntilTheDeadline() {
+        GeminiGuard guard = guard(8, 3, 1, 500);
+        List<Long> budgets = new ArrayList<>();
+
+        assertEquals("ok", guard.call(budgetMillis -> {
+            budgets.add(budgetMillis);
+            // an attempt that used up its time
+            if (budgets.size() == 1) sleep(100);
+            if (budgets.size() < 3) throw new IllegalStateException("timed out");
+            return "ok";
+        }));
+        assertEquals(3, budgets.size());
+        assertTrue(budgets.get(0) <= 500, "first budget " + budgets.get(0));
+        assertTrue(budgets.get(1) <= 400, "second budget " + budgets.get(1));
+        assertTrue(budgets.get(2) <= budgets.get(1), "budgets " + budgets);
+
+        // a deadline already spent still allows one attempt, with a positive budget
+        GeminiGuard spent = guard(8, 3, 1, 0);
+        long budget = spent.call(budgetMillis -> budgetMillis);
+        assertEquals(1, budget);
+    }
+
+    @Test
+    void jitteredBackoffStaysUnderItsExponentialBound() {
+        // backoffs are uniform in [0, 20 ms * 2^attempt): at most 40 + 80 + 160 ms for 4 attempts
+        GeminiGuard guard = guard(8, 4, 20, 60_000);
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+                throw new IllegalStateException("down");
+            }));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis < 280 + 200, "retries took " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test
+    void longStreamThatStartsPromptlyIsNotASlowCall() {
+        // calls of 30 ms or more are slow
+        GeminiGuard guard = guard(8, 1, 1, 60_000, 30);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("quiz", guard.callStreaming(firstChunk -> {
+                firstChunk.run();
+                // the rest of the generation
+                sleep(60);
+                return "quiz";
+            }));
+        }
+        assertTrue(guard.isAvailable());
+        assertEquals(0.0, gauge());
+
+        // the same wait before anything arrives is slow
+        for (int i = 0; i < 5; i++) {
+            guard.callStreaming(firstChunk -> {
+                sleep(60);
+                firstChunk.run();
+                return "quiz";
+            });
+        }
+        assertFalse(guard.isAvailable());
+    }
+
+    @Test
+    void noRetryStartsAfterTheDeadline() {
+        // any backoff would end past a deadline of 0
+        GeminiGuard guard = guard(8, 3, 1, 0);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("down");
+        }));
+        assertEquals(1, calls.get());
+        assertEquals(1.0, rejections("deadline"));
+    }
+
+    // bulkhead wait 50 ms; circuit over the last 20 calls, opens at 50% failures after 5 calls
+    private GeminiGuard guard(int maxConcurrent, int maxAttempts, long baseBackoffMillis, long deadlineMillis) {
+        return guard(maxConcurrent, maxAttempts, baseBackoffMillis, deadlineMillis, 20_000);
+    }
+
+    private GeminiGuard guard(int maxConcurrent, int maxAttempts, long baseBackoffMillis, long deadlineMillis,
+                              long slowCallMillis) {
+        return new GeminiGuard(registry, maxConcurrent, 50, 20, 5, 0.5, 0.5, slowCallMillis, 60_000, 2,
+                maxAttempts, baseBackoffMillis, deadlineMillis);
+    }
+
+    private double rejections(String reason) {
+        return registry.get("gemini.guard.rejections").tag("reason", reason).counter().count();
+    }
+
+    private double gauge() {
+        return registry.get("gemini.circuit.state").gauge().value();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
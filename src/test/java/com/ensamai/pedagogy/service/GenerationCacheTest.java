@@ -0,0 +1,112 @@
+package com.ensamai.pedagogy.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class GenerationCacheTest {
+
+    private static final long TTL_SECONDS = 60;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    void entryExpiresAfterTheTtl() {
+        GenerationCache cache = cache(10, 100);
+        cache.put("quiz", "response");
+
+        now.addAndGet(TTL_SECONDS * 1000);
+        assertEquals(Optional.of("response"), cache.take("quiz"));
+
+        now.addAndGet(1);
+        assertEquals(Optional.empty(), cache.take("quiz"));
+        assertEquals(0, cache.size());
+        assertEquals(1, requests("hit"));
+        assertEquals(1, requests("miss"));
+    }
+
+    @Test
+    void replacingAnEntryRestartsItsTtl() {
+        GenerationCache cache = cache(10, 100);
+        cache.put("quiz", "old");
+        now.addAndGet(TTL_SECONDS * 1000 - 1);
+        cache.put("quiz", "new");
+        now.addAndGet(TTL_SECONDS * 1000 - 1);
+
+        assertEquals(Optional.of("new"), cache.take("quiz"));
+    }
+
+    @Test
+    void entryIsDroppedOnceReusedMaxReusesTimes() {
+        GenerationCache cache = cache(10, 3);
+        cache.put("quiz", "response");
+
+        for (int i = 0; i < 3; i++) assertEquals(Optional.of("response"), cache.take("quiz"));
+        assertEquals(Optional.empty(), cache.take("quiz"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void zeroReusesCachesNothing() {
+        GenerationCache cache = cache(10, 0);
+        cache.put("quiz", "response");
+
+        assertEquals(0, cache.size());
+        assertEquals(Optional.empty(), cache.take("quiz"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedAtMaxEntries() {
+        GenerationCache cache = cache(2, 100);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        // reading a makes b the least recently used
+        cache.take("a");
+        cache.put("c", "C");
+
+        assertEquals(2, cache.size());
+        assertEquals(2.0, registry.get("gemini.generation.cache.entries").gauge().value());
+        assertEquals(Optional.empty(), cache.take("b"));
+        assertEquals(Optional.of("A"), cache.take("a"));
+        assertEquals(Optional.of("C"), cache.take("c"));
+    }
+
+    @Test
+    void getOrGenerateCachesOnlyAcceptedResponses() {
+        GenerationCache cache = cache(10, 100);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("failed", cache.getOrGenerate("quiz", () -> calls.incrementAndGet() == 1 ? "failed" : "quiz",
+                response -> !response.equals("failed")));
+        assertEquals(0, cache.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("quiz", cache.getOrGenerate("quiz", () -> calls.incrementAndGet() == 1 ? "failed" : "quiz",
+                    response -> !response.equals("failed")));
+        }
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void keyDependsOnEveryPromptPart() {
+        assertEquals(GenerationCache.key("model", "v1", "context"), GenerationCache.key("model", "v1", "context"));
+        assertNotEquals(GenerationCache.key("model", "v1", "context"), GenerationCache.key("model", "v2", "context"));
+        // parts are not simply concatenated
+        assertNotEquals(GenerationCache.key("ab", "c"), GenerationCache.key("a", "bc"));
+    }
+
+    private GenerationCache cache(int maxEntries, int maxReuses) {
+        return new GenerationCache(registry, maxEntries, TTL_SECONDS, maxReuses, now::get);
+    }
+
+    private double requests(String result) {
+        return registry.get("gemini.generation.cache.requests").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,106 @@
+package com.ensamai.pedagogy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestionPlanTest {
+
+    private static final long EMBEDDING_BYTES = 3072;
+
+    @Test
+    void unchangedChunksAreReused() {
+        IngestionPlan plan = new IngestionPlan(rows(
+                row(1, "a", EMBEDDING_BYTES),
+                row(2, "b", EMBEDDING_BYTES)));
+
+        assertFalse(plan.offer("a"));
+        assertFalse(plan.offer("b"));
+
+        assertEquals(2, plan.getReusedChunks());
+        assertEquals(2, plan.getTotalChunks());
+        assertEquals(List.of(), plan.getOrphanChunkIds());
+    }
+
+    @Test
+    void changedChunksAreEmbeddedAndTheirOldRowsOrphaned() {
+        IngestionPlan plan = new IngestionPlan(rows(
+                row(1, "a", EMBEDDING_BYTES),
+                row(2, "b", EMBEDDING_BYTES),
+                row(3, "c", EMBEDDING_BYTES)));
+
+        assertFalse(plan.offer("a"));
+        // b was edited into b2, c was removed from the course
+        assertTrue(plan.offer("b2"));
+
+        assertEquals(1, plan.getReusedChunks());
+        assertEquals(2, plan.getTotalChunks());
+        assertEquals(List.of(2L, 3L), plan.getOrphanChunkIds());
+    }
+
+    @Test
+    void firstCourseIngestionEmbedsEverything() {
+        IngestionPlan plan = new IngestionPlan(List.of());
+
+        assertTrue(plan.offer("a"));
+        assertTrue(plan.offer("b"));
+
+        assertEquals(0, plan.getReusedChunks());
+        assertEquals(List.of(), plan.getOrphanChunkIds());
+    }
+
+    @Test
+    void duplicateChunksAreEmbeddedOnce() {
+        IngestionPlan plan = new IngestionPlan(List.of());
+
+        assertTrue(plan.offer("a"));
+        assertFalse(plan.offer("a"));
+
+        assertEquals(0, plan.getReusedChunks());
+        assertEquals(1, plan.getTotalChunks());
+    }
+
+    @Test
+    void duplicateStoredRowsKeepOnlyTheFirstCopy() {
+        IngestionPlan plan = new IngestionPlan(rows(
+                row(1, "a", EMBEDDING_BYTES),
+                row(2, "a", EMBEDDING_BYTES),
+                row(3, "b", EMBEDDING_BYTES),
+                row(4, "b", EMBEDDING_BYTES)));
+
+        assertFalse(plan.offer("a"));
+        assertFalse(plan.offer("a"));
+
+        assertEquals(1, plan.getReusedChunks());
+        // every copy of a text no longer offered goes
+        assertEquals(List.of(2L, 3L, 4L), plan.getOrphanChunkIds());
+    }
+
+    @Test
+    void chunksWithoutHashOrEmbeddingAreNeverReused() {
+        IngestionPlan plan = new IngestionPlan(rows(
+                row(1, null, EMBEDDING_BYTES),
+                row(2, "b", 0),
+                row(3, "c", null)));
+
+        assertTrue(plan.offer("b"));
+        assertTrue(plan.offer("c"));
+
+        assertEquals(0, plan.getReusedChunks());
+        assertEquals(List.of(1L, 2L, 3L), plan.getOrphanChunkIds());
+    }
+
+    private static Object[] row(long id, String hash, Number embeddingBytes) {
+        // ids and lengths come back as whatever numeric type the driver picks
+        return new Object[]{(int) id, hash, embeddingBytes};
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}
@@ -0,0 +1,95 @@
+package com.ensamai.pedagogy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonArrayStreamParserTest {
+
+    private final List<String> elements = new ArrayList<>();
+    private final JsonArrayStreamParser parser = new JsonArrayStreamParser(elements::add);
+
+    @Test
+    void elementsAreEmittedAsSoonAsTheyClose() {
+        parser.feed("[{\"q\": 1}, {\"q\"");
+        assertEquals(List.of("{\"q\": 1}"), elements);
+
+        parser.feed(": 2}");
+        assertEquals(List.of("{\"q\": 1}", "{\"q\": 2}"), elements);
+        assertFalse(parser.isFinished());
+
+        parser.feed("]");
+        assertTrue(parser.isFinished());
+        assertEquals(2, parser.getElementCount());
+    }
+
+    @Test
+    void anySplitOfTheTextGivesTheSameElements() {
+        String text = "[{\"question\": \"a { b\", \"options\": [\"x\", \"y]\"], \"nested\": {\"k\": [1, {\"v\": 2}]}},"
+                + " {\"question\": \"say \\\"hi\\\" \\\\\", \"answer\": 0}]";
+        List<String> expected = List.of(
+                "{\"question\": \"a { b\", \"options\": [\"x\", \"y]\"], \"nested\": {\"k\": [1, {\"v\": 2}]}}",
+                "{\"question\": \"say \\\"hi\\\" \\\\\", \"answer\": 0}");
+
+        for (int size = 1; size <= text.length(); size++) {
+            List<String> found = new ArrayList<>();
+            JsonArrayStreamParser chunked = new JsonArrayStreamParser(found::add);
+            for (int i = 0; i < text.length(); i += size) {
+                chunked.feed(text.substring(i, Math.min(text.length(), i + size)));
+            }
+            assertEquals(expected, found, "chunks of " + size);
+            assertTrue(chunked.isFinished());
+        }
+    }
+
+    @Test
+    void bracesAndQuotesInsideStringsAreText() {
+        parser.feed("[{\"q\": \"} ] {\"}, {\"q\": \"\\\\\"}, {\"q\": \"\\\"}\"}]");
+
+        assertEquals(List.of("{\"q\": \"} ] {\"}", "{\"q\": \"\\\\\"}", "{\"q\": \"\\\"}\"}"), elements);
+        assertTrue(parser.isFinished());
+    }
+
+    @Test
+    void markdownFenceAroundTheArrayIsIgnored() {
+        parser.feed("Here is the quiz:\n```json\n[\n  {\"q\": 1},\n");
+        parser.feed("  {\"q\": 2}\n]\n```\n");
+
+        assertEquals(List.of("{\"q\": 1}", "{\"q\": 2}"), elements);
+        assertTrue(parser.isFinished());
+    }
+
+    @Test
+    void textAfterTheArrayIsIgnored() {
+        parser.feed("[{\"q\": 1}] and {\"q\": 2} [{\"q\": 3}]");
+        parser.feed("{\"q\": 4}");
+
+        assertEquals(List.of("{\"q\": 1}"), elements);
+        assertEquals(1, parser.getElementCount());
+    }
+
+    @Test
+    void truncatedOutputEmitsOnlyCompleteElements() {
+        parser.feed("[{\"q\": 1}, {\"q\": \"cut off");
+
+        assertEquals(List.of("{\"q\": 1}"), elements);
+        assertFalse(parser.isFinished());
+    }
+
+    @Test
+    void emptyArrayAndNoArray() {
+        parser.feed("[ ]");
+        assertTrue(parser.isFinished());
+        assertEquals(0, parser.getElementCount());
+
+        JsonArrayStreamParser none = new JsonArrayStreamParser(elements::add);
+        none.feed("I cannot generate a quiz from this content {\"q\": 1}.");
+        assertFalse(none.isFinished());
+        assertEquals(List.of(), elements);
+    }
+}
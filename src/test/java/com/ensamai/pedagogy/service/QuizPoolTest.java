@@ -0,0 +1,218 @@
+package com.ensamai.pedagogy.service;
+
+import com.ensamai.pedagogy.model.PooledQuiz;
+import com.ensamai.pedagogy.model.QuizDifficulty;
+import com.ensamai.pedagogy.repository.PooledQuizRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuizPoolTest {
+
+    private static final Long COURSE = 1L;
+    private static final Long OTHER_COURSE = 2L;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final InMemoryPool rows = new InMemoryPool();
+    private final QuizPool pool = new QuizPool(rows.repository(), registry);
+
+    @Test
+    void quizzesAreTakenOldestFirst() {
+        long epoch = pool.epoch(COURSE);
+        assertTrue(pool.offer(COURSE, QuizDifficulty.EASY, epoch, "first"));
+        assertTrue(pool.offer(COURSE, QuizDifficulty.EASY, epoch, "second"));
+        assertTrue(pool.offer(COURSE, QuizDifficulty.MEDIUM, epoch, "medium"));
+
+        assertEquals(Optional.of("first"), pool.take(COURSE, QuizDifficulty.EASY));
+        assertEquals(Optional.of("second"), pool.take(COURSE, QuizDifficulty.EASY));
+        assertEquals(Optional.empty(), pool.take(COURSE, QuizDifficulty.EASY));
+        assertEquals(Optional.empty(), pool.take(OTHER_COURSE, QuizDifficulty.MEDIUM));
+        assertEquals(Optional.of("medium"), pool.take(COURSE, QuizDifficulty.MEDIUM));
+
+        assertEquals(3, requests("hit"));
+        assertEquals(2, requests("miss"));
+        assertTrue(rows.isEmpty());
+    }
+
+    @Test
+    void invalidationEmptiesThePoolAndBumpsTheEpoch() {
+        long before = pool.epoch(COURSE);
+        pool.offer(COURSE, QuizDifficulty.EASY, before, "easy");
+        pool.offer(COURSE, QuizDifficulty.HARD, before, "hard");
+        pool.offer(OTHER_COURSE, QuizDifficulty.EASY, pool.epoch(OTHER_COURSE), "other");
+
+        pool.courseRemoved(COURSE);
+
+        assertTrue(pool.epoch(COURSE) != before);
+        assertEquals(0, pool.getDepth(COURSE, QuizDifficulty.EASY));
+        assertEquals(0, pool.getDepth(COURSE, QuizDifficulty.HARD));
+        assertEquals(Optional.empty(), pool.takeAny(COURSE));
+        // other courses keep their pool and their epoch
+        assertEquals(0, pool.epoch(OTHER_COURSE));
+        assertEquals(Optional.of("other"), pool.take(OTHER_COURSE, QuizDifficulty.EASY));
+    }
+
+    @Test
+    void quizGeneratedBeforeAnInvalidationIsNotPooled() {
+        // read before generating, then the course changes while the model runs
+        long stale = pool.epoch(COURSE);
+        pool.chunksRemoved(COURSE, List.of(10L, 11L));
+
+        assertFalse(pool.offer(COURSE, QuizDifficulty.MEDIUM, stale, "stale"));
+        assertEquals(0, pool.getDepth(COURSE, QuizDifficulty.MEDIUM));
+        assertTrue(rows.isEmpty());
+
+        assertTrue(pool.offer(COURSE, QuizDifficulty.MEDIUM, pool.epoch(COURSE), "fresh"));
+        assertEquals(Optional.of("fresh"), pool.take(COURSE, QuizDifficulty.MEDIUM));
+    }
+
+    @Test
+    void takeAnyPrefersTheEasiestQuiz() {
+        long epoch = pool.epoch(COURSE);
+        pool.offer(COURSE, QuizDifficulty.HARD, epoch, "hard");
+        pool.offer(COURSE, QuizDifficulty.MEDIUM, epoch, "medium");
+
+        assertEquals(Optional.of("medium"), pool.takeAny(COURSE));
+        assertEquals(Optional.of("hard"), pool.takeAny(COURSE));
+        assertEquals(Optional.empty(), pool.takeAny(COURSE));
+        assertEquals(Optional.empty(), pool.takeAny(OTHER_COURSE));
+    }
+
+    @Test
+    void quizClaimedByAnotherRequestIsSkipped() {
+        long epoch = pool.epoch(COURSE);
+        pool.offer(COURSE, QuizDifficulty.EASY, epoch, "taken elsewhere");
+        pool.offer(COURSE, QuizDifficulty.EASY, epoch, "second");
+        rows.claimedElsewhere.add(rows.oldestId());
+
+        assertEquals(Optional.of("second"), pool.take(COURSE, QuizDifficulty.EASY));
+        assertEquals(1, requests("hit"));
+        assertEquals(0, requests("miss"));
+    }
+
+    @Test
+    void depthGaugesFollowTheDatabase() {
+        long epoch = pool.epoch(COURSE);
+        pool.offer(COURSE, QuizDifficulty.EASY, epoch, "a");
+        pool.offer(COURSE, QuizDifficulty.EASY, epoch, "b");
+        pool.offer(COURSE, QuizDifficulty.HARD, epoch, "c");
+        assertEquals(2.0, depthGauge(COURSE, QuizDifficulty.EASY));
+        assertEquals(1.0, depthGauge(COURSE, QuizDifficulty.HARD));
+
+        pool.take(COURSE, QuizDifficulty.EASY);
+        assertEquals(1.0, depthGauge(COURSE, QuizDifficulty.EASY));
+
+        // another instance sharing the database took the hard quiz and pooled two for course 2
+        rows.delete(COURSE, QuizDifficulty.HARD);
+        rows.insert(OTHER_COURSE, QuizDifficulty.MEDIUM, "x");
+        rows.insert(OTHER_COURSE, QuizDifficulty.MEDIUM, "y");
+        pool.refreshDepths();
+
+        assertEquals(1, pool.getDepth(COURSE, QuizDifficulty.EASY));
+        assertEquals(0.0, depthGauge(COURSE, QuizDifficulty.HARD));
+        assertEquals(2.0, depthGauge(OTHER_COURSE, QuizDifficulty.MEDIUM));
+
+        pool.invalidate(OTHER_COURSE);
+        assertEquals(0.0, depthGauge(OTHER_COURSE, QuizDifficulty.MEDIUM));
+        assertEquals(1.0, depthGauge(COURSE, QuizDifficulty.EASY));
+    }
+
+    private double depthGauge(Long courseId, QuizDifficulty difficulty) {
+        return registry.get("quiz.pool.depth")
+                .tags("course", String.valueOf(courseId), "difficulty", difficulty.name())
+                .gauge().value();
+    }
+
+    private double requests(String result) {
+        return registry.get("quiz.pool.requests").tag("result", result).counter().count();
+    }
+
+    /**
+     * The pooled_quiz table, behind the few repository methods QuizPool uses.
+     */
+    private static final class InMemoryPool {
+
+        private final Map<Long, PooledQuiz> byId = new TreeMap<>();
+        private final Set<Long> claimedElsewhere = new HashSet<>();
+        private long nextId = 1;
+
+        PooledQuizRepository repository() {
+            return (PooledQuizRepository) Proxy.newProxyInstance(PooledQuizRepository.class.getClassLoader(),
+                    new Class<?>[]{PooledQuizRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "save" -> save((PooledQuiz) args[0]);
+                        case "findFirstByCourseIdAndDifficultyOrderByIdAsc" ->
+                                oldest((Long) args[0], (QuizDifficulty) args[1]);
+                        case "claim" -> claim((Long) args[0]);
+                        case "deleteByCourseId" -> deleteCourse((Long) args[0]);
+                        case "countByKey" -> countByKey();
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        synchronized PooledQuiz save(PooledQuiz quiz) {
+            quiz.setId(nextId++);
+            byId.put(quiz.getId(), quiz);
+            return quiz;
+        }
+
+        void insert(Long courseId, QuizDifficulty difficulty, String json) {
+            save(new PooledQuiz(courseId, difficulty, json));
+        }
+
+        synchronized void delete(Long courseId, QuizDifficulty difficulty) {
+            byId.values().removeIf(q -> q.getCourseId().equals(courseId) && q.getDifficulty() == difficulty);
+        }
+
+        synchronized boolean isEmpty() {
+            return byId.isEmpty();
+        }
+
+        synchronized Long oldestId() {
+            return byId.keySet().iterator().next();
+        }
+
+        private synchronized Optional<PooledQuiz> oldest(Long courseId, QuizDifficulty difficulty) {
+            return byId.values().stream()
+                    .filter(q -> q.getCourseId().equals(courseId) && q.getDifficulty() == difficulty)
+                    .findFirst();
+        }
+
+        private synchronized int claim(Long id) {
+            // a concurrent request deleted the row between our read and our claim
+            if (claimedElsewhere.remove(id)) {
+                byId.remove(id);
+                return 0;
+            }
+            return byId.remove(id) != null ? 1 : 0;
+        }
+
+        private synchronized int deleteCourse(Long courseId) {
+            int before = byId.size();
+            byId.values().removeIf(q -> q.getCourseId().equals(courseId));
+            return before - byId.size();
+        }
+
+        private synchronized List<Object[]> countByKey() {
+            Map<String, Object[]> counts = new TreeMap<>();
+            for (PooledQuiz q : byId.values()) {
+                Object[] row = counts.computeIfAbsent(q.getCourseId() + ":" + q.getDifficulty(),
+                        key -> new Object[]{q.getCourseId(), q.getDifficulty(), 0L});
+                row[2] = (Long) row[2] + 1;
+            }
+            return new ArrayList<>(counts.values());
+        }
+    }
+}
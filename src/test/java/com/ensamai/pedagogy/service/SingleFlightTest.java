@@ -0,0 +1,179 @@
+package com.ensamai.pedagogy.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final SingleFlight<int[]> singleFlight = new SingleFlight<>(registry, "test", int[]::clone);
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsWithTheSameKeyShareOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<int[]>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                await(release);
+                return new int[]{42};
+            })));
+        }
+        // every other caller has joined the running call before it returns
+        awaitCount("collapsed", CALLERS - 1);
+        release.countDown();
+
+        List<int[]> values = new ArrayList<>();
+        for (Future<int[]> result : results) values.add(result.get(10, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, count("executed"));
+        for (int[] value : values) {
+            assertArrayEquals(new int[]{42}, value);
+            // each caller gets its own copy
+            for (int[] other : values) {
+                if (other != value) assertNotSame(other, value);
+            }
+        }
+    }
+
+    @Test
+    void aFailureReachesEveryWaiter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("upstream down");
+        List<Future<int[]>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                await(release);
+                throw failure;
+            })));
+        }
+        awaitCount("collapsed", CALLERS - 1);
+        release.countDown();
+
+        for (Future<int[]> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    void keyIsForgottenOnceTheCallReturns() {
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute("key", () -> new int[]{calls.incrementAndGet()});
+        assertArrayEquals(new int[]{2}, singleFlight.execute("key", () -> new int[]{calls.incrementAndGet()}));
+        assertEquals(0, inFlight());
+
+        // nor is a failure remembered: the next call runs again
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("once");
+        }));
+        assertEquals(0, inFlight());
+        assertArrayEquals(new int[]{3}, singleFlight.execute("key", () -> new int[]{calls.incrementAndGet()}));
+        assertEquals(0, count("collapsed"));
+    }
+
+    @Test
+    void differentKeysDoNotWaitForEachOther() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<int[]> slow = executor.submit(() -> singleFlight.execute("slow", () -> {
+            await(release);
+            return new int[]{1};
+        }));
+        awaitInFlight(1);
+
+        assertArrayEquals(new int[]{2}, singleFlight.execute("fast", () -> new int[]{2}));
+        assertEquals(1, inFlight());
+        release.countDown();
+        assertArrayEquals(new int[]{1}, slow.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void batchWaitsForKeysAlreadyInFlightAndCallsTheRest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<int[]> single = executor.submit(() -> singleFlight.execute("b", () -> {
+            await(release);
+            return new int[]{20};
+        }));
+        awaitInFlight(1);
+
+        List<List<Integer>> claimed = new ArrayList<>();
+        Future<List<int[]>> batch = executor.submit(() -> singleFlight.executeAll(List.of("a", "b", "c"), positions -> {
+            claimed.add(positions);
+            List<int[]> values = new ArrayList<>();
+            for (int position : positions) values.add(new int[]{position});
+            return values;
+        }));
+        awaitCount("collapsed", 1);
+        release.countDown();
+
+        List<int[]> values = batch.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of(List.of(0, 2)), claimed);
+        assertArrayEquals(new int[]{0}, values.get(0));
+        assertArrayEquals(new int[]{20}, values.get(1));
+        assertArrayEquals(new int[]{2}, values.get(2));
+        assertArrayEquals(new int[]{20}, single.get(10, TimeUnit.SECONDS));
+        assertEquals(0, inFlight());
+    }
+
+    private double count(String result) {
+        return registry.get("singleflight.calls").tags("name", "test", "result", result).counter().count();
+    }
+
+    private double inFlight() {
+        return registry.get("singleflight.in.flight").tag("name", "test").gauge().value();
+    }
+
+    private void awaitCount(String result, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (count(result) < expected) {
+            if (System.nanoTime() > deadline) fail("only " + count(result) + " " + result + " calls");
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitInFlight(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (inFlight() < expected) {
+            if (System.nanoTime() > deadline) fail("only " + inFlight() + " calls in flight");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}